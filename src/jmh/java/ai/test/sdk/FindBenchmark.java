@@ -0,0 +1,95 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * Measures an entire {@code findElementBy...} call, against a stubbed {@code AppiumDriver} and an in-process server. {@link #appium()} is the common case, where Appium finds the element and its
+ * record is queued for upload; {@link #fallback()} is the case where Appium fails and the element is classified by the server. The classify cache is off, so every fallback captures, uploads, and
+ * decodes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindBenchmark
+{
+	/**
+	 * Set {@code true} to send screenshots and page sources as multipart uploads.
+	 */
+	@Param({ "false", "true" })
+	boolean multipart;
+
+	/**
+	 * Answers {@code classify} and {@code add_action}
+	 */
+	StandInServer server;
+
+	/**
+	 * The driver under test
+	 */
+	TestAiDriver<MobileElement> driver;
+
+	/**
+	 * Starts the server and creates the driver.
+	 *
+	 * @throws IOException If the server could not be started.
+	 */
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		server = new StandInServer();
+		driver = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(1080, 1920, 1), StubAppiumDriver.pageSource(200)), "benchmark", server.url(), null, true);
+		driver.setMultipartUploads(multipart).getClassifyCache().setEnabled(false);
+	}
+
+	/**
+	 * Quits the driver and stops the server.
+	 */
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		driver.quit();
+		server.close();
+	}
+
+	/**
+	 * Finds an element Appium can find.
+	 *
+	 * @return The element
+	 */
+	@Benchmark
+	public MobileElement appium()
+	{
+		return driver.findElementByXPath("//android.widget.Button", "sign_in");
+	}
+
+	/**
+	 * Finds an element Appium cannot find, falling back to the server.
+	 *
+	 * @return The element
+	 */
+	@Benchmark
+	public MobileElement fallback()
+	{
+		return driver.findElementByXPath("//" + StubAppiumDriver.MISSING, "sign_in");
+	}
+}
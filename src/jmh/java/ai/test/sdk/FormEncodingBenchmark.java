@@ -0,0 +1,134 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Measures building and encoding a {@code classify} request body, both as a url-encoded form (screenshot in base64) and as a multipart upload. Bodies are written to a sink which discards them, so
+ * no network is involved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormEncodingBenchmark
+{
+	/**
+	 * The size of the screenshot, in KiB
+	 */
+	@Param({ "256", "1024" })
+	int screenshotKb;
+
+	/**
+	 * The number of nodes in the page source
+	 */
+	@Param({ "100", "1000" })
+	int sourceNodes;
+
+	/**
+	 * The screenshot. Random bytes, since PNGs and JPEGs do not compress any further.
+	 */
+	byte[] screenshot;
+
+	/**
+	 * The page source
+	 */
+	String source;
+
+	/**
+	 * Creates the calls. Never executed.
+	 */
+	OkHttpClient client = new OkHttpClient();
+
+	/**
+	 * The server the calls are addressed to
+	 */
+	HttpUrl url = HttpUrl.get("http://127.0.0.1:9/");
+
+	/**
+	 * Generates the payloads.
+	 */
+	@Setup
+	public void setup()
+	{
+		screenshot = new byte[screenshotKb * 1024];
+		new Random(42).nextBytes(screenshot);
+		source = StubAppiumDriver.pageSource(sourceNodes);
+	}
+
+	/**
+	 * Builds and encodes a url-encoded form, as {@code TestAiDriver} sends when multipart uploads are off.
+	 *
+	 * @return The number of bytes encoded
+	 * @throws IOException Never, the body is written to memory.
+	 */
+	@Benchmark
+	public long form() throws IOException
+	{
+		HashMap<String, String> form = CollectionUtils.keyValuesToHM("api_key", "benchmark", "label", "sign_in", "run_id", "run", "screenshot", Base64.getEncoder().encodeToString(screenshot),
+				"source", source);
+
+		return encode(NetUtils.newPOST(client, url, "classify", form));
+	}
+
+	/**
+	 * Builds and encodes a multipart upload, with the page source streamed.
+	 *
+	 * @return The number of bytes encoded
+	 * @throws IOException Never, the body is written to memory.
+	 */
+	@Benchmark
+	public long multipart() throws IOException
+	{
+		Map<String, RequestBody> parts = new LinkedHashMap<>();
+		parts.put("screenshot", RequestBody.create(screenshot, MediaType.get("image/png")));
+		parts.put("source", NetUtils.streamingBody(source, MediaType.get("text/xml; charset=utf-8")));
+
+		return encode(NetUtils.newMultipartPOST(client, url, "classify", CollectionUtils.keyValuesToHM("api_key", "benchmark", "label", "sign_in", "run_id", "run"), parts));
+	}
+
+	/**
+	 * Writes the body of a call to a sink which counts and discards it.
+	 *
+	 * @param c The call
+	 * @return The number of bytes written
+	 * @throws IOException Never, the body is written to memory.
+	 */
+	private static long encode(Call c) throws IOException
+	{
+		RequestCompressor.CountingSink counter = new RequestCompressor.CountingSink(Okio.blackhole());
+		try (BufferedSink sink = Okio.buffer(counter))
+		{
+			c.request().body().writeTo(sink);
+			sink.flush();
+			return counter.count;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+package ai.test.sdk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.JsonObject;
+
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Measures decoding a {@code classify} response, streamed with {@link ClassifyResponse#ADAPTER} and, for comparison, parsed into a JSON tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonParsingBenchmark
+{
+	/**
+	 * The request every response answers
+	 */
+	Request request = new Request.Builder().url("http://127.0.0.1:9/classify").build();
+
+	/**
+	 * The content type of every response
+	 */
+	MediaType json = MediaType.get("application/json");
+
+	/**
+	 * Decodes a response with the streaming adapter.
+	 *
+	 * @return The decoded response
+	 */
+	@Benchmark
+	public ClassifyResponse adapter()
+	{
+		return JsonUtils.responseAs(response(), ClassifyResponse.ADAPTER);
+	}
+
+	/**
+	 * Parses a response into a JSON tree.
+	 *
+	 * @return The parsed response
+	 */
+	@Benchmark
+	public JsonObject tree()
+	{
+		return JsonUtils.responseAsJson(response());
+	}
+
+	/**
+	 * Creates a fresh response, since a response body can only be read once.
+	 *
+	 * @return A canned {@code classify} response
+	 */
+	private Response response()
+	{
+		return new Response.Builder().request(request).protocol(Protocol.HTTP_1_1).code(200).message("OK").body(ResponseBody.create(StandInServer.CLASSIFY, json)).build();
+	}
+}
@@ -0,0 +1,66 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.stream.JsonReader;
+
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.MobileElement;
+
+/**
+ * Measures creating a {@code TestAiElement} from a decoded {@code classify} response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestAiElementBenchmark
+{
+	/**
+	 * The driver the elements belong to
+	 */
+	AppiumDriver<MobileElement> driver;
+
+	/**
+	 * The element data the elements are created from
+	 */
+	ClassifyResponse.Elem elem;
+
+	/**
+	 * Creates the driver and decodes the element data.
+	 *
+	 * @throws IOException If the canned response could not be decoded.
+	 */
+	@Setup
+	public void setup() throws IOException
+	{
+		driver = StubAppiumDriver.create(StubAppiumDriver.screenshot(108, 192, 1), StubAppiumDriver.pageSource(1));
+		elem = ClassifyResponse.ADAPTER.read(new JsonReader(new StringReader(StandInServer.CLASSIFY))).elem;
+	}
+
+	/**
+	 * Creates an element.
+	 *
+	 * @return The element
+	 */
+	@Benchmark
+	public TestAiElement construct()
+	{
+		return new TestAiElement(elem, driver, 2.5);
+	}
+}
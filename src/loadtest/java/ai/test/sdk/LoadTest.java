@@ -0,0 +1,310 @@
+package ai.test.sdk;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * Drives simulated devices through a find workload against a {@link StandInServer}, and reports throughput, latency percentiles, memory, and thread usage. Each device is a stubbed
+ * {@code AppiumDriver} in a shared {@link TestAiDriverPool}, which repeatedly moves to the next screen of a synthetic app and looks up a few elements on it. Some lookups are made to fail in Appium
+ * so they fall back to {@code classify}.
+ * <p>
+ * Options are passed as {@code --name=value}:
+ * <ul>
+ * <li>{@code devices}: the number of simulated devices. Default 8.</li>
+ * <li>{@code duration}: how long to run, in seconds. Default 60.</li>
+ * <li>{@code screens}: the number of distinct screens in the app. Default 4.</li>
+ * <li>{@code finds}: the number of lookups per screen. Default 5.</li>
+ * <li>{@code fallback}: the fraction of lookups which Appium fails. Default 0.2.</li>
+ * <li>{@code think}: the pause after each lookup, in milliseconds. Default 0.</li>
+ * <li>{@code classifyMs}, {@code addActionMs}: the median latency of each endpoint. Defaults 150 and 30.</li>
+ * <li>{@code sigma}: the spread of the log-normal latency tail. Default 0.5.</li>
+ * <li>{@code errors}: the fraction of calls the server fails with {@code 503}. Default 0.</li>
+ * <li>{@code maxCalls}: the pool's limit on concurrent server calls. Default 16.</li>
+ * <li>{@code cache}: set {@code false} to disable the classify cache. Default true.</li>
+ * </ul>
+ */
+public final class LoadTest
+{
+	/**
+	 * Constructor, disabled.
+	 */
+	private LoadTest()
+	{
+	}
+
+	/**
+	 * Runs the load test.
+	 *
+	 * @param args Options, as {@code --name=value}
+	 * @throws Exception If the load test could not be set up.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Map<String, String> opts = new HashMap<>();
+		for (String a : args)
+		{
+			String[] kv = a.replaceFirst("^--", "").split("=", 2);
+			opts.put(kv[0], kv.length > 1 ? kv[1] : "true");
+		}
+
+		int devices = Integer.parseInt(opts.getOrDefault("devices", "8")), screens = Integer.parseInt(opts.getOrDefault("screens", "4")),
+				finds = Integer.parseInt(opts.getOrDefault("finds", "5")), maxCalls = Integer.parseInt(opts.getOrDefault("maxCalls", "16"));
+		long durationMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(opts.getOrDefault("duration", "60"))), think = Long.parseLong(opts.getOrDefault("think", "0"));
+		double fallback = Double.parseDouble(opts.getOrDefault("fallback", "0.2")), sigma = Double.parseDouble(opts.getOrDefault("sigma", "0.5")),
+				errors = Double.parseDouble(opts.getOrDefault("errors", "0"));
+		boolean cache = Boolean.parseBoolean(opts.getOrDefault("cache", "true"));
+
+		System.out.printf("Load test: %s%n", opts);
+
+		byte[][] shots = new byte[screens][];
+		String[] sources = new String[screens];
+		for (int s = 0; s < screens; s++)
+		{
+			shots[s] = StubAppiumDriver.screenshot(1080, 1920, s);
+			sources[s] = StubAppiumDriver.pageSource(100 + 20 * s);
+		}
+
+		Sampler sampler = new Sampler();
+		Latencies appium = new Latencies(), fallbacks = new Latencies();
+		AtomicLong failed = new AtomicLong();
+
+		try (StandInServer server = new StandInServer())
+		{
+			server.setLatency("classify", StandInServer.Latency.logNormal(Duration.ofMillis(Long.parseLong(opts.getOrDefault("classifyMs", "150"))), sigma))
+					.setLatency("add_action", StandInServer.Latency.logNormal(Duration.ofMillis(Long.parseLong(opts.getOrDefault("addActionMs", "30"))), sigma)).setErrorRate("classify", errors)
+					.setErrorRate("add_action", errors);
+
+			TestAiDriverPool<MobileElement> pool = new TestAiDriverPool<MobileElement>("load-test", server.url(), true).setMaxConcurrentCalls(maxCalls);
+			List<CompletableFuture<Void>> runs = new ArrayList<>();
+
+			sampler.start();
+			long start = System.nanoTime(), end = System.currentTimeMillis() + durationMillis;
+			for (int i = 0; i < devices; i++)
+			{
+				AtomicInteger screen = new AtomicInteger();
+				String name = "device-" + i;
+				pool.add(name, StubAppiumDriver.create(shots, sources, screen::get)).getClassifyCache().setEnabled(cache);
+
+				runs.add(pool.submit(name, d -> {
+					ThreadLocalRandom rnd = ThreadLocalRandom.current();
+					while (System.currentTimeMillis() < end)
+					{
+						int s = (screen.get() + 1) % screens;
+						screen.set(s);
+
+						for (int f = 0; f < finds && System.currentTimeMillis() < end; f++)
+						{
+							String label = String.format("screen%d_element%d", s, f);
+							boolean fb = rnd.nextDouble() < fallback;
+
+							long t = System.nanoTime();
+							try
+							{
+								d.findElementByXPath("//" + (fb ? StubAppiumDriver.MISSING + "_" : "") + label, label);
+								(fb ? fallbacks : appium).add(System.nanoTime() - t);
+							}
+							catch (Throwable e)
+							{
+								failed.incrementAndGet();
+							}
+
+							if (think > 0)
+								Thread.sleep(think);
+						}
+					}
+					return null;
+				}));
+			}
+
+			CompletableFuture.allOf(runs.toArray(new CompletableFuture[0])).join();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			sampler.stop();
+
+			System.out.printf("%nRan %d devices for %.1f s%n", devices, seconds);
+			System.out.printf("Finds: %d ok, %d failed, %.1f finds/s%n", appium.size() + fallbacks.size(), failed.get(), (appium.size() + fallbacks.size() + failed.get()) / seconds);
+			appium.print("appium");
+			fallbacks.print("fallback");
+
+			System.out.printf("%nServer: classify %d calls (%d failed on purpose), add_action %d calls (%d failed on purpose)%n", server.getCallCount("classify"), server.getErrorCount("classify"),
+					server.getCallCount("add_action"), server.getErrorCount("add_action"));
+			System.out.println("SDK timers (mean ms): " + pool.getStats().getTimerMeanMillis());
+			System.out.println("SDK counters: " + pool.getStats().getCounters());
+
+			pool.quitAll();
+		}
+
+		sampler.print();
+	}
+
+	/**
+	 * Collects latencies from many threads.
+	 */
+	private static class Latencies
+	{
+		/**
+		 * The latencies, in nanoseconds
+		 */
+		private long[] values = new long[1024];
+
+		/**
+		 * The number of latencies collected
+		 */
+		private int size;
+
+		/**
+		 * Collects a latency.
+		 *
+		 * @param nanos The latency, in nanoseconds
+		 */
+		synchronized void add(long nanos)
+		{
+			if (size == values.length)
+				values = Arrays.copyOf(values, size * 2);
+
+			values[size++] = nanos;
+		}
+
+		/**
+		 * Gets the number of latencies collected.
+		 *
+		 * @return The number of latencies
+		 */
+		synchronized int size()
+		{
+			return size;
+		}
+
+		/**
+		 * Prints the percentiles of the latencies.
+		 *
+		 * @param name What the latencies are of
+		 */
+		synchronized void print(String name)
+		{
+			if (size == 0)
+			{
+				System.out.printf("  %-8s no samples%n", name);
+				return;
+			}
+
+			long[] v = Arrays.copyOf(values, size);
+			Arrays.sort(v);
+			System.out.printf("  %-8s n=%-7d p50=%.1f ms  p90=%.1f ms  p99=%.1f ms  max=%.1f ms%n", name, size, pct(v, 50), pct(v, 90), pct(v, 99), v[v.length - 1] / 1e6);
+		}
+
+		/**
+		 * Computes a percentile.
+		 *
+		 * @param sorted The latencies, sorted
+		 * @param p The percentile, between 0 and 100
+		 * @return The percentile, in milliseconds
+		 */
+		private static double pct(long[] sorted, double p)
+		{
+			return sorted[(int) Math.min(sorted.length - 1, Math.max(0, Math.ceil(p / 100 * sorted.length) - 1))] / 1e6;
+		}
+	}
+
+	/**
+	 * Samples heap and thread usage in the background while the load test runs.
+	 */
+	private static class Sampler
+	{
+		/**
+		 * Reads heap usage
+		 */
+		private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+		/**
+		 * Reads thread counts
+		 */
+		private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+		/**
+		 * The largest heap usage seen, in bytes
+		 */
+		private volatile long maxHeap;
+
+		/**
+		 * The total GC count and time when sampling started
+		 */
+		private long gcCount, gcMillis;
+
+		/**
+		 * The sampling thread
+		 */
+		private Thread thread;
+
+		/**
+		 * Starts sampling.
+		 */
+		void start()
+		{
+			gcCount = gc(GarbageCollectorMXBean::getCollectionCount);
+			gcMillis = gc(GarbageCollectorMXBean::getCollectionTime);
+			threads.resetPeakThreadCount();
+
+			thread = new Thread(() -> {
+				while (!Thread.currentThread().isInterrupted())
+				{
+					maxHeap = Math.max(maxHeap, memory.getHeapMemoryUsage().getUsed());
+					try
+					{
+						Thread.sleep(250);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}, "load-test-sampler");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		/**
+		 * Stops sampling.
+		 */
+		void stop()
+		{
+			thread.interrupt();
+			gcCount = gc(GarbageCollectorMXBean::getCollectionCount) - gcCount;
+			gcMillis = gc(GarbageCollectorMXBean::getCollectionTime) - gcMillis;
+		}
+
+		/**
+		 * Prints what was sampled.
+		 */
+		void print()
+		{
+			System.out.printf("%nJVM: peak heap used %.1f MB, peak threads %d, %d GCs taking %d ms%n", maxHeap / 1048576.0, threads.getPeakThreadCount(), gcCount, gcMillis);
+		}
+
+		/**
+		 * Sums a statistic over all garbage collectors.
+		 *
+		 * @param fn Reads the statistic from a collector
+		 * @return The sum, ignoring collectors which do not report it
+		 */
+		private static long gc(ToLongFunction<GarbageCollectorMXBean> fn)
+		{
+			return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(fn).filter(v -> v > 0).sum();
+		}
+	}
+}
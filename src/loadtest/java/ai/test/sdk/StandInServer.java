@@ -0,0 +1,601 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the test.ai server, which answers {@code classify} and {@code add_action} with canned responses after a simulated latency, and fails a configurable fraction of calls with
+ * {@code 503}. Understands url-encoded and multipart requests, gzipped or not, and advertises gzip support like the real server does. Like the real server, it remembers the page sources it has
+ * received, rebuilds page sources sent as a {@code source_ref} or a {@code source_delta}, and answers {@code source_mismatch} when it does not have the page source they refer to. Calls which
+ * name several {@code labels} are answered with a result for each of them.
+ */
+final class StandInServer implements AutoCloseable
+{
+	/**
+	 * The element returned for labels which were not given an element of their own
+	 */
+	static final String DEFAULT_ELEMENT = "{\"x\":80,\"y\":1200,\"width\":640,\"height\":192,\"text\":\"Sign in\",\"class\":\"android.widget.Button\"}";
+
+	/**
+	 * A successful {@code classify} response for {@link #DEFAULT_ELEMENT}
+	 */
+	static final String CLASSIFY = classifyResponse("stand-in", DEFAULT_ELEMENT);
+
+	/**
+	 * Finds the boundary in the content type of a multipart body
+	 */
+	private static final Pattern BOUNDARY = Pattern.compile("boundary=\"?([^\";]+)\"?");
+
+	/**
+	 * Finds the name of a part in its headers
+	 */
+	private static final Pattern PART_NAME = Pattern.compile("name=\"([^\"]*)\"");
+
+	/**
+	 * The underlying server
+	 */
+	private final HttpServer server;
+
+	/**
+	 * The behavior of each endpoint, by name
+	 */
+	private final Map<String, Endpoint> endpoints = Map.of("classify", new Endpoint(), "add_action", new Endpoint());
+
+	/**
+	 * The element returned for each label which was given one
+	 */
+	private final ConcurrentHashMap<String, String> elements = new ConcurrentHashMap<>();
+
+	/**
+	 * The labels which are not found
+	 */
+	private final Set<String> missing = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The element returned for labels which were not given an element of their own, or {@code null} if they are not found.
+	 */
+	private volatile String defaultElement = DEFAULT_ELEMENT;
+
+	/**
+	 * The http status of the answer to a {@code classify} call for a single label which is not found
+	 */
+	private volatile int missingStatus = 200;
+
+	/**
+	 * The page sources received, by hash
+	 */
+	private final ConcurrentHashMap<String, String> sources = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of {@code classify} calls which sent their page source in each field, by field name
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> sourceUploads = new ConcurrentHashMap<>();
+
+	/**
+	 * The number of {@code classify} calls answered with {@code source_mismatch}
+	 */
+	private final AtomicLong sourceMismatches = new AtomicLong();
+
+	/**
+	 * The page source of the last {@code classify} call, as rebuilt by this server
+	 */
+	private volatile String lastSource;
+
+	/**
+	 * The keys whose {@code add_action} calls are rejected with {@code 400}
+	 */
+	private final Set<String> rejectedKeys = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The number of {@code add_action} calls accepted for each key
+	 */
+	private final ConcurrentHashMap<String, AtomicLong> acceptedActions = new ConcurrentHashMap<>();
+
+	/**
+	 * Constructor, starts a new StandInServer on an ephemeral port of the loopback interface. Every endpoint answers immediately and never fails until configured otherwise.
+	 *
+	 * @throws IOException If the server could not be started.
+	 */
+	StandInServer() throws IOException
+	{
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+		server.createContext("/classify", x -> handle(x, "classify"));
+		server.createContext("/add_action", x -> handle(x, "add_action"));
+		server.setExecutor(Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "stand-in-server");
+			t.setDaemon(true);
+			return t;
+		}));
+		server.start();
+	}
+
+	/**
+	 * Sets how long an endpoint takes to answer.
+	 *
+	 * @param endpoint The endpoint, {@code classify} or {@code add_action}
+	 * @param latency The distribution of the endpoint's latency
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setLatency(String endpoint, Latency latency)
+	{
+		endpoint(endpoint).latency = latency;
+		return this;
+	}
+
+	/**
+	 * Sets the fraction of calls to an endpoint which fail with {@code 503 Service Unavailable}.
+	 *
+	 * @param endpoint The endpoint, {@code classify} or {@code add_action}
+	 * @param errorRate The fraction of calls to fail, between 0 and 1
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setErrorRate(String endpoint, double errorRate)
+	{
+		endpoint(endpoint).errorRate = errorRate;
+		return this;
+	}
+
+	/**
+	 * Sets the element {@code classify} returns for a label.
+	 *
+	 * @param label The label
+	 * @param elem The element, as the JSON object the real server returns in {@code elem}. Set {@code null} to answer that the label was not found.
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setElement(String label, String elem)
+	{
+		if (elem != null)
+		{
+			elements.put(label, elem);
+			missing.remove(label);
+		}
+		else
+		{
+			elements.remove(label);
+			missing.add(label);
+		}
+
+		return this;
+	}
+
+	/**
+	 * Sets the element {@code classify} returns for labels which were not given an element with {@link #setElement(String, String)}. Default is {@link #DEFAULT_ELEMENT}.
+	 *
+	 * @param elem The element, as the JSON object the real server returns in {@code elem}. Set {@code null} to answer that such labels were not found.
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setDefaultElement(String elem)
+	{
+		defaultElement = elem;
+		return this;
+	}
+
+	/**
+	 * Sets the http status of the answer to a {@code classify} call for a single label which is not found. Default is {@code 200}.
+	 *
+	 * @param status The http status
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setMissingStatus(int status)
+	{
+		missingStatus = status;
+		return this;
+	}
+
+	/**
+	 * Sets whether {@code add_action} calls for a key are rejected with {@code 400 Bad Request}.
+	 *
+	 * @param key The key
+	 * @param rejected Set {@code true} to reject calls for {@code key}
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer setActionRejected(String key, boolean rejected)
+	{
+		if (rejected)
+			rejectedKeys.add(key);
+		else
+			rejectedKeys.remove(key);
+
+		return this;
+	}
+
+	/**
+	 * Gets the number of {@code add_action} calls which were accepted for a key.
+	 *
+	 * @param key The key
+	 * @return The number of calls
+	 */
+	long getActionCount(String key)
+	{
+		AtomicLong n = acceptedActions.get(key);
+		return n != null ? n.get() : 0;
+	}
+
+	/**
+	 * Forgets every page source received so far, so calls which refer to one are answered with {@code source_mismatch}, like the real server does once it has evicted them.
+	 *
+	 * @return This {@code StandInServer}, for chaining convenience.
+	 */
+	StandInServer forgetSources()
+	{
+		sources.clear();
+		return this;
+	}
+
+	/**
+	 * Gets the number of {@code classify} calls which sent their page source in a field.
+	 *
+	 * @param field The field, {@code source}, {@code source_ref} or {@code source_delta}
+	 * @return The number of calls
+	 */
+	long getSourceUploadCount(String field)
+	{
+		AtomicLong n = sourceUploads.get(field);
+		return n != null ? n.get() : 0;
+	}
+
+	/**
+	 * Gets the number of {@code classify} calls answered with {@code source_mismatch}.
+	 *
+	 * @return The number of calls
+	 */
+	long getSourceMismatchCount()
+	{
+		return sourceMismatches.get();
+	}
+
+	/**
+	 * Gets the page source of the last {@code classify} call which was not answered with {@code source_mismatch}, as rebuilt by this server.
+	 *
+	 * @return The page source, or {@code null} if there was no such call.
+	 */
+	String getLastSource()
+	{
+		return lastSource;
+	}
+
+	/**
+	 * Gets the base url of this server.
+	 *
+	 * @return The base url, with a trailing slash
+	 */
+	String url()
+	{
+		return String.format("http://127.0.0.1:%d/", server.getAddress().getPort());
+	}
+
+	/**
+	 * Gets the number of calls an endpoint has received.
+	 *
+	 * @param endpoint The endpoint, {@code classify} or {@code add_action}
+	 * @return The number of calls, including failed ones
+	 */
+	long getCallCount(String endpoint)
+	{
+		return endpoint(endpoint).calls.get();
+	}
+
+	/**
+	 * Gets the number of calls to an endpoint which were deliberately failed.
+	 *
+	 * @param endpoint The endpoint, {@code classify} or {@code add_action}
+	 * @return The number of calls answered with {@code 503}
+	 */
+	long getErrorCount(String endpoint)
+	{
+		return endpoint(endpoint).errors.get();
+	}
+
+	/**
+	 * Looks up an endpoint.
+	 *
+	 * @param name The name of the endpoint
+	 * @return The endpoint
+	 */
+	private Endpoint endpoint(String name)
+	{
+		Endpoint e = endpoints.get(name);
+		if (e == null)
+			throw new IllegalArgumentException("Unknown endpoint: " + name);
+
+		return e;
+	}
+
+	/**
+	 * Answers a call.
+	 *
+	 * @param x The exchange
+	 * @param name The name of the endpoint called
+	 * @throws IOException Network error
+	 */
+	private void handle(HttpExchange x, String name) throws IOException
+	{
+		Endpoint e = endpoints.get(name);
+		e.calls.incrementAndGet();
+
+		byte[] body;
+		try (InputStream in = "gzip".equalsIgnoreCase(x.getRequestHeaders().getFirst("Content-Encoding")) ? new GZIPInputStream(x.getRequestBody()) : x.getRequestBody())
+		{
+			body = in.readAllBytes();
+		}
+
+		ThreadLocalRandom rnd = ThreadLocalRandom.current();
+		long millis = e.latency.sample(rnd);
+		if (millis > 0)
+			try
+			{
+				Thread.sleep(millis);
+			}
+			catch (InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+
+		if (rnd.nextDouble() < e.errorRate)
+		{
+			e.errors.incrementAndGet();
+			respond(x, 503, "{\"success\":false,\"message\":\"The stand-in server failed this call on purpose\"}");
+		}
+		else if ("classify".equals(name))
+		{
+			Map<String, String> form = fields(x.getRequestHeaders().getFirst("Content-Type"), body);
+			String json = classify(form);
+			respond(x, !form.containsKey("labels") && json.contains("\"message\":\"Did not find") ? missingStatus : 200, json);
+		}
+		else
+		{
+			String key = fields(x.getRequestHeaders().getFirst("Content-Type"), body).getOrDefault("key", "");
+			if (rejectedKeys.contains(key))
+				respond(x, 400, "{\"success\":false,\"message\":\"The stand-in server rejected this key on purpose\"}");
+			else
+			{
+				acceptedActions.computeIfAbsent(key, k -> new AtomicLong()).incrementAndGet();
+				respond(x, 200, "{\"success\":true}");
+			}
+		}
+	}
+
+	/**
+	 * Creates the response to a {@code classify} call.
+	 *
+	 * @param form The fields of the call
+	 * @return The response
+	 */
+	private String classify(Map<String, String> form)
+	{
+		String source = source(form);
+		if (source == null)
+		{
+			sourceMismatches.incrementAndGet();
+			return "{\"success\":false,\"key\":\"\",\"message\":\"Unknown page source\",\"source_mismatch\":true}";
+		}
+
+		sources.put(SourceDelta.hash(source), source);
+		lastSource = source;
+
+		if (!form.containsKey("labels"))
+			return classify(form.get("label"));
+
+		JsonObject results = new JsonObject();
+		for (JsonElement label : JsonParser.parseString(form.get("labels")).getAsJsonArray())
+			results.add(label.getAsString(), JsonParser.parseString(classify(label.getAsString())));
+
+		return String.format("{\"success\":true,\"key\":\"\",\"message\":\"\",\"results\":%s}", results);
+	}
+
+	/**
+	 * Creates the response for a single label of a {@code classify} call.
+	 *
+	 * @param label The label
+	 * @return The response
+	 */
+	private String classify(String label)
+	{
+		String elem = label == null || missing.contains(label) ? null : elements.getOrDefault(label, defaultElement);
+		if (elem == null)
+			return String.format("{\"success\":false,\"key\":\"\",\"message\":\"Did not find %s\"}", label);
+
+		return classifyResponse(label, elem);
+	}
+
+	/**
+	 * Rebuilds the page source of a {@code classify} call from whichever of {@code source}, {@code source_ref} or {@code source_delta} it was sent in.
+	 *
+	 * @param form The fields of the call
+	 * @return The page source, or {@code null} if the call refers to a page source this server does not have.
+	 */
+	private String source(Map<String, String> form)
+	{
+		for (String f : new String[] { "source", "source_ref", "source_delta" })
+			if (form.containsKey(f))
+				sourceUploads.computeIfAbsent(f, k -> new AtomicLong()).incrementAndGet();
+
+		if (form.containsKey("source"))
+			return form.get("source");
+
+		if (form.containsKey("source_ref"))
+			return sources.get(form.get("source_ref"));
+
+		String base = form.containsKey("source_base") ? sources.get(form.get("source_base")) : null;
+		if (base != null && form.containsKey("source_delta"))
+			return SourceDelta.apply(base, form.get("source_delta"));
+
+		return null;
+	}
+
+	/**
+	 * Extracts the fields from the body of a call.
+	 *
+	 * @param contentType The content type of the body
+	 * @param body The body
+	 * @return The fields, by name. Binary fields are decoded as if they were UTF-8 text.
+	 */
+	private static Map<String, String> fields(String contentType, byte[] body)
+	{
+		Map<String, String> fields = new HashMap<>();
+		String s = new String(body, StandardCharsets.ISO_8859_1);
+
+		Matcher b = contentType != null && contentType.startsWith("multipart/") ? BOUNDARY.matcher(contentType) : null;
+		if (b != null && b.find())
+		{
+			for (String part : s.split("--" + Pattern.quote(b.group(1))))
+			{
+				int split = part.indexOf("\r\n\r\n");
+				Matcher name = split >= 0 ? PART_NAME.matcher(part.substring(0, split)) : null;
+				if (name == null || !name.find())
+					continue;
+
+				String value = part.substring(split + 4);
+				if (value.endsWith("\r\n"))
+					value = value.substring(0, value.length() - 2);
+
+				fields.put(name.group(1), new String(value.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+			}
+
+			return fields;
+		}
+
+		for (String kv : s.split("&"))
+		{
+			int eq = kv.indexOf('=');
+			if (eq > 0)
+				fields.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8), URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+		}
+
+		return fields;
+	}
+
+	/**
+	 * Creates a successful {@code classify} response.
+	 *
+	 * @param label The label which was classified
+	 * @param elem The element, as JSON
+	 * @return The response
+	 */
+	private static String classifyResponse(String label, String elem)
+	{
+		return String.format("{\"success\":true,\"key\":\"%s-key\",\"message\":\"\",\"elem\":%s}", label, elem);
+	}
+
+	/**
+	 * Sends a JSON response.
+	 *
+	 * @param x The exchange
+	 * @param status The http status
+	 * @param json The body
+	 * @throws IOException Network error
+	 */
+	private static void respond(HttpExchange x, int status, String json) throws IOException
+	{
+		byte[] b = json.getBytes(StandardCharsets.UTF_8);
+		x.getResponseHeaders().set("Content-Type", "application/json");
+		x.getResponseHeaders().set("Accept-Encoding", "gzip");
+		x.sendResponseHeaders(status, b.length);
+		try (OutputStream out = x.getResponseBody())
+		{
+			out.write(b);
+		}
+	}
+
+	@Override
+	public void close()
+	{
+		server.stop(0);
+	}
+
+	/**
+	 * A distribution of latencies.
+	 */
+	@FunctionalInterface
+	interface Latency
+	{
+		/**
+		 * Draws a latency.
+		 *
+		 * @param rnd The source of randomness
+		 * @return The latency, in milliseconds
+		 */
+		long sample(Random rnd);
+
+		/**
+		 * Creates a constant latency.
+		 *
+		 * @param d The latency
+		 * @return The distribution
+		 */
+		static Latency fixed(Duration d)
+		{
+			long ms = d.toMillis();
+			return rnd -> ms;
+		}
+
+		/**
+		 * Creates a uniformly distributed latency.
+		 *
+		 * @param min The shortest latency
+		 * @param max The longest latency
+		 * @return The distribution
+		 */
+		static Latency uniform(Duration min, Duration max)
+		{
+			long lo = min.toMillis(), span = Math.max(1, max.toMillis() - lo + 1);
+			return rnd -> lo + (long) (rnd.nextDouble() * span);
+		}
+
+		/**
+		 * Creates a log-normally distributed latency, the usual shape of server latencies: most calls are near the median, with a long tail of slow ones.
+		 *
+		 * @param median The median latency
+		 * @param sigma The spread of the tail. 0.5 puts the p99 at about 3.2 times the median.
+		 * @return The distribution
+		 */
+		static Latency logNormal(Duration median, double sigma)
+		{
+			double mu = Math.log(Math.max(1, median.toMillis()));
+			return rnd -> Math.round(Math.exp(mu + sigma * rnd.nextGaussian()));
+		}
+	}
+
+	/**
+	 * The behavior and counters of one endpoint.
+	 */
+	private static class Endpoint
+	{
+		/**
+		 * How long the endpoint takes to answer
+		 */
+		volatile Latency latency = Latency.fixed(Duration.ZERO);
+
+		/**
+		 * The fraction of calls which fail
+		 */
+		volatile double errorRate;
+
+		/**
+		 * The number of calls received, and the number deliberately failed
+		 */
+		final AtomicLong calls = new AtomicLong(), errors = new AtomicLong();
+	}
+}
@@ -0,0 +1,187 @@
+package ai.test.sdk;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.IntSupplier;
+
+import javax.imageio.ImageIO;
+
+import org.openqa.selenium.NoSuchElementException;
+import org.openqa.selenium.remote.Command;
+import org.openqa.selenium.remote.DesiredCapabilities;
+import org.openqa.selenium.remote.DriverCommand;
+import org.openqa.selenium.remote.Response;
+import org.openqa.selenium.remote.SessionId;
+
+import io.appium.java_client.AppiumDriver;
+import io.appium.java_client.MobileCommand;
+import io.appium.java_client.MobileElement;
+import io.appium.java_client.remote.AppiumCommandExecutor;
+
+/**
+ * Creates {@code AppiumDriver}s which answer every command locally, without an Appium server, from synthetic screenshots and page sources. Element lookups succeed unless the locator contains
+ * {@link #MISSING}.
+ */
+final class StubAppiumDriver
+{
+	/**
+	 * Lookups whose locator contains this are answered with {@code NoSuchElementException}.
+	 */
+	static final String MISSING = "missing";
+
+	/**
+	 * Constructor, disabled.
+	 */
+	private StubAppiumDriver()
+	{
+	}
+
+	/**
+	 * Creates a stubbed Android driver.
+	 *
+	 * @param screenshot The PNG to answer screenshot commands with
+	 * @param pageSource The page source to answer page source commands with
+	 * @return A driver which never touches the network
+	 */
+	static AppiumDriver<MobileElement> create(byte[] screenshot, String pageSource)
+	{
+		return create(new byte[][] { screenshot }, new String[] { pageSource }, () -> 0);
+	}
+
+	/**
+	 * Creates a stubbed Android driver which shows one of several screens.
+	 *
+	 * @param screenshots The PNG of each screen
+	 * @param pageSources The page source of each screen
+	 * @param screen Gets the index of the screen currently shown
+	 * @return A driver which never touches the network
+	 */
+	static AppiumDriver<MobileElement> create(byte[][] screenshots, String[] pageSources, IntSupplier screen)
+	{
+		String[] pngs = new String[screenshots.length];
+		for (int i = 0; i < pngs.length; i++)
+			pngs[i] = Base64.getEncoder().encodeToString(screenshots[i]);
+
+		AppiumCommandExecutor executor;
+		try
+		{
+			executor = new AppiumCommandExecutor(MobileCommand.commandRepository, new URL("http://127.0.0.1:4723/wd/hub")) {
+				@Override
+				public Response execute(Command command)
+				{
+					Response r = new Response(new SessionId("stub"));
+					r.setStatus(0);
+					r.setState("success");
+
+					switch (command.getName())
+					{
+						case DriverCommand.NEW_SESSION:
+							r.setValue(Map.of("platformName", "Android", "automationName", "UiAutomator2", "deviceName", "stub"));
+							break;
+						case DriverCommand.FIND_ELEMENT:
+							if (String.valueOf(command.getParameters().get("value")).contains(MISSING))
+								throw new NoSuchElementException("Stubbed lookup failure");
+
+							r.setValue(Map.of("ELEMENT", "e1", "element-6066-11e4-a52e-4f735466cecf", "e1"));
+							break;
+						case DriverCommand.GET_ELEMENT_RECT:
+							r.setValue(Map.of("x", 40, "y", 600, "width", 320, "height", 96));
+							break;
+						case DriverCommand.GET_PAGE_SOURCE:
+							r.setValue(pageSources[screen.getAsInt()]);
+							break;
+						case DriverCommand.SCREENSHOT:
+							r.setValue(pngs[screen.getAsInt()]);
+							break;
+						case DriverCommand.GET_CURRENT_WINDOW_SIZE:
+							r.setValue(Map.of("width", 360, "height", 640));
+							break;
+						case DriverCommand.GET_SCREEN_ORIENTATION:
+							r.setValue("PORTRAIT");
+							break;
+						default:
+							r.setValue(null);
+					}
+
+					return r;
+				}
+			};
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return new AppiumDriver<>(executor, new DesiredCapabilities(Map.of("platformName", "Android")));
+	}
+
+	/**
+	 * Draws a synthetic app screen: a header, rows of list items, and a button, with some noise so it does not compress unrealistically well.
+	 *
+	 * @param width The width of the screen, in pixels
+	 * @param height The height of the screen, in pixels
+	 * @param seed Seeds the noise. Different seeds draw different screens.
+	 * @return The screen, as a PNG
+	 */
+	static byte[] screenshot(int width, int height, long seed)
+	{
+		BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		Random rnd = new Random(seed);
+
+		g.setColor(Color.WHITE);
+		g.fillRect(0, 0, width, height);
+		g.setColor(new Color(0x3F51B5));
+		g.fillRect(0, 0, width, height / 12);
+
+		for (int y = height / 10; y < height * 4 / 5; y += height / 14)
+		{
+			g.setColor(new Color(rnd.nextInt(0xFFFFFF)));
+			g.fillOval(width / 20, y, height / 20, height / 20);
+			g.setColor(Color.DARK_GRAY);
+			g.fillRect(width / 5, y + height / 80, width / 2 + rnd.nextInt(width / 4), height / 60);
+		}
+
+		g.setColor(new Color(0xFF4081));
+		g.fillRoundRect(width / 9, height * 15 / 16, width * 8 / 9, height / 20, 24, 24);
+		g.dispose();
+
+		for (int i = 0; i < width * height / 50; i++)
+			img.setRGB(rnd.nextInt(width), rnd.nextInt(height), rnd.nextInt(0xFFFFFF));
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ImageIO.write(img, "png", out);
+			return out.toByteArray();
+		}
+		catch (IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Generates a synthetic UiAutomator page source.
+	 *
+	 * @param nodes The number of nodes
+	 * @return The page source
+	 */
+	static String pageSource(int nodes)
+	{
+		StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?><hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\" width=\"1080\" height=\"1920\">");
+		for (int i = 0; i < nodes; i++)
+			sb.append(String.format(
+					"<android.widget.TextView index=\"%d\" package=\"com.example\" class=\"android.widget.TextView\" text=\"Item %d\" resource-id=\"com.example:id/item_%d\" checkable=\"false\" checked=\"false\" clickable=\"true\" enabled=\"true\" focusable=\"true\" focused=\"false\" long-clickable=\"false\" password=\"false\" scrollable=\"false\" selected=\"false\" bounds=\"[0,%d][1080,%d]\" displayed=\"true\" />",
+					i, i, i, i * 96, i * 96 + 96));
+
+		return sb.append("</hierarchy>").toString();
+	}
+}
@@ -0,0 +1,476 @@
+package ai.test.sdk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.openqa.selenium.Rectangle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * An append-only, memory-mapped journal of {@code add_action} records. Appending a record is a memory copy, and because the pages belong to the OS the journal survives a crash of the JVM.
+ * Journals are bulk-flushed to the server with {@link #replay(Path, OkHttpClient, HttpUrl, String)}, either at the end of the run or later on from a separate process (see
+ * {@link #main(String[])}).
+ * <p>
+ * Each record is laid out as {@code [int length][int crc32][payload]}. The length is written last, so a record torn by a crash is either invisible or fails its checksum, and replay stops there.
+ * {@code add_action} is not idempotent, so replay removes the records the server accepted from the journal, and only the rest are sent again by the next replay. An open journal and a replay both
+ * hold an exclusive lock on the file, so a journal is never replayed while it is still being written or by two replays at once.
+ */
+public final class ActionJournal implements Closeable
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(ActionJournal.class);
+
+	/**
+	 * The magic number at the start of every journal file.
+	 */
+	private static final int MAGIC = 0x54414a31; // "TAJ1"
+
+	/**
+	 * The file extension of journal files.
+	 */
+	static final String EXTENSION = ".journal";
+
+	/**
+	 * The amount of space, in bytes, to map at a time. The file grows by this much whenever it fills up.
+	 */
+	private static final int CHUNK = 1 << 20;
+
+	/**
+	 * The default maximum amount of time a replay waits for its records to be uploaded.
+	 */
+	static final Duration DEFAULT_DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+	/**
+	 * The path to the journal file.
+	 */
+	private final Path path;
+
+	/**
+	 * The channel to the journal file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The lock on the journal file, held until the journal is closed.
+	 */
+	private final FileLock lock;
+
+	/**
+	 * The currently mapped region of the journal file. Its position is the end of the last record.
+	 */
+	private MappedByteBuffer buf;
+
+	/**
+	 * Constructor, creates a new journal file for the specified run in {@code dir}.
+	 *
+	 * @param dir The directory to create the journal in. It will be created if it does not exist.
+	 * @param runID The run id, used to name the journal file.
+	 * @throws IOException If the journal could not be created.
+	 */
+	ActionJournal(Path dir, String runID) throws IOException
+	{
+		Files.createDirectories(dir);
+		path = dir.resolve("testai-" + runID + EXTENSION);
+
+		channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		lock = channel.lock();
+		buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, CHUNK);
+		buf.putInt(MAGIC);
+	}
+
+	/**
+	 * Gets the path to the journal file.
+	 *
+	 * @return The path to the journal file.
+	 */
+	public Path getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Appends an {@code add_action} record to the journal.
+	 *
+	 * @param key The key associated with the element
+	 * @param rect The location and size of the element
+	 * @param multiplier The screen density multiplier
+	 * @param runID The run id
+	 * @param trainIfNecessary Whether the model on the server should also be trained with this element
+	 * @throws IOException If the journal could not be grown.
+	 */
+	synchronized void append(String key, Rectangle rect, double multiplier, String runID, boolean trainIfNecessary) throws IOException
+	{
+		if (buf == null)
+			throw new IOException("Journal is closed: " + path);
+
+		byte[] k = Objects.toString(key, "").getBytes(StandardCharsets.UTF_8), r = runID.getBytes(StandardCharsets.UTF_8);
+
+		ByteBuffer payload = ByteBuffer.allocate(4 + k.length + 4 + r.length + 4 * 4 + 8 + 1);
+		payload.putInt(k.length).put(k).putInt(r.length).put(r).putInt(rect.x).putInt(rect.y).putInt(rect.width).putInt(rect.height).putDouble(multiplier).put((byte) (trainIfNecessary ? 1 : 0));
+
+		ensureRoom(8 + payload.capacity() + 4);
+
+		int start = buf.position();
+		buf.position(start + 4);
+		buf.putInt(crc(payload.array())).put(payload.array());
+		buf.putInt(start, payload.capacity());
+	}
+
+	/**
+	 * Computes the checksum of a record.
+	 *
+	 * @param payload The payload of the record
+	 * @return The CRC-32 of {@code payload}
+	 */
+	private static int crc(byte[] payload)
+	{
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Grows the mapped region if there are fewer than {@code n} bytes left in it. The trailing 4 bytes are always left zeroed, which marks the end of the journal.
+	 *
+	 * @param n The number of bytes which are about to be written
+	 * @throws IOException If the file could not be remapped.
+	 */
+	private void ensureRoom(int n) throws IOException
+	{
+		if (buf.remaining() >= n)
+			return;
+
+		int pos = buf.position();
+		long size = buf.capacity() + Math.max(CHUNK, n);
+
+		buf.force();
+		buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		buf.position(pos);
+	}
+
+	/**
+	 * Flushes the journal to disk and closes it. Records which were already appended remain in the file until it is replayed.
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (buf == null)
+			return;
+
+		buf.force();
+		buf = null;
+		lock.release();
+		channel.close();
+	}
+
+	/**
+	 * Reads all intact records from a journal file. Reading stops at the first missing or damaged record.
+	 *
+	 * @param file The journal file to read
+	 * @return The records in {@code file}, as {@code add_action} form data without an api key.
+	 * @throws IOException If the file could not be read or is not a journal.
+	 */
+	static List<HashMap<String, String>> read(Path file) throws IOException
+	{
+		return readPayloads(file).stream().map(ActionJournal::decode).collect(Collectors.toList());
+	}
+
+	/**
+	 * Reads the payloads of all intact records from a journal file. Reading stops at the first missing or damaged record.
+	 *
+	 * @param file The journal file to read
+	 * @return The payloads of the records in {@code file}
+	 * @throws IOException If the file could not be read or is not a journal.
+	 */
+	private static List<byte[]> readPayloads(Path file) throws IOException
+	{
+		try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			return readPayloads(file, fc);
+		}
+	}
+
+	/**
+	 * Reads the payloads of all intact records from an open journal file. Reading stops at the first missing or damaged record.
+	 *
+	 * @param file The journal file to read, for logging
+	 * @param fc The channel to the journal file. Reading through the channel which holds the lock on the file keeps the lock, closing another channel to the file may release it.
+	 * @return The payloads of the records in {@code file}
+	 * @throws IOException If the file could not be read or is not a journal.
+	 */
+	private static List<byte[]> readPayloads(Path file, FileChannel fc) throws IOException
+	{
+		List<byte[]> l = new ArrayList<>();
+		ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+		if (b.remaining() < 4 || b.getInt() != MAGIC)
+			throw new IOException("Not a test.ai journal: " + file);
+
+		while (b.remaining() >= 8)
+		{
+			int len = b.getInt(), crc = b.getInt();
+			if (len <= 0 || len > b.remaining())
+				break;
+
+			byte[] payload = new byte[len];
+			b.get(payload);
+
+			if (crc(payload) != crc)
+			{
+				log.warn("Damaged record in {}, ignoring the rest of the journal", file);
+				break;
+			}
+
+			try
+			{
+				decode(payload);
+			}
+			catch (BufferUnderflowException e)
+			{
+				break;
+			}
+
+			l.add(payload);
+		}
+
+		return l;
+	}
+
+	/**
+	 * Decodes the payload of a record.
+	 *
+	 * @param payload The payload to decode
+	 * @return The record, as {@code add_action} form data without an api key.
+	 * @throws BufferUnderflowException If the payload is truncated.
+	 */
+	private static HashMap<String, String> decode(byte[] payload)
+	{
+		ByteBuffer p = ByteBuffer.wrap(payload);
+		String key = readString(p), runID = readString(p);
+		return CollectionUtils.keyValuesToHM("key", key, "run_id", runID, "x", Integer.toString(p.getInt()), "y", Integer.toString(p.getInt()), "width", Integer.toString(p.getInt()), "height",
+				Integer.toString(p.getInt()), "multiplier", Double.toString(p.getDouble()), "train_if_necessary", Boolean.toString(p.get() != 0));
+	}
+
+	/**
+	 * Replaces a journal file with one holding only the specified records. The new file is written next to the old one and moved over it, so a crash leaves one or the other intact.
+	 *
+	 * @param file The journal file to replace
+	 * @param payloads The payloads of the records to keep
+	 * @throws IOException If the file could not be written.
+	 */
+	private static void rewrite(Path file, List<byte[]> payloads) throws IOException
+	{
+		int size = 4;
+		for (byte[] p : payloads)
+			size += 8 + p.length;
+
+		ByteBuffer b = ByteBuffer.allocate(size).putInt(MAGIC);
+		for (byte[] p : payloads)
+			b.putInt(p.length).putInt(crc(p)).put(p);
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileChannel fc = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			b.flip();
+			while (b.hasRemaining())
+				fc.write(b);
+
+			fc.force(true);
+		}
+
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Reads a length-prefixed UTF-8 String from a buffer.
+	 *
+	 * @param b The buffer to read from
+	 * @return The String that was read
+	 */
+	private static String readString(ByteBuffer b)
+	{
+		byte[] s = new byte[b.getInt()];
+		b.get(s);
+		return new String(s, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Uploads every record in a journal file to the server in bulk, waiting at most {@link #DEFAULT_DRAIN_TIMEOUT} for them to be uploaded. See
+	 * {@link #replay(Path, OkHttpClient, HttpUrl, String, Duration)}.
+	 *
+	 * @param file The journal file to replay
+	 * @param client The OkHTTP client to use
+	 * @param serverURL The base URL of the target server
+	 * @param apiKey The API key to upload the records with
+	 * @return {@code true} if all records were uploaded and the file was deleted.
+	 * @throws IOException If the file could not be read or rewritten.
+	 */
+	public static boolean replay(Path file, OkHttpClient client, HttpUrl serverURL, String apiKey) throws IOException
+	{
+		return replay(file, client, serverURL, apiKey, DEFAULT_DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Uploads every record in a journal file to the server in bulk. The file is deleted if all of them were accepted, otherwise it is rewritten to hold only the records which were not, so a later
+	 * replay does not send any record twice. A journal which is still open, or which another replay is working on, is skipped.
+	 *
+	 * @param file The journal file to replay
+	 * @param client The OkHTTP client to use
+	 * @param serverURL The base URL of the target server
+	 * @param apiKey The API key to upload the records with
+	 * @param drainTimeout The maximum amount of time to wait for the records to be uploaded. Records which were not uploaded by then are kept in the journal.
+	 * @return {@code true} if all records were uploaded and the file was deleted, {@code false} if some were not or the journal was skipped.
+	 * @throws IOException If the file could not be read or rewritten.
+	 */
+	public static boolean replay(Path file, OkHttpClient client, HttpUrl serverURL, String apiKey, Duration drainTimeout) throws IOException
+	{
+		try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE); FileLock l = tryLock(fc))
+		{
+			if (l == null)
+			{
+				log.info("{} is in use, skipping it", file);
+				return false;
+			}
+
+			return replayLocked(file, fc, client, serverURL, apiKey, drainTimeout);
+		}
+	}
+
+	/**
+	 * Locks a journal file without waiting.
+	 *
+	 * @param fc The channel to the journal file
+	 * @return The lock, or {@code null} if the file is locked by this or another process.
+	 * @throws IOException If the file could not be locked.
+	 */
+	private static FileLock tryLock(FileChannel fc) throws IOException
+	{
+		try
+		{
+			return fc.tryLock();
+		}
+		catch (OverlappingFileLockException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Uploads every record in a journal file which the caller has locked.
+	 *
+	 * @param file The journal file to replay
+	 * @param fc The channel holding the lock on {@code file}
+	 * @param client The OkHTTP client to use
+	 * @param serverURL The base URL of the target server
+	 * @param apiKey The API key to upload the records with
+	 * @param drainTimeout The maximum amount of time to wait for the records to be uploaded
+	 * @return {@code true} if all records were uploaded and the file was deleted.
+	 * @throws IOException If the file could not be read or rewritten.
+	 */
+	private static boolean replayLocked(Path file, FileChannel fc, OkHttpClient client, HttpUrl serverURL, String apiKey, Duration drainTimeout) throws IOException
+	{
+		List<byte[]> payloads = readPayloads(file, fc);
+		log.info("Replaying {} add_action record(s) from {}", payloads.size(), file);
+
+		Set<HashMap<String, String>> accepted = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		ActionUploader u = new ActionUploader(client, serverURL).setQueueCapacity(payloads.size()).setBatchSize(64).setOutcomeListener((form, ok) -> {
+			if (ok)
+				accepted.add(form);
+		});
+
+		List<HashMap<String, String>> records = new ArrayList<>();
+		for (byte[] p : payloads)
+		{
+			HashMap<String, String> form = decode(p);
+			form.put("api_key", apiKey);
+			records.add(form);
+			u.submit(form);
+		}
+
+		u.close(drainTimeout);
+
+		List<byte[]> rest = new ArrayList<>();
+		synchronized (accepted)
+		{
+			for (int i = 0; i < records.size(); i++)
+				if (!accepted.contains(records.get(i)))
+					rest.add(payloads.get(i));
+		}
+
+		if (!rest.isEmpty())
+		{
+			log.warn("{} of {} record(s) from {} could not be uploaded, keeping them in the journal", rest.size(), records.size(), file);
+			rewrite(file, rest);
+			return false;
+		}
+
+		Files.delete(file);
+		return true;
+	}
+
+	/**
+	 * Replays journals from a separate process, e.g. after a run whose JVM crashed. Journals which are still open are skipped. Exits with status 1 if any journal was skipped or could not be fully
+	 * uploaded.
+	 * <p>
+	 * Usage: {@code ActionJournal <api key> <journal file or directory> [server url] [drain timeout in seconds]}
+	 *
+	 * @param args The command line arguments
+	 * @throws IOException If a journal could not be read.
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.err.println("Usage: ActionJournal <api key> <journal file or directory> [server url] [drain timeout in seconds]");
+			System.exit(2);
+		}
+
+		HttpUrl serverURL = HttpUrl.parse(args.length > 2 ? args[2] : Objects.requireNonNullElse(System.getenv("TESTAI_FLUFFY_DRAGON_URL"), "https://sdk.test.ai"));
+		Duration drainTimeout = args.length > 3 ? Duration.ofSeconds(Long.parseLong(args[3])) : DEFAULT_DRAIN_TIMEOUT;
+		OkHttpClient client = NetUtils.basicClient().build();
+
+		Path p = Paths.get(args[1]);
+		List<Path> files;
+		if (Files.isDirectory(p))
+			try (Stream<Path> s = Files.list(p))
+			{
+				files = s.filter(f -> f.toString().endsWith(EXTENSION)).sorted().collect(Collectors.toList());
+			}
+		else
+			files = List.of(p);
+
+		boolean ok = true;
+		for (Path f : files)
+			ok &= replay(f, client, serverURL, args[0], drainTimeout);
+
+		System.exit(ok ? 0 : 1);
+	}
+}
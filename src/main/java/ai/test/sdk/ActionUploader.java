@@ -0,0 +1,573 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Uploads {@code add_action} records to the test.ai server in the background. Records are queued by the calling thread and sent in batches by a single daemon worker, so a successful element
+ * lookup never waits on the network. When the queue is full, new records are dropped (and counted) instead of blocking the test.
+ */
+public final class ActionUploader
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(ActionUploader.class);
+
+	/**
+	 * Sentinel which asks the worker to send whatever it has batched up right away. Compared by identity.
+	 */
+	private static final HashMap<String, String> FLUSH = new HashMap<>();
+
+	/**
+	 * The client to use for making http requests
+	 */
+	private final OkHttpClient client;
+
+	/**
+	 * Receives the duration of each upload
+	 */
+	private volatile Metrics metrics = Metrics.NOOP;
+
+	/**
+	 * Told the outcome of each record once its upload has finished: {@code true} if the server accepted it. May be {@code null}.
+	 */
+	private volatile BiConsumer<HashMap<String, String>, Boolean> outcomeListener;
+
+	/**
+	 * The base URL of the target server
+	 */
+	private final HttpUrl serverURL;
+
+	/**
+	 * The pending records, in the order they were submitted
+	 */
+	private final LinkedBlockingQueue<HashMap<String, String>> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * The number of records in {@link #queue}, not counting flush sentinels. Only changed while holding {@link #lock}.
+	 */
+	private final AtomicInteger queued = new AtomicInteger();
+
+	/**
+	 * Guards accepting records: checking that this uploader is running, reserving room in the queue, and enqueueing happen atomically with respect to {@link #close(Duration)}.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * Signalled whenever the worker takes a record off the queue, making room for another.
+	 */
+	private final Condition notFull = lock.newCondition();
+
+	/**
+	 * The number of records which have been accepted but whose upload has not finished yet. Guarded by itself for {@code wait()}/{@code notifyAll()}.
+	 */
+	private final AtomicLong pending = new AtomicLong();
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private final AtomicLong submitted = new AtomicLong(), sent = new AtomicLong(), failed = new AtomicLong(), dropped = new AtomicLong(), backpressured = new AtomicLong(),
+			batches = new AtomicLong();
+
+	/**
+	 * The maximum number of records which may be waiting in the queue.
+	 */
+	private volatile int queueCapacity = 1024;
+
+	/**
+	 * The maximum number of records to send per batch.
+	 */
+	private volatile int batchSize = 32;
+
+	/**
+	 * The maximum amount of time, in milliseconds, a record may wait for its batch to fill up before being sent.
+	 */
+	private volatile long flushIntervalMillis = 2000;
+
+	/**
+	 * The maximum amount of time, in milliseconds, a caller is willing to wait for room in a full queue before the record is dropped.
+	 */
+	private volatile long offerTimeoutMillis = 0;
+
+	/**
+	 * Indicates whether this uploader is still accepting records. Only set while holding {@link #lock}.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * The background thread sending batches.
+	 */
+	private final Thread worker;
+
+	/**
+	 * Constructor, creates a new ActionUploader and starts its worker thread.
+	 *
+	 * @param client The OkHTTP client to use
+	 * @param serverURL The base URL of the target server
+	 */
+	ActionUploader(OkHttpClient client, HttpUrl serverURL)
+	{
+		this.client = client;
+		this.serverURL = serverURL;
+
+		worker = new Thread(this::run, "testai-action-uploader");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * Sets the maximum number of records which may be waiting to be uploaded. Records submitted while the queue is full are dropped. Default is 1024.
+	 *
+	 * @param queueCapacity The new queue capacity
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	public ActionUploader setQueueCapacity(int queueCapacity)
+	{
+		this.queueCapacity = Math.max(1, queueCapacity);
+		return this;
+	}
+
+	/**
+	 * Sets the metrics the duration of each upload is reported to.
+	 *
+	 * @param metrics The metrics to report to
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	ActionUploader setMetrics(Metrics metrics)
+	{
+		this.metrics = metrics != null ? metrics : Metrics.NOOP;
+		return this;
+	}
+
+	/**
+	 * Sets the listener told the outcome of each record once its upload has finished, e.g. to find out which records must be kept for a later retry. Called on OkHttp's threads.
+	 *
+	 * @param outcomeListener Receives each record, and {@code true} if the server accepted it. Set {@code null} to remove the listener.
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	ActionUploader setOutcomeListener(BiConsumer<HashMap<String, String>, Boolean> outcomeListener)
+	{
+		this.outcomeListener = outcomeListener;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of records to upload per batch. A batch is sent as soon as it is full. Default is 32.
+	 *
+	 * @param batchSize The new batch size
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	public ActionUploader setBatchSize(int batchSize)
+	{
+		this.batchSize = Math.max(1, batchSize);
+		return this;
+	}
+
+	/**
+	 * Sets the maximum amount of time a record may wait for its batch to fill up before being sent anyways. Default is 2 seconds.
+	 *
+	 * @param flushInterval The new flush interval
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	public ActionUploader setFlushInterval(Duration flushInterval)
+	{
+		flushIntervalMillis = Math.max(1, flushInterval.toMillis());
+		return this;
+	}
+
+	/**
+	 * Sets the maximum amount of time the test thread may wait for room in a full queue. Default is 0, meaning records are dropped immediately if the queue is full.
+	 *
+	 * @param offerTimeout The new offer timeout
+	 * @return This {@code ActionUploader}, for chaining convenience.
+	 */
+	public ActionUploader setOfferTimeout(Duration offerTimeout)
+	{
+		offerTimeoutMillis = Math.max(0, offerTimeout.toMillis());
+		return this;
+	}
+
+	/**
+	 * Queues a record for upload. Never blocks for longer than the offer timeout.
+	 *
+	 * @param form The {@code add_action} form data to upload
+	 * @return {@code true} if the record was accepted, {@code false} if it was dropped.
+	 */
+	boolean submit(HashMap<String, String> form)
+	{
+		submitted.incrementAndGet();
+
+		lock.lock();
+		try
+		{
+			if (reserve())
+			{
+				pending.incrementAndGet();
+				queue.add(form);
+				return true;
+			}
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		dropped.incrementAndGet();
+		log.debug("add_action queue is full or closed, dropping record for key {}", form.get("key"));
+		return false;
+	}
+
+	/**
+	 * Reserves a slot in the queue, waiting up to the offer timeout if the queue is currently full. Must be called while holding {@link #lock}, which is released while waiting.
+	 *
+	 * @return {@code true} if a slot was reserved, {@code false} if the queue stayed full or this uploader was closed.
+	 */
+	private boolean reserve()
+	{
+		if (running && queued.get() >= queueCapacity)
+		{
+			backpressured.incrementAndGet();
+
+			long remaining = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+			while (running && queued.get() >= queueCapacity && remaining > 0)
+				try
+				{
+					remaining = notFull.awaitNanos(remaining);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					return false;
+				}
+		}
+
+		if (!running || queued.get() >= queueCapacity)
+			return false;
+
+		queued.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Asks the worker to send any batched records right away, and waits for all records accepted so far to finish uploading.
+	 *
+	 * @param timeout The maximum amount of time to wait
+	 * @return {@code true} if everything was uploaded before the timeout elapsed.
+	 */
+	public boolean flush(Duration timeout)
+	{
+		queue.add(FLUSH);
+
+		long deadline = System.currentTimeMillis() + timeout.toMillis();
+		synchronized (pending)
+		{
+			long remaining;
+			while (pending.get() > 0 && (remaining = deadline - System.currentTimeMillis()) > 0)
+				try
+				{
+					pending.wait(remaining);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+			return pending.get() == 0;
+		}
+	}
+
+	/**
+	 * Stops accepting new records, flushes everything that was already accepted, and stops the worker thread.
+	 *
+	 * @param timeout The maximum amount of time to wait for pending records to be uploaded
+	 * @return {@code true} if everything was uploaded before the timeout elapsed.
+	 */
+	public boolean close(Duration timeout)
+	{
+		lock.lock();
+		try
+		{
+			// from here on submit() rejects records, so the worker cannot miss any on its way out
+			running = false;
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		boolean ok = flush(timeout);
+
+		worker.interrupt();
+		if (!ok)
+			log.warn("Timed out waiting for {} add_action record(s) to upload", pending.get());
+
+		return ok;
+	}
+
+	/**
+	 * The worker loop. Collects records into batches which are sent when full, when the oldest record has waited for the flush interval, or when a flush is requested.
+	 */
+	private void run()
+	{
+		List<HashMap<String, String>> batch = new ArrayList<>();
+
+		while (running || !queue.isEmpty())
+		{
+			try
+			{
+				HashMap<String, String> first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+
+				boolean flushNow = take(first, batch);
+
+				long deadline = System.currentTimeMillis() + flushIntervalMillis, remaining;
+				while (!flushNow && batch.size() < batchSize && (remaining = deadline - System.currentTimeMillis()) > 0)
+				{
+					HashMap<String, String> next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+					if (next == null)
+						break;
+
+					flushNow = take(next, batch);
+				}
+			}
+			catch (InterruptedException e)
+			{
+				// close() was called; drain whatever is left below.
+				List<HashMap<String, String>> rest = new ArrayList<>();
+				queue.drainTo(rest);
+				rest.forEach(f -> take(f, batch));
+			}
+
+			if (!batch.isEmpty())
+			{
+				send(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	/**
+	 * Moves a record taken off the queue into the current batch.
+	 *
+	 * @param form The record taken off the queue
+	 * @param batch The batch being assembled
+	 * @return {@code true} if {@code form} was a flush request.
+	 */
+	private boolean take(HashMap<String, String> form, List<HashMap<String, String>> batch)
+	{
+		if (form == FLUSH)
+			return true;
+
+		lock.lock();
+		try
+		{
+			queued.decrementAndGet();
+			notFull.signal();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+
+		batch.add(form);
+		return false;
+	}
+
+	/**
+	 * Sends a batch of records. The requests are dispatched together so they share connections and overlap their round trips, and this method returns when all of them have completed.
+	 *
+	 * @param batch The records to send
+	 */
+	private void send(List<HashMap<String, String>> batch)
+	{
+		batches.incrementAndGet();
+		log.debug("Uploading a batch of {} add_action record(s)", batch.size());
+
+		Duration timeout = TransportRegistry.getLatencyTracker().getAdaptiveTimeout("add_action");
+
+		CountDownLatch latch = new CountDownLatch(batch.size());
+		for (HashMap<String, String> form : batch)
+		{
+			AddActionEvent ev = new AddActionEvent();
+			ev.key = form.get("key");
+			ev.begin();
+
+			long start = System.nanoTime();
+			Call c = NetUtils.newPOST(client, serverURL, "add_action", form);
+			if (timeout != null && (client.callTimeoutMillis() == 0 || timeout.toMillis() < client.callTimeoutMillis()))
+				c.timeout().timeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+
+			c.enqueue(new Callback() {
+				@Override
+				public void onResponse(Call call, Response response)
+				{
+					try (response)
+					{
+						(response.isSuccessful() ? sent : failed).incrementAndGet();
+						metrics.recordTime(Metrics.ADD_ACTION, System.nanoTime() - start, "outcome", response.isSuccessful() ? "success" : "failure");
+
+						ev.status = response.code();
+						ev.success = response.isSuccessful();
+						ev.commit();
+
+						notifyOutcome(form, response.isSuccessful());
+					}
+					finally
+					{
+						done(latch);
+					}
+				}
+
+				@Override
+				public void onFailure(Call call, IOException e)
+				{
+					failed.incrementAndGet();
+					metrics.recordTime(Metrics.ADD_ACTION, System.nanoTime() - start, "outcome", "failure");
+					ev.commit();
+					log.warn("Failed to upload add_action record: {}", e.getMessage());
+					notifyOutcome(form, false);
+					done(latch);
+				}
+			});
+		}
+
+		try
+		{
+			latch.await();
+		}
+		catch (InterruptedException e)
+		{
+			// close() was called mid-batch; the callbacks will still finish up on their own.
+		}
+	}
+
+	/**
+	 * Tells the outcome listener, if any, how the upload of a record went.
+	 *
+	 * @param form The record which was uploaded
+	 * @param success {@code true} if the server accepted the record
+	 */
+	private void notifyOutcome(HashMap<String, String> form, boolean success)
+	{
+		BiConsumer<HashMap<String, String>, Boolean> l = outcomeListener;
+		if (l != null)
+			try
+			{
+				l.accept(form, success);
+			}
+			catch (Throwable e)
+			{
+				log.warn("add_action outcome listener failed", e);
+			}
+	}
+
+	/**
+	 * Marks one record as finished, waking up anyone waiting in {@link #flush(Duration)} once nothing is pending.
+	 *
+	 * @param latch The latch of the batch the record belongs to
+	 */
+	private void done(CountDownLatch latch)
+	{
+		latch.countDown();
+
+		synchronized (pending)
+		{
+			if (pending.decrementAndGet() <= 0)
+				pending.notifyAll();
+		}
+	}
+
+	/**
+	 * Gets the number of records submitted so far, including any which were dropped.
+	 *
+	 * @return The number of records submitted so far
+	 */
+	public long getSubmittedCount()
+	{
+		return submitted.get();
+	}
+
+	/**
+	 * Gets the number of records which were successfully uploaded.
+	 *
+	 * @return The number of records which were successfully uploaded
+	 */
+	public long getSentCount()
+	{
+		return sent.get();
+	}
+
+	/**
+	 * Gets the number of records whose upload failed or was rejected by the server.
+	 *
+	 * @return The number of records whose upload failed
+	 */
+	public long getFailedCount()
+	{
+		return failed.get();
+	}
+
+	/**
+	 * Gets the number of records which were dropped because the queue was full or the uploader was closed.
+	 *
+	 * @return The number of dropped records
+	 */
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	/**
+	 * Gets the number of times a caller found the queue full. Each of these either waited for the offer timeout or had its record dropped.
+	 *
+	 * @return The number of times the queue applied backpressure
+	 */
+	public long getBackpressureCount()
+	{
+		return backpressured.get();
+	}
+
+	/**
+	 * Gets the number of batches sent so far.
+	 *
+	 * @return The number of batches sent so far
+	 */
+	public long getBatchCount()
+	{
+		return batches.get();
+	}
+
+	/**
+	 * Gets the number of records currently waiting in the queue.
+	 *
+	 * @return The number of records currently waiting in the queue
+	 */
+	public int getQueuedCount()
+	{
+		return queued.get();
+	}
+}
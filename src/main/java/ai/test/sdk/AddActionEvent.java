@@ -0,0 +1,38 @@
+package ai.test.sdk;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one background {@code add_action} upload, from enqueueing the call to its completion. It is committed on the OkHttp thread which completed the call.
+ */
+@Name("ai.test.sdk.AddAction")
+@Label("test.ai Add Action")
+@Category("test.ai SDK")
+@Description("Upload of an element record to the test.ai server")
+@StackTrace(false)
+final class AddActionEvent extends Event
+{
+	/**
+	 * The key of the element
+	 */
+	@Label("Key")
+	String key;
+
+	/**
+	 * The http status of the response
+	 */
+	@Label("Status")
+	@Description("The http status of the response, or -1 on network error")
+	int status = -1;
+
+	/**
+	 * Indicates whether the upload succeeded
+	 */
+	@Label("Success")
+	boolean success;
+}
@@ -0,0 +1,319 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import ai.test.sdk.CollectionUtils.Tuple;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * Runs driver operations asynchronously. While an operation runs, the http calls it makes through {@link #execute(Call)} are sent with OkHttp's {@code enqueue()} instead of {@code execute()}, and
+ * cancelling the operation's future cancels the http call in flight.
+ */
+final class AsyncCalls
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(AsyncCalls.class);
+
+	/**
+	 * The executor used when the user has not configured one. Virtual threads if the JVM has them, otherwise a cached pool of daemon threads.
+	 */
+	static final ExecutorService DEFAULT_EXECUTOR = defaultExecutor();
+
+	/**
+	 * The operation running on the current thread, if any.
+	 */
+	private static final ThreadLocal<AsyncCalls> CURRENT = new ThreadLocal<>();
+
+	/**
+	 * The number of hedged requests sent so far, across all operations.
+	 */
+	private static final AtomicLong hedges = new AtomicLong();
+
+	/**
+	 * The http calls which were cancelled because nobody waits for their response any more, as opposed to calls OkHttp cancelled because they timed out. Weak, so finished calls are not kept.
+	 */
+	private static final Set<Call> abandoned = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+
+	/**
+	 * The http calls this operation is currently waiting on.
+	 */
+	private final Set<Call> calls = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Indicates whether this operation was cancelled.
+	 */
+	private volatile boolean cancelled;
+
+	/**
+	 * Constructor, creates a new AsyncCalls for a single operation.
+	 */
+	private AsyncCalls()
+	{
+	}
+
+	/**
+	 * Runs an operation asynchronously. The operation is blocking code, so it holds a thread of {@code executor} until it completes.
+	 *
+	 * @param <X> The type of the result of the operation
+	 * @param task The operation to run
+	 * @param executor The executor to run {@code task} on
+	 * @return A future for the result of {@code task}. Cancelling it cancels any http call {@code task} is waiting on. The deadline of the calling thread, if any, applies to {@code task} too.
+	 */
+	static <X> CompletableFuture<X> supply(Callable<X> task, Executor executor)
+	{
+		AsyncCalls scope = new AsyncCalls();
+		Long deadline = CallDeadline.get();
+		CompletableFuture<X> f = new CompletableFuture<X>() {
+			@Override
+			public boolean cancel(boolean mayInterruptIfRunning)
+			{
+				scope.cancel();
+				return super.cancel(mayInterruptIfRunning);
+			}
+		};
+
+		try
+		{
+			executor.execute(() -> {
+				if (scope.cancelled)
+					return;
+
+				CURRENT.set(scope);
+				CallDeadline.set(deadline);
+				try
+				{
+					f.complete(task.call());
+				}
+				catch (Throwable e)
+				{
+					f.completeExceptionally(e);
+				}
+				finally
+				{
+					CURRENT.remove();
+					CallDeadline.set(null);
+				}
+			});
+		}
+		catch (Throwable e)
+		{
+			f.completeExceptionally(e);
+		}
+
+		return f;
+	}
+
+	/**
+	 * Executes an http call. On threads running an operation started by {@link #supply(Callable, Executor)}, the call is enqueued on OkHttp's dispatcher and can be cancelled along with the
+	 * operation; everywhere else it is simply executed.
+	 *
+	 * @param c The call to execute
+	 * @return The response
+	 * @throws IOException Network error, or the operation was cancelled.
+	 */
+	static Response execute(Call c) throws IOException
+	{
+		return execute(c, -1);
+	}
+
+	/**
+	 * Executes an http call, optionally hedging it: if there is no response after {@code hedgeAfterNanos}, a duplicate of the call is sent, and whichever answers first wins. The other one is
+	 * cancelled. Only idempotent calls should be hedged.
+	 *
+	 * @param c The call to execute
+	 * @param hedgeAfterNanos How long to wait for a response before sending the duplicate, in nanoseconds. Set 0 or less to not hedge.
+	 * @return The response
+	 * @throws IOException Network error, or the operation was cancelled.
+	 */
+	static Response execute(Call c, long hedgeAfterNanos) throws IOException
+	{
+		AsyncCalls scope = CURRENT.get();
+		if (hedgeAfterNanos <= 0)
+			return scope != null ? scope.enqueue(c, -1) : c.execute();
+
+		return (scope != null ? scope : new AsyncCalls()).enqueue(c, hedgeAfterNanos);
+	}
+
+	/**
+	 * Enqueues an http call (and, if it is slow, a duplicate of it) and waits for the first response.
+	 *
+	 * @param c The call to enqueue
+	 * @param hedgeAfterNanos How long to wait for a response before enqueuing a duplicate of {@code c}, in nanoseconds. Set 0 or less to not hedge.
+	 * @return The response
+	 * @throws IOException Network error, or this operation was cancelled.
+	 */
+	private Response enqueue(Call c, long hedgeAfterNanos) throws IOException
+	{
+		CompletableFuture<Tuple<Call, Response>> f = new CompletableFuture<>();
+		AtomicInteger pending = new AtomicInteger();
+		List<Call> started = new ArrayList<>(2);
+		Call winner = null;
+
+		start(c, f, pending, started);
+		try
+		{
+			Tuple<Call, Response> t;
+			try
+			{
+				t = hedgeAfterNanos > 0 ? f.get(hedgeAfterNanos, TimeUnit.NANOSECONDS) : f.get();
+			}
+			catch (TimeoutException e)
+			{
+				log.debug("No response from {} after {} ms, sending a hedged request", c.request().url(), hedgeAfterNanos / 1000000);
+				hedges.incrementAndGet();
+
+				// clones get the client's call timeout, so carry over what is left of the original's
+				Call h = c.clone();
+				if (c.timeout().timeoutNanos() > 0)
+					h.timeout().timeout(Math.max(1, c.timeout().timeoutNanos() - hedgeAfterNanos), TimeUnit.NANOSECONDS);
+
+				start(h, f, pending, started);
+				t = f.get();
+			}
+
+			winner = t.k;
+			return t.v;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for " + c.request().url());
+		}
+		catch (ExecutionException e)
+		{
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+		finally
+		{
+			for (Call x : started)
+			{
+				calls.remove(x);
+				if (x != winner)
+					abandon(x);
+			}
+		}
+	}
+
+	/**
+	 * Enqueues one of the calls {@link #enqueue(Call, long)} is waiting on.
+	 *
+	 * @param c The call to enqueue
+	 * @param f Completed with the first response, or with the last failure if every call fails
+	 * @param pending The number of calls which have not answered yet
+	 * @param started The calls which were started so far
+	 */
+	private void start(Call c, CompletableFuture<Tuple<Call, Response>> f, AtomicInteger pending, List<Call> started)
+	{
+		pending.incrementAndGet();
+		started.add(c);
+		calls.add(c);
+		if (cancelled)
+			abandon(c);
+
+		c.enqueue(new Callback() {
+			@Override
+			public void onResponse(Call call, Response response)
+			{
+				pending.decrementAndGet();
+				if (!f.complete(new Tuple<>(call, response)))
+					response.close();
+			}
+
+			@Override
+			public void onFailure(Call call, IOException e)
+			{
+				if (pending.decrementAndGet() == 0)
+					f.completeExceptionally(e);
+			}
+		});
+	}
+
+	/**
+	 * Gets the number of hedged requests sent so far.
+	 *
+	 * @return The number of duplicate requests sent because the original was slow
+	 */
+	static long getHedgeCount()
+	{
+		return hedges.get();
+	}
+
+	/**
+	 * Cancels this operation and the http calls it is waiting on, if any.
+	 */
+	private void cancel()
+	{
+		cancelled = true;
+		calls.forEach(AsyncCalls::abandon);
+	}
+
+	/**
+	 * Cancels an http call because nobody waits for its response any more.
+	 *
+	 * @param c The call to cancel
+	 */
+	private static void abandon(Call c)
+	{
+		abandoned.add(c);
+		c.cancel();
+	}
+
+	/**
+	 * Determines if an http call was cancelled because nobody waits for its response any more, e.g. it lost a hedge or its operation was cancelled. Calls which were cancelled because they timed
+	 * out are not abandoned.
+	 *
+	 * @param c The call
+	 * @return {@code true} if {@code c} was abandoned.
+	 */
+	static boolean isAbandoned(Call c)
+	{
+		return abandoned.contains(c);
+	}
+
+	/**
+	 * Creates the default executor, preferring virtual threads (Java 21+), which are looked up reflectively so the SDK still runs on Java 11.
+	 *
+	 * @return The default executor
+	 */
+	private static ExecutorService defaultExecutor()
+	{
+		try
+		{
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		}
+		catch (Throwable e)
+		{
+			log.debug("Virtual threads are not available, using platform threads for async operations");
+		}
+
+		return Executors.newCachedThreadPool(r -> {
+			Thread t = new Thread(r, "testai-async");
+			t.setDaemon(true);
+			return t;
+		});
+	}
+}
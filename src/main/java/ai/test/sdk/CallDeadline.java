@@ -0,0 +1,112 @@
+package ai.test.sdk;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+
+/**
+ * The deadline of the lookup running on the current thread. Deadlines are set with {@link #within(Duration, Supplier)}, and every server call made before the deadline gets a call timeout no
+ * longer than the time remaining.
+ */
+final class CallDeadline
+{
+	/**
+	 * The {@code System.nanoTime()} by which the current lookup must complete, or {@code null} if there is no deadline.
+	 */
+	private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+	/**
+	 * Constructor, private to prevent instantiation.
+	 */
+	private CallDeadline()
+	{
+	}
+
+	/**
+	 * Runs an action with a deadline. If a deadline is already set on this thread, the earlier of the two applies.
+	 *
+	 * @param <X> The type of the result of the action
+	 * @param budget The amount of time the action may take
+	 * @param action The action to run
+	 * @return The result of {@code action}
+	 */
+	static <X> X within(Duration budget, Supplier<X> action)
+	{
+		Long prev = DEADLINE.get();
+		long d = System.nanoTime() + budget.toNanos();
+		if (prev != null && prev - d < 0)
+			d = prev;
+
+		DEADLINE.set(d);
+		try
+		{
+			return action.get();
+		}
+		finally
+		{
+			set(prev);
+		}
+	}
+
+	/**
+	 * Gets the deadline of the current thread, so it can be carried over to another thread.
+	 *
+	 * @return The deadline, or {@code null} if there is none.
+	 */
+	static Long get()
+	{
+		return DEADLINE.get();
+	}
+
+	/**
+	 * Sets the deadline of the current thread.
+	 *
+	 * @param deadline The deadline, as returned by {@link #get()}, or {@code null} to clear it.
+	 */
+	static void set(Long deadline)
+	{
+		if (deadline != null)
+			DEADLINE.set(deadline);
+		else
+			DEADLINE.remove();
+	}
+
+	/**
+	 * Gets the time remaining until the deadline of the current thread.
+	 *
+	 * @return The remaining time in nanoseconds, which may be negative, or {@code Long.MAX_VALUE} if there is no deadline.
+	 */
+	static long remainingNanos()
+	{
+		Long d = DEADLINE.get();
+		return d != null ? d - System.nanoTime() : Long.MAX_VALUE;
+	}
+
+	/**
+	 * Shortens the timeout of a call which has not been executed yet to fit the deadline of the current thread and the adaptive timeout of its endpoint. The timeout is never made longer than the
+	 * client's own call timeout.
+	 *
+	 * @param c The call
+	 * @param client The client which created {@code c}
+	 * @param adaptive The adaptive timeout of the call's endpoint, or {@code null} if there is none.
+	 * @throws InterruptedIOException If the deadline has already passed.
+	 */
+	static void apply(Call c, OkHttpClient client, Duration adaptive) throws InterruptedIOException
+	{
+		long t = remainingNanos();
+		if (t <= 0)
+			throw new InterruptedIOException("Deadline exceeded before calling " + c.request().url());
+
+		if (adaptive != null)
+			t = Math.min(t, adaptive.toNanos());
+		if (client.callTimeoutMillis() > 0)
+			t = Math.min(t, TimeUnit.MILLISECONDS.toNanos(client.callTimeoutMillis()));
+
+		if (t != Long.MAX_VALUE)
+			c.timeout().timeout(t, TimeUnit.NANOSECONDS);
+	}
+}
@@ -0,0 +1,306 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Tracks the health of a test.ai server. After too many consecutive failed calls the breaker opens, and calls to the server fail immediately instead of waiting out their timeouts. Once the open
+ * duration has passed, a single trial call is let through: if it succeeds the breaker closes again, otherwise it stays open for another open duration.
+ */
+public final class CircuitBreaker
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+	/**
+	 * The states of a circuit breaker.
+	 */
+	public enum State
+	{
+		/**
+		 * The server is healthy, calls go through.
+		 */
+		CLOSED,
+
+		/**
+		 * The server is unhealthy, calls fail immediately.
+		 */
+		OPEN,
+
+		/**
+		 * The open duration has passed, and a single trial call decides whether to close or re-open the breaker.
+		 */
+		HALF_OPEN
+	}
+
+	/**
+	 * Receives the state transitions of a circuit breaker.
+	 */
+	@FunctionalInterface
+	public interface Listener
+	{
+		/**
+		 * Called after a circuit breaker changed state. Called on the thread whose call caused the transition, so implementations should return quickly.
+		 *
+		 * @param breaker The circuit breaker
+		 * @param from The previous state
+		 * @param to The new state
+		 */
+		void onStateChange(CircuitBreaker breaker, State from, State to);
+	}
+
+	/**
+	 * The name of the server this breaker protects, for logging
+	 */
+	private final String name;
+
+	/**
+	 * The number of consecutive failures which opens the breaker
+	 */
+	private volatile int failureThreshold;
+
+	/**
+	 * How long the breaker stays open for, in nanoseconds
+	 */
+	private volatile long openNanos;
+
+	/**
+	 * The listeners to notify of state transitions
+	 */
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+	/**
+	 * The current state
+	 */
+	private State state = State.CLOSED;
+
+	/**
+	 * The number of consecutive failures so far
+	 */
+	private int failures;
+
+	/**
+	 * The {@code System.nanoTime()} at which the breaker last opened
+	 */
+	private long openedAt;
+
+	/**
+	 * Indicates whether the trial call of the half-open state is in flight.
+	 */
+	private boolean trialInFlight;
+
+	/**
+	 * Constructor, creates a new, closed, CircuitBreaker.
+	 *
+	 * @param name The name of the server this breaker protects, for logging
+	 * @param failureThreshold The number of consecutive failures which opens the breaker
+	 * @param openDuration How long the breaker stays open for
+	 */
+	CircuitBreaker(String name, int failureThreshold, Duration openDuration)
+	{
+		this.name = name;
+		configure(failureThreshold, openDuration);
+	}
+
+	/**
+	 * Changes the thresholds of this breaker, keeping its state.
+	 *
+	 * @param failureThreshold The number of consecutive failures which opens the breaker
+	 * @param openDuration How long the breaker stays open for
+	 */
+	void configure(int failureThreshold, Duration openDuration)
+	{
+		this.failureThreshold = Math.max(1, failureThreshold);
+		openNanos = openDuration.toNanos();
+	}
+
+	/**
+	 * Registers a listener to be notified of state transitions.
+	 *
+	 * @param l The listener to add
+	 * @return This {@code CircuitBreaker}, for chaining convenience.
+	 */
+	public CircuitBreaker addListener(Listener l)
+	{
+		listeners.add(l);
+		return this;
+	}
+
+	/**
+	 * Unregisters a listener.
+	 *
+	 * @param l The listener to remove
+	 */
+	public void removeListener(Listener l)
+	{
+		listeners.remove(l);
+	}
+
+	/**
+	 * Gets the current state of this breaker.
+	 *
+	 * @return The current state
+	 */
+	public synchronized State getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Determines if a call would currently be let through, without claiming the trial call of the half-open state.
+	 *
+	 * @return {@code false} if calls are currently failing fast.
+	 */
+	public synchronized boolean isCallPermitted()
+	{
+		switch (state)
+		{
+			case OPEN:
+				return System.nanoTime() - openedAt >= openNanos;
+			case HALF_OPEN:
+				return !trialInFlight;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Asks to make a call. Every permitted call must be followed by {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned()}.
+	 *
+	 * @return {@code true} if the call may go ahead.
+	 */
+	boolean tryAcquire()
+	{
+		State from;
+		synchronized (this)
+		{
+			switch (state)
+			{
+				case CLOSED:
+					return true;
+				case HALF_OPEN:
+					if (trialInFlight)
+						return false;
+
+					trialInFlight = true;
+					return true;
+				default:
+					if (System.nanoTime() - openedAt < openNanos)
+						return false;
+			}
+
+			from = state;
+			state = State.HALF_OPEN;
+			trialInFlight = true;
+		}
+
+		fire(from, State.HALF_OPEN);
+		return true;
+	}
+
+	/**
+	 * Records a successful call.
+	 */
+	void onSuccess()
+	{
+		State from;
+		synchronized (this)
+		{
+			failures = 0;
+			trialInFlight = false;
+			if (state == State.CLOSED)
+				return;
+
+			from = state;
+			state = State.CLOSED;
+		}
+
+		fire(from, State.CLOSED);
+	}
+
+	/**
+	 * Records a failed call.
+	 */
+	void onFailure()
+	{
+		State from;
+		synchronized (this)
+		{
+			failures++;
+			trialInFlight = false;
+			if (state == State.OPEN || (state == State.CLOSED && failures < failureThreshold))
+				return;
+
+			from = state;
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+		}
+
+		fire(from, State.OPEN);
+	}
+
+	/**
+	 * Records a call which was permitted but then cancelled by the caller, or which failed before reaching the server, and so says nothing about the health of the server.
+	 */
+	synchronized void onAbandoned()
+	{
+		trialInFlight = false;
+	}
+
+	/**
+	 * Logs a state transition and notifies the listeners.
+	 *
+	 * @param from The previous state
+	 * @param to The new state
+	 */
+	private void fire(State from, State to)
+	{
+		if (to == State.OPEN)
+			log.warn("{} is unhealthy, failing calls to it fast for the next {} ms", name, openNanos / 1000000);
+		else
+			log.info("Circuit breaker for {}: {} -> {}", name, from, to);
+
+		for (Listener l : listeners)
+			try
+			{
+				l.onStateChange(this, from, to);
+			}
+			catch (Throwable e)
+			{
+				log.warn("Circuit breaker listener failed", e);
+			}
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("CircuitBreaker[%s, %s]", name, getState());
+	}
+
+	/**
+	 * Thrown instead of calling the server while a circuit breaker is open.
+	 */
+	public static class OpenException extends IOException
+	{
+		/**
+		 * Serial version UID
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Constructor, creates a new OpenException.
+		 *
+		 * @param breaker The open circuit breaker
+		 */
+		OpenException(CircuitBreaker breaker)
+		{
+			super(breaker.name + " is unhealthy, not calling it until the circuit breaker closes");
+		}
+	}
+}
@@ -0,0 +1,354 @@
+package ai.test.sdk;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import ai.test.sdk.TestAiDriver.ClassifyResult;
+
+/**
+ * An in-memory LRU cache of successful classifications. Entries are keyed by label and a perceptual hash of the screenshot (and optionally a hash of the page source), so repeated lookups of the
+ * same label on an unchanged screen can be answered without calling the server. Disabled by default.
+ */
+public final class ClassifyCache
+{
+	/**
+	 * The side length of the perceptual hash grid. Hashes are {@code HASH_SIDE * HASH_SIDE} bits long.
+	 */
+	static final int HASH_SIDE = 16;
+
+	/**
+	 * The cached entries, in least-recently-used order.
+	 */
+	private final LinkedHashMap<Fingerprint, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Indicates whether this cache is enabled.
+	 */
+	private volatile boolean enabled;
+
+	/**
+	 * Indicates whether the page source should be part of the cache key.
+	 */
+	private volatile boolean usePageSource;
+
+	/**
+	 * The maximum number of entries to keep.
+	 */
+	private int maxSize = 256;
+
+	/**
+	 * The amount of time, in nanoseconds, an entry stays valid for.
+	 */
+	private long ttlNanos = Duration.ofMinutes(5).toNanos();
+
+	/**
+	 * The maximum number of hash bits which may differ for two screenshots to be considered the same screen.
+	 */
+	private int tolerance;
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private long hits, misses, evictions;
+
+	/**
+	 * Constructor, creates a new, disabled, ClassifyCache.
+	 */
+	ClassifyCache()
+	{
+	}
+
+	/**
+	 * Enables or disables this cache. Disabling the cache clears it.
+	 *
+	 * @param enabled Set {@code true} to enable the cache.
+	 * @return This {@code ClassifyCache}, for chaining convenience.
+	 */
+	public synchronized ClassifyCache setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+			entries.clear();
+
+		return this;
+	}
+
+	/**
+	 * Indicates whether this cache is enabled.
+	 *
+	 * @return {@code true} if this cache is enabled.
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets whether the page source should be part of the cache key, in addition to the screenshot. Default is {@code false}.
+	 *
+	 * @param usePageSource Set {@code true} to only reuse results if the page source is also unchanged.
+	 * @return This {@code ClassifyCache}, for chaining convenience.
+	 */
+	public synchronized ClassifyCache setUsePageSource(boolean usePageSource)
+	{
+		this.usePageSource = usePageSource;
+		entries.clear();
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of entries to keep. The least recently used entries are evicted first. Default is 256.
+	 *
+	 * @param maxSize The maximum number of entries to keep
+	 * @return This {@code ClassifyCache}, for chaining convenience.
+	 */
+	public synchronized ClassifyCache setMaxSize(int maxSize)
+	{
+		this.maxSize = Math.max(1, maxSize);
+		trim();
+		return this;
+	}
+
+	/**
+	 * Sets the amount of time an entry stays valid for. Default is 5 minutes.
+	 *
+	 * @param ttl The amount of time an entry stays valid for
+	 * @return This {@code ClassifyCache}, for chaining convenience.
+	 */
+	public synchronized ClassifyCache setTimeToLive(Duration ttl)
+	{
+		ttlNanos = ttl.toNanos();
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of perceptual hash bits (out of 256) which may differ for two screenshots to be considered the same screen. Default is 0.
+	 *
+	 * @param tolerance The maximum Hamming distance between the hashes of matching screenshots
+	 * @return This {@code ClassifyCache}, for chaining convenience.
+	 */
+	public synchronized ClassifyCache setTolerance(int tolerance)
+	{
+		this.tolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * Looks up the result of a previous classification.
+	 *
+	 * @param label The label being classified
+	 * @param hash The perceptual hash of the current screenshot
+	 * @param pageSource The current page source
+	 * @return The cached result, or {@code null} if there was no valid entry.
+	 */
+	synchronized ClassifyResult get(String label, long[] hash, String pageSource)
+	{
+		Fingerprint f = new Fingerprint(label, hash, sourceHash(pageSource));
+		long now = System.nanoTime();
+
+		Entry e = entries.get(f);
+		if (e == null && tolerance > 0)
+			for (Map.Entry<Fingerprint, Entry> me : entries.entrySet())
+				if (me.getKey().matches(f, tolerance) && me.getValue().expires - now > 0)
+				{
+					e = entries.get(me.getKey()); // refresh LRU order
+					break;
+				}
+
+		if (e != null && e.expires - now <= 0)
+		{
+			entries.remove(f);
+			e = null;
+		}
+
+		if (e == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		return e.result;
+	}
+
+	/**
+	 * Stores the result of a classification.
+	 *
+	 * @param label The label which was classified
+	 * @param hash The perceptual hash of the screenshot which was classified
+	 * @param pageSource The page source which was classified
+	 * @param result The result of the classification
+	 */
+	synchronized void put(String label, long[] hash, String pageSource, ClassifyResult result)
+	{
+		entries.put(new Fingerprint(label, hash, sourceHash(pageSource)), new Entry(result, System.nanoTime() + ttlNanos));
+		trim();
+	}
+
+	/**
+	 * Removes all entries from this cache.
+	 */
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	/**
+	 * Evicts the least recently used entries until there are at most {@link #maxSize} left.
+	 */
+	private void trim()
+	{
+		for (Iterator<Fingerprint> it = entries.keySet().iterator(); entries.size() > maxSize && it.hasNext();)
+		{
+			it.next();
+			it.remove();
+			evictions++;
+		}
+	}
+
+	/**
+	 * Hashes the page source if it is part of the cache key.
+	 *
+	 * @param pageSource The page source
+	 * @return The hash of {@code pageSource}, or 0 if page sources are not part of the cache key.
+	 */
+	private int sourceHash(String pageSource)
+	{
+		return usePageSource && pageSource != null ? pageSource.hashCode() : 0;
+	}
+
+	/**
+	 * Gets the number of lookups which were answered from this cache.
+	 *
+	 * @return The number of cache hits
+	 */
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+	/**
+	 * Gets the number of lookups which were not answered from this cache.
+	 *
+	 * @return The number of cache misses
+	 */
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+
+	/**
+	 * Gets the number of entries which were evicted to make room for new ones.
+	 *
+	 * @return The number of evictions
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictions;
+	}
+
+	/**
+	 * Gets the number of entries currently in this cache.
+	 *
+	 * @return The number of entries currently in this cache.
+	 */
+	public synchronized int size()
+	{
+		return entries.size();
+	}
+
+	/**
+	 * The key of a cache entry.
+	 */
+	private static class Fingerprint
+	{
+		/**
+		 * The label which was classified
+		 */
+		final String label;
+
+		/**
+		 * The perceptual hash of the screenshot
+		 */
+		final long[] hash;
+
+		/**
+		 * The hash of the page source, or 0 if not in use
+		 */
+		final int sourceHash;
+
+		/**
+		 * Constructor, creates a new Fingerprint.
+		 *
+		 * @param label The label which was classified
+		 * @param hash The perceptual hash of the screenshot
+		 * @param sourceHash The hash of the page source
+		 */
+		Fingerprint(String label, long[] hash, int sourceHash)
+		{
+			this.label = label;
+			this.hash = hash;
+			this.sourceHash = sourceHash;
+		}
+
+		/**
+		 * Determines if this Fingerprint describes the same label on a similar-looking screen as another.
+		 *
+		 * @param o The other Fingerprint
+		 * @param tolerance The maximum number of hash bits which may differ
+		 * @return {@code true} if the Fingerprints match.
+		 */
+		boolean matches(Fingerprint o, int tolerance)
+		{
+			return label.equals(o.label) && sourceHash == o.sourceHash && ImageUtils.hammingDistance(hash, o.hash) <= tolerance;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Fingerprint))
+				return false;
+
+			Fingerprint f = (Fingerprint) o;
+			return label.equals(f.label) && sourceHash == f.sourceHash && Arrays.equals(hash, f.hash);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return Objects.hash(label, sourceHash, Arrays.hashCode(hash));
+		}
+	}
+
+	/**
+	 * A cached result and its expiry time.
+	 */
+	private static class Entry
+	{
+		/**
+		 * The cached result
+		 */
+		final ClassifyResult result;
+
+		/**
+		 * The {@code System.nanoTime()} at which this entry expires
+		 */
+		final long expires;
+
+		/**
+		 * Constructor, creates a new Entry.
+		 *
+		 * @param result The cached result
+		 * @param expires The {@code System.nanoTime()} at which this entry expires
+		 */
+		Entry(ClassifyResult result, long expires)
+		{
+			this.result = result;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package ai.test.sdk;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A JDK Flight Recorder event for one classify, from capturing the screen to decoding the server's answer. If a page source delta is rejected by the server and resent in full, the upload, server,
+ * and parse times and the payload sizes cover both requests.
+ */
+@Name("ai.test.sdk.Classify")
+@Label("test.ai Classify")
+@Category("test.ai SDK")
+@Description("Classification of an element by the test.ai server")
+@StackTrace(false)
+final class ClassifyEvent extends Event
+{
+	/**
+	 * The label of the element
+	 */
+	@Label("Label")
+	String label;
+
+	/**
+	 * Indicates whether the result came from the classify cache
+	 */
+	@Label("Cached")
+	boolean cached;
+
+	/**
+	 * Indicates whether the result was replayed from a recording
+	 */
+	@Label("Replayed")
+	boolean replayed;
+
+	/**
+	 * Indicates whether the element was found
+	 */
+	@Label("Success")
+	boolean success;
+
+	/**
+	 * The time spent capturing the page source
+	 */
+	@Label("Source Capture Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long captureSource;
+
+	/**
+	 * The time spent capturing and preparing the screenshot
+	 */
+	@Label("Screenshot Capture Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long captureScreenshot;
+
+	/**
+	 * The time spent sending the request
+	 */
+	@Label("Upload Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long upload;
+
+	/**
+	 * The time from the end of the request to the start of the response
+	 */
+	@Label("Server Time")
+	@Description("Server time plus one round trip")
+	@Timespan(Timespan.NANOSECONDS)
+	long server;
+
+	/**
+	 * The time spent reading and decoding the response
+	 */
+	@Label("Parse Time")
+	@Timespan(Timespan.NANOSECONDS)
+	long parse;
+
+	/**
+	 * The size of the uploaded screenshot
+	 */
+	@Label("Screenshot Size")
+	@DataAmount
+	long screenshotBytes;
+
+	/**
+	 * The size of the uploaded page source or page source delta
+	 */
+	@Label("Source Size")
+	@Description("In characters")
+	long sourceChars;
+}
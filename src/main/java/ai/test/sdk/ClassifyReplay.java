@@ -0,0 +1,544 @@
+package ai.test.sdk;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records {@code classify} responses to a local file, and replays them in later runs instead of calling the server. Requests are matched by label and a perceptual hash of the screenshot (and
+ * optionally a hash of the page source), so reruns of an identical suite are answered from disk with no network latency and the same results every time. Off by default.
+ * <p>
+ * The mode can also be set without code changes with the {@code TESTAI_REPLAY_MODE} environment variable ({@code off}, {@code record}, {@code replay}, or {@code replay_or_live}). Recordings are kept
+ * in {@code ~/.testai/classify.replay}, or under the directory named by the {@code TESTAI_CACHE_DIR} environment variable, unless a file is set with {@link #setFile(Path)}.
+ * <p>
+ * The file is laid out like an {@link ActionJournal}, with records appended as {@code [int length][int crc32][payload]}. Appends are made under a file lock, so several drivers (or JVMs) can record
+ * into the same file, and a record torn by a crash is ignored on replay.
+ */
+public final class ClassifyReplay
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(ClassifyReplay.class);
+
+	/**
+	 * The magic number at the start of every recording.
+	 */
+	private static final int MAGIC = 0x54415231; // "TAR1"
+
+	/**
+	 * The default recording file
+	 */
+	private static final Path DEFAULT_FILE = Paths.get(Objects.requireNonNullElse(System.getenv("TESTAI_CACHE_DIR"), Paths.get(System.getProperty("user.home"), ".testai").toString()),
+			"classify.replay");
+
+	/**
+	 * What to do with {@code classify} calls.
+	 */
+	public enum Mode
+	{
+		/**
+		 * Call the server, and do not record anything.
+		 */
+		OFF,
+
+		/**
+		 * Call the server, and record every response.
+		 */
+		RECORD,
+
+		/**
+		 * Answer from the recording only. Requests which were not recorded fail, and no {@code add_action} records are uploaded, so the run never touches the network.
+		 */
+		REPLAY,
+
+		/**
+		 * Answer from the recording when possible, otherwise call the server. Elements whose classification was replayed are not uploaded with {@code add_action}, since their keys belong to the
+		 * run which recorded them.
+		 */
+		REPLAY_OR_LIVE
+	}
+
+	/**
+	 * The current mode
+	 */
+	private volatile Mode mode = mode(System.getenv("TESTAI_REPLAY_MODE"));
+
+	/**
+	 * The recording file
+	 */
+	private Path file = DEFAULT_FILE;
+
+	/**
+	 * Indicates whether the page source should be part of the fingerprint.
+	 */
+	private boolean usePageSource;
+
+	/**
+	 * The maximum number of hash bits which may differ for two screenshots to be considered the same screen.
+	 */
+	private int tolerance;
+
+	/**
+	 * The recorded responses, oldest first, or {@code null} if the recording has not been loaded yet.
+	 */
+	private List<Record> records;
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private long hits, misses, recorded;
+
+	/**
+	 * Constructor, creates a new ClassifyReplay in the mode set by the environment.
+	 */
+	ClassifyReplay()
+	{
+	}
+
+	/**
+	 * Sets what to do with {@code classify} calls.
+	 *
+	 * @param mode The new mode
+	 * @return This {@code ClassifyReplay}, for chaining convenience.
+	 */
+	public synchronized ClassifyReplay setMode(Mode mode)
+	{
+		this.mode = Objects.requireNonNull(mode);
+		records = null;
+		return this;
+	}
+
+	/**
+	 * Gets what is done with {@code classify} calls.
+	 *
+	 * @return The current mode
+	 */
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * Sets the file to record to and replay from.
+	 *
+	 * @param file The recording file. It will be created if it does not exist.
+	 * @return This {@code ClassifyReplay}, for chaining convenience.
+	 */
+	public synchronized ClassifyReplay setFile(Path file)
+	{
+		this.file = Objects.requireNonNull(file);
+		records = null;
+		return this;
+	}
+
+	/**
+	 * Gets the file recordings are kept in.
+	 *
+	 * @return The recording file
+	 */
+	public synchronized Path getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * Sets whether the page source must match too, in addition to the label and screenshot. Default is {@code false}, since page sources often contain values which change between runs.
+	 *
+	 * @param usePageSource Set {@code true} to include the page source in the fingerprint.
+	 * @return This {@code ClassifyReplay}, for chaining convenience.
+	 */
+	public synchronized ClassifyReplay setUsePageSource(boolean usePageSource)
+	{
+		this.usePageSource = usePageSource;
+		return this;
+	}
+
+	/**
+	 * Sets how different a screenshot may be from a recorded one and still be answered by it. Default is 0 (the perceptual hashes must be identical).
+	 *
+	 * @param tolerance The maximum number of differing bits, out of {@code 256}.
+	 * @return This {@code ClassifyReplay}, for chaining convenience.
+	 */
+	public synchronized ClassifyReplay setTolerance(int tolerance)
+	{
+		this.tolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * Determines if requests are fingerprinted, i.e. if anything is being recorded or replayed.
+	 *
+	 * @return {@code true} if the mode is not {@link Mode#OFF}.
+	 */
+	boolean isEnabled()
+	{
+		return mode != Mode.OFF;
+	}
+
+	/**
+	 * Determines if requests are answered from the recording.
+	 *
+	 * @return {@code true} if the mode is {@link Mode#REPLAY} or {@link Mode#REPLAY_OR_LIVE}.
+	 */
+	boolean isReplaying()
+	{
+		Mode m = mode;
+		return m == Mode.REPLAY || m == Mode.REPLAY_OR_LIVE;
+	}
+
+	/**
+	 * Looks up a recorded response. If several match, the closest (and then the most recently recorded) one wins.
+	 *
+	 * @param label The label being classified
+	 * @param hash The perceptual hash of the current screenshot
+	 * @param pageSource The current page source
+	 * @param scale The factor the current screenshot was scaled by before upload. The recorded element is rescaled to match.
+	 * @return The recorded response, or {@code null} if there was none.
+	 */
+	synchronized ClassifyResponse get(String label, long[] hash, String pageSource, double scale)
+	{
+		if (records == null)
+			records = load(file);
+
+		int sourceHash = sourceHash(pageSource), best = Integer.MAX_VALUE;
+		Record match = null;
+		for (int i = records.size() - 1; i >= 0 && best > 0; i--)
+		{
+			Record r = records.get(i);
+			if (!r.label.equals(label) || r.sourceHash != sourceHash || r.hash.length != hash.length)
+				continue;
+
+			int d = ImageUtils.hammingDistance(r.hash, hash);
+			if (d <= tolerance && d < best)
+			{
+				best = d;
+				match = r;
+			}
+		}
+
+		if (match == null)
+		{
+			misses++;
+			return null;
+		}
+
+		hits++;
+		try
+		{
+			ClassifyResponse resp = ClassifyResponse.ADAPTER.fromJson(match.response);
+			if (resp.elem != null && scale != match.scale)
+			{
+				double f = scale / match.scale;
+				resp.elem.x = (int) Math.round(resp.elem.x * f);
+				resp.elem.y = (int) Math.round(resp.elem.y * f);
+				resp.elem.width = (int) Math.round(resp.elem.width * f);
+				resp.elem.height = (int) Math.round(resp.elem.height * f);
+			}
+
+			return resp;
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to decode the recorded response for '{}': {}", label, e.toString());
+			return null;
+		}
+	}
+
+	/**
+	 * Records a response. Failures are logged and otherwise ignored, so a recording problem never fails a test.
+	 *
+	 * @param label The label which was classified
+	 * @param hash The perceptual hash of the screenshot which was classified
+	 * @param pageSource The page source which was classified
+	 * @param scale The factor the screenshot was scaled by before upload
+	 * @param response The response from the server
+	 */
+	void put(String label, long[] hash, String pageSource, double scale, ClassifyResponse response)
+	{
+		Path f;
+		Record r;
+		synchronized (this)
+		{
+			f = file;
+			r = new Record(label, hash, sourceHash(pageSource), scale, ClassifyResponse.ADAPTER.toJson(response));
+			if (records != null)
+				records.add(r);
+		}
+
+		try
+		{
+			append(f, r);
+			synchronized (this)
+			{
+				recorded++;
+			}
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to record the classify response for '{}' to {}: {}", label, f, e.toString());
+		}
+	}
+
+	/**
+	 * Hashes the page source if it is part of the fingerprint.
+	 *
+	 * @param pageSource The page source
+	 * @return The hash of {@code pageSource}, or 0 if page sources are not part of the fingerprint.
+	 */
+	private int sourceHash(String pageSource)
+	{
+		return usePageSource && pageSource != null ? pageSource.hashCode() : 0;
+	}
+
+	/**
+	 * Gets the number of requests which were answered from the recording.
+	 *
+	 * @return The number of replayed responses
+	 */
+	public synchronized long getHitCount()
+	{
+		return hits;
+	}
+
+	/**
+	 * Gets the number of requests which were not in the recording.
+	 *
+	 * @return The number of misses
+	 */
+	public synchronized long getMissCount()
+	{
+		return misses;
+	}
+
+	/**
+	 * Gets the number of responses which were recorded.
+	 *
+	 * @return The number of recorded responses
+	 */
+	public synchronized long getRecordedCount()
+	{
+		return recorded;
+	}
+
+	/**
+	 * Parses a mode.
+	 *
+	 * @param s The name of the mode, case insensitive. May be {@code null}.
+	 * @return The mode, or {@link Mode#OFF} if {@code s} is not the name of a mode.
+	 */
+	static Mode mode(String s)
+	{
+		try
+		{
+			return s != null ? Mode.valueOf(s.trim().toUpperCase(Locale.ROOT)) : Mode.OFF;
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.warn("Unknown replay mode '{}', replay is off", s);
+			return Mode.OFF;
+		}
+	}
+
+	/**
+	 * Appends a record to a recording file, creating the file if necessary. Each record is written with a single write while holding a lock on the file, so appends from this and other JVMs are
+	 * serialized and the file gets exactly one header.
+	 *
+	 * @param file The recording file
+	 * @param r The record to append
+	 * @throws IOException If the record could not be written.
+	 */
+	private static void append(Path file, Record r) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes))
+		{
+			writeString(out, r.label);
+			out.writeInt(r.hash.length);
+			for (long h : r.hash)
+				out.writeLong(h);
+			out.writeInt(r.sourceHash);
+			out.writeDouble(r.scale);
+			writeString(out, r.response);
+		}
+
+		byte[] payload = bytes.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+
+		ByteBuffer b = ByteBuffer.allocate(8 + payload.length).putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+		b.flip();
+
+		synchronized (ClassifyReplay.class)
+		{
+			if (file.getParent() != null)
+				Files.createDirectories(file.getParent());
+
+			try (FileChannel fc = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND); FileLock l = fc.lock())
+			{
+				if (fc.size() == 0)
+					b = ByteBuffer.allocate(4 + b.remaining()).putInt(MAGIC).put(b).flip();
+
+				while (b.hasRemaining())
+					fc.write(b);
+			}
+		}
+	}
+
+	/**
+	 * Reads all intact records from a recording file. Reading stops at the first missing or damaged record.
+	 *
+	 * @param file The recording file
+	 * @return The records in {@code file}, oldest first. Empty if the file does not exist or could not be read.
+	 */
+	private static List<Record> load(Path file)
+	{
+		List<Record> l = new ArrayList<>();
+
+		try (FileChannel fc = FileChannel.open(file, StandardOpenOption.READ))
+		{
+			ByteBuffer b = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			if (b.remaining() < 4 || b.getInt() != MAGIC)
+				throw new IOException("Not a test.ai classify recording: " + file);
+
+			while (b.remaining() >= 8)
+			{
+				int len = b.getInt(), crc = b.getInt();
+				if (len <= 0 || len > b.remaining())
+					break;
+
+				byte[] payload = new byte[len];
+				b.get(payload);
+
+				CRC32 c = new CRC32();
+				c.update(payload);
+				if ((int) c.getValue() != crc)
+				{
+					log.warn("Damaged record in {}, ignoring the rest of the recording", file);
+					break;
+				}
+
+				try
+				{
+					ByteBuffer p = ByteBuffer.wrap(payload);
+					String label = readString(p);
+					long[] hash = new long[p.getInt()];
+					for (int i = 0; i < hash.length; i++)
+						hash[i] = p.getLong();
+
+					l.add(new Record(label, hash, p.getInt(), p.getDouble(), readString(p)));
+				}
+				catch (BufferUnderflowException | NegativeArraySizeException e)
+				{
+					break;
+				}
+			}
+
+			log.info("Loaded {} recorded classify response(s) from {}", l.size(), file);
+		}
+		catch (NoSuchFileException e)
+		{
+			log.warn("There is no classify recording at {}", file);
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to read the classify recording at {}: {}", file, e.toString());
+		}
+
+		return l;
+	}
+
+	/**
+	 * Writes a length-prefixed UTF-8 String.
+	 *
+	 * @param out The stream to write to
+	 * @param s The String to write
+	 * @throws IOException Never, {@code out} writes to memory.
+	 */
+	private static void writeString(DataOutputStream out, String s) throws IOException
+	{
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * Reads a length-prefixed UTF-8 String from a buffer.
+	 *
+	 * @param b The buffer to read from
+	 * @return The String that was read
+	 */
+	private static String readString(ByteBuffer b)
+	{
+		byte[] s = new byte[b.getInt()];
+		b.get(s);
+		return new String(s, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * A recorded response and the fingerprint of the request it answered.
+	 */
+	private static class Record
+	{
+		/**
+		 * The label which was classified
+		 */
+		final String label;
+
+		/**
+		 * The perceptual hash of the screenshot
+		 */
+		final long[] hash;
+
+		/**
+		 * The hash of the page source, or 0 if not in use
+		 */
+		final int sourceHash;
+
+		/**
+		 * The factor the screenshot was scaled by before upload
+		 */
+		final double scale;
+
+		/**
+		 * The response, as JSON
+		 */
+		final String response;
+
+		/**
+		 * Constructor, creates a new Record.
+		 *
+		 * @param label The label which was classified
+		 * @param hash The perceptual hash of the screenshot
+		 * @param sourceHash The hash of the page source
+		 * @param scale The factor the screenshot was scaled by before upload
+		 * @param response The response, as JSON
+		 */
+		Record(String label, long[] hash, int sourceHash, double scale, String response)
+		{
+			this.label = label;
+			this.hash = hash;
+			this.sourceHash = sourceHash;
+			this.scale = scale;
+			this.response = response;
+		}
+	}
+}
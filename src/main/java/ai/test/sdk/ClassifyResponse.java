@@ -0,0 +1,257 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * The decoded body of a response to {@code classify}. Decoded straight off the response stream by {@link #ADAPTER}, without building a JSON tree first.
+ */
+final class ClassifyResponse
+{
+	/**
+	 * Streams {@code ClassifyResponse}s to and from JSON. Unknown fields are skipped.
+	 */
+	static final TypeAdapter<ClassifyResponse> ADAPTER = new TypeAdapter<>() {
+		@Override
+		public void write(JsonWriter out, ClassifyResponse r) throws IOException
+		{
+			out.beginObject();
+			out.name("success").value(r.success);
+			out.name("key").value(r.key);
+			out.name("message").value(r.message);
+			if (r.sourceMismatch)
+				out.name("source_mismatch").value(true);
+			if (r.elem != null)
+			{
+				out.name("elem");
+				Elem.ADAPTER.write(out, r.elem);
+			}
+			if (r.results != null)
+			{
+				out.name("results").beginObject();
+				for (Map.Entry<String, ClassifyResponse> e : r.results.entrySet())
+				{
+					out.name(e.getKey());
+					write(out, e.getValue());
+				}
+				out.endObject();
+			}
+			out.endObject();
+		}
+
+		@Override
+		public ClassifyResponse read(JsonReader in) throws IOException
+		{
+			ClassifyResponse r = new ClassifyResponse();
+
+			in.beginObject();
+			while (in.hasNext())
+				switch (in.nextName())
+				{
+					case "success":
+						r.success = nextBoolean(in);
+						break;
+					case "key":
+						r.key = nextString(in);
+						break;
+					case "message":
+						r.message = nextString(in);
+						break;
+					case "source_mismatch":
+						r.sourceMismatch = nextBoolean(in);
+						break;
+					case "elem":
+						r.elem = nextNull(in) ? null : Elem.ADAPTER.read(in);
+						break;
+					case "results":
+						if (nextNull(in))
+							break;
+
+						r.results = new LinkedHashMap<>();
+						in.beginObject();
+						while (in.hasNext())
+							r.results.put(in.nextName(), read(in));
+						in.endObject();
+						break;
+					default:
+						in.skipValue();
+				}
+			in.endObject();
+
+			return r;
+		}
+	};
+
+	/**
+	 * Indicates whether the element was found
+	 */
+	boolean success;
+
+	/**
+	 * The key the server associated with this classification
+	 */
+	String key = "";
+
+	/**
+	 * The message from the server, if any
+	 */
+	String message = "";
+
+	/**
+	 * The element that was found, or {@code null}
+	 */
+	Elem elem;
+
+	/**
+	 * Indicates that the server did not have the base page source a delta was computed against, and the full page source must be sent instead
+	 */
+	boolean sourceMismatch;
+
+	/**
+	 * The response for each label of a call which classified several labels at once, by label, or {@code null} if the call was for a single label
+	 */
+	Map<String, ClassifyResponse> results;
+
+	/**
+	 * The http status of the response this was decoded from, or 0 if it was not received from the server (e.g. it was replayed). Not part of the JSON.
+	 */
+	int status;
+
+	@Override
+	public String toString()
+	{
+		return ADAPTER.toJson(this);
+	}
+
+	/**
+	 * Reads a String, or the empty String if the value is {@code null}.
+	 *
+	 * @param in The reader to read from
+	 * @return The String that was read
+	 * @throws IOException Read error
+	 */
+	private static String nextString(JsonReader in) throws IOException
+	{
+		return nextNull(in) ? "" : in.nextString();
+	}
+
+	/**
+	 * Reads a boolean, or {@code false} if the value is {@code null}.
+	 *
+	 * @param in The reader to read from
+	 * @return The boolean that was read
+	 * @throws IOException Read error
+	 */
+	private static boolean nextBoolean(JsonReader in) throws IOException
+	{
+		return nextNull(in) ? false : in.nextBoolean();
+	}
+
+	/**
+	 * Reads a number and truncates it to an int, or 0 if the value is {@code null}.
+	 *
+	 * @param in The reader to read from
+	 * @return The int that was read
+	 * @throws IOException Read error
+	 */
+	private static int nextInt(JsonReader in) throws IOException
+	{
+		return nextNull(in) ? 0 : (int) in.nextDouble();
+	}
+
+	/**
+	 * Consumes the next value if it is {@code null}.
+	 *
+	 * @param in The reader to read from
+	 * @return {@code true} if the next value was {@code null} and was consumed.
+	 * @throws IOException Read error
+	 */
+	private static boolean nextNull(JsonReader in) throws IOException
+	{
+		if (in.peek() != JsonToken.NULL)
+			return false;
+
+		in.nextNull();
+		return true;
+	}
+
+	/**
+	 * The location and attributes of an element found by the server. Coordinates are in screenshot pixels.
+	 */
+	static final class Elem
+	{
+		/**
+		 * Streams {@code Elem}s to and from JSON. Unknown fields are skipped.
+		 */
+		static final TypeAdapter<Elem> ADAPTER = new TypeAdapter<>() {
+			@Override
+			public void write(JsonWriter out, Elem e) throws IOException
+			{
+				out.beginObject();
+				out.name("x").value(e.x);
+				out.name("y").value(e.y);
+				out.name("width").value(e.width);
+				out.name("height").value(e.height);
+				out.name("text").value(e.text);
+				out.name("class").value(e.tagName);
+				out.endObject();
+			}
+
+			@Override
+			public Elem read(JsonReader in) throws IOException
+			{
+				Elem e = new Elem();
+
+				in.beginObject();
+				while (in.hasNext())
+					switch (in.nextName())
+					{
+						case "x":
+							e.x = nextInt(in);
+							break;
+						case "y":
+							e.y = nextInt(in);
+							break;
+						case "width":
+							e.width = nextInt(in);
+							break;
+						case "height":
+							e.height = nextInt(in);
+							break;
+						case "text":
+							e.text = nextString(in);
+							break;
+						case "class":
+							e.tagName = nextString(in);
+							break;
+						default:
+							in.skipValue();
+					}
+				in.endObject();
+
+				return e;
+			}
+		};
+
+		/**
+		 * The location and size of the element
+		 */
+		int x, y, width, height;
+
+		/**
+		 * The text in the element
+		 */
+		String text = "";
+
+		/**
+		 * The tag name (class) of the element
+		 */
+		String tagName = "";
+	}
+}
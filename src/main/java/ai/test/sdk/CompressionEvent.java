@@ -0,0 +1,40 @@
+package ai.test.sdk;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one gzipped request body, covering the time spent compressing it while it was streamed to the server.
+ */
+@Name("ai.test.sdk.RequestCompression")
+@Label("test.ai Request Compression")
+@Category("test.ai SDK")
+@Description("Gzip compression of a request body sent to the test.ai server")
+@StackTrace(false)
+final class CompressionEvent extends Event
+{
+	/**
+	 * The endpoint the request was sent to
+	 */
+	@Label("Endpoint")
+	String endpoint;
+
+	/**
+	 * The size of the body before compression
+	 */
+	@Label("Raw Size")
+	@DataAmount
+	long rawBytes;
+
+	/**
+	 * The size of the body after compression
+	 */
+	@Label("Compressed Size")
+	@DataAmount
+	long compressedBytes;
+}
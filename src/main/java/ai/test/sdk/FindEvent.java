@@ -0,0 +1,46 @@
+package ai.test.sdk;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A JDK Flight Recorder event for one {@code findElementBy...} or {@code findByElementName} call. Its duration is the duration of the entire call, including any fallback to test.ai.
+ */
+@Name("ai.test.sdk.Find")
+@Label("test.ai Find")
+@Category("test.ai SDK")
+@Description("A lookup of an element by Appium, with test.ai as the fallback")
+@StackTrace(false)
+final class FindEvent extends Event
+{
+	/**
+	 * The locator strategy
+	 */
+	@Label("Strategy")
+	@Description("The locator strategy, e.g. xpath, or element_name for lookups by label only")
+	String strategy;
+
+	/**
+	 * The label of the element
+	 */
+	@Label("Label")
+	String label;
+
+	/**
+	 * What Appium did
+	 */
+	@Label("Appium Outcome")
+	@Description("found, not_found, or skipped")
+	String appiumOutcome;
+
+	/**
+	 * What test.ai did
+	 */
+	@Label("Fallback Outcome")
+	@Description("none if the fallback was not needed, otherwise found or failed")
+	String fallbackOutcome = "none";
+}
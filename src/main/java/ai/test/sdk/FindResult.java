@@ -0,0 +1,61 @@
+package ai.test.sdk;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * The result of looking up one element in a batch, as returned by {@link TestAiDriver#findByElementNames(java.util.List)}. Holds either the element which was found, or the reason it was not.
+ */
+public final class FindResult
+{
+	/**
+	 * The element which was found, or {@code null} if it was not found
+	 */
+	private final MobileElement element;
+
+	/**
+	 * The reason the element was not found, or {@code null} if it was found
+	 */
+	private final String message;
+
+	/**
+	 * Constructor, creates a new FindResult.
+	 *
+	 * @param element The element which was found, or {@code null} if it was not found
+	 * @param message The reason the element was not found. Ignored if {@code element} is not {@code null}.
+	 */
+	FindResult(MobileElement element, String message)
+	{
+		this.element = element;
+		this.message = element != null ? null : message != null ? message : "Element was not found";
+	}
+
+	/**
+	 * Checks whether the element was found.
+	 *
+	 * @return {@code true} if the element was found
+	 */
+	public boolean isFound()
+	{
+		return element != null;
+	}
+
+	/**
+	 * Gets the element which was found.
+	 *
+	 * @return The element, or {@code null} if it was not found
+	 */
+	public MobileElement getElement()
+	{
+		return element;
+	}
+
+	/**
+	 * Gets the reason the element was not found.
+	 *
+	 * @return The reason, or {@code null} if the element was found
+	 */
+	public String getMessage()
+	{
+		return message;
+	}
+}
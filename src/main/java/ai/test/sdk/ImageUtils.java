@@ -0,0 +1,227 @@
+package ai.test.sdk;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Shared image decoding, resizing, and encoding utilities
+ */
+final class ImageUtils
+{
+	/**
+	 * Decodes an encoded image (e.g. a PNG screenshot).
+	 *
+	 * @param b The encoded image
+	 * @return The decoded image
+	 * @throws IOException If {@code b} could not be decoded.
+	 */
+	public static BufferedImage decode(byte[] b) throws IOException
+	{
+		BufferedImage img = ImageIO.read(new ByteArrayInputStream(b));
+		if (img == null)
+			throw new IOException("Unsupported image format");
+
+		return img;
+	}
+
+	/**
+	 * Determines the size of an encoded image without decoding its pixels. For PNGs the size is read straight out of the {@code IHDR} chunk; other formats fall back to reading just their header
+	 * with {@code ImageIO}.
+	 *
+	 * @param b The encoded image
+	 * @return The size of the image, in pixels
+	 * @throws IOException If the size could not be determined.
+	 */
+	public static Dimension imageSize(byte[] b) throws IOException
+	{
+		// 8 byte signature, then the IHDR chunk: 4 byte length, "IHDR", 4 byte width, 4 byte height
+		if (b.length >= 24 && (b[0] & 0xff) == 0x89 && b[1] == 'P' && b[2] == 'N' && b[3] == 'G' && b[12] == 'I' && b[13] == 'H' && b[14] == 'D' && b[15] == 'R')
+		{
+			ByteBuffer bb = ByteBuffer.wrap(b, 16, 8);
+			return new Dimension(bb.getInt(), bb.getInt());
+		}
+
+		try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(b)))
+		{
+			Iterator<ImageReader> it = ImageIO.getImageReaders(in);
+			if (!it.hasNext())
+				throw new IOException("Unsupported image format");
+
+			ImageReader r = it.next();
+			try
+			{
+				r.setInput(in, true, true);
+				return new Dimension(r.getWidth(0), r.getHeight(0));
+			}
+			finally
+			{
+				r.dispose();
+			}
+		}
+	}
+
+	/**
+	 * Draws {@code img} into a new image of the specified size and type, using bilinear interpolation.
+	 *
+	 * @param img The image to resize
+	 * @param width The width of the new image
+	 * @param height The height of the new image
+	 * @param type The {@code BufferedImage} type of the new image, e.g. {@code BufferedImage.TYPE_BYTE_GRAY}
+	 * @return The resized image
+	 */
+	public static BufferedImage resize(BufferedImage img, int width, int height, int type)
+	{
+		BufferedImage out = new BufferedImage(Math.max(1, width), Math.max(1, height), type);
+
+		Graphics2D g = out.createGraphics();
+		try
+		{
+			g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			g.drawImage(img, 0, 0, out.getWidth(), out.getHeight(), null);
+		}
+		finally
+		{
+			g.dispose();
+		}
+
+		return out;
+	}
+
+	/**
+	 * Shrinks a region of an image to a small grayscale thumbnail by averaging each block of pixels. Unlike {@link #resize(BufferedImage, int, int, int)}, every source pixel contributes, so small
+	 * thumbnails are stable and free of aliasing.
+	 *
+	 * @param img The image to shrink
+	 * @param rx The x coordinate of the region to shrink
+	 * @param ry The y coordinate of the region to shrink
+	 * @param rw The width of the region to shrink
+	 * @param rh The height of the region to shrink
+	 * @param w The width of the thumbnail
+	 * @param h The height of the thumbnail
+	 * @return The luma of each thumbnail pixel (0-255), in row-major order.
+	 */
+	public static int[] grayThumbnail(BufferedImage img, int rx, int ry, int rw, int rh, int w, int h)
+	{
+		long[] sum = new long[w * h];
+		int[] count = new int[w * h], row = new int[rw];
+
+		for (int y = 0; y < rh; y++)
+		{
+			img.getRGB(rx, ry + y, rw, 1, row, 0, rw);
+
+			int ty = y * h / rh;
+			for (int x = 0; x < rw; x++)
+			{
+				int p = row[x], i = ty * w + x * w / rw;
+				sum[i] += (((p >> 16) & 0xff) * 299 + ((p >> 8) & 0xff) * 587 + (p & 0xff) * 114) / 1000;
+				count[i]++;
+			}
+		}
+
+		int[] out = new int[w * h];
+		for (int i = 0; i < out.length; i++)
+			out[i] = count[i] == 0 ? 0 : (int) (sum[i] / count[i]);
+
+		return out;
+	}
+
+	/**
+	 * Computes a perceptual difference hash (dHash) of an image. The image is shrunk to a {@code (side + 1) x side} grayscale thumbnail, and each bit records whether a pixel is brighter than its
+	 * right-hand neighbour. Visually similar images have hashes with a small Hamming distance.
+	 *
+	 * @param img The image to hash
+	 * @param side The side length of the hash grid. The hash is {@code side * side} bits long.
+	 * @return The hash, packed into {@code long}s.
+	 */
+	public static long[] dHash(BufferedImage img, int side)
+	{
+		int[] t = grayThumbnail(img, 0, 0, img.getWidth(), img.getHeight(), side + 1, side);
+		long[] h = new long[(side * side + 63) / 64];
+
+		int bit = 0;
+		for (int y = 0; y < side; y++)
+			for (int x = 0; x < side; x++, bit++)
+				if (t[y * (side + 1) + x] > t[y * (side + 1) + x + 1])
+					h[bit >>> 6] |= 1L << (bit & 63);
+
+		return h;
+	}
+
+	/**
+	 * Computes the Hamming distance between two hashes created by {@link #dHash(BufferedImage, int)}.
+	 *
+	 * @param a The first hash
+	 * @param b The second hash
+	 * @return The number of bits which differ between {@code a} and {@code b}.
+	 */
+	public static int hammingDistance(long[] a, long[] b)
+	{
+		int d = 0;
+		for (int i = 0; i < a.length; i++)
+			d += Long.bitCount(a[i] ^ b[i]);
+
+		return d;
+	}
+
+	/**
+	 * Encodes an image as a PNG.
+	 *
+	 * @param img The image to encode
+	 * @return The PNG bytes
+	 * @throws IOException Encoding error
+	 */
+	public static byte[] encodePNG(BufferedImage img) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(img, "png", out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Encodes an image as a JPEG with the specified quality. {@code img} must not have an alpha channel.
+	 *
+	 * @param img The image to encode
+	 * @param quality The compression quality, between 0 and 1.
+	 * @return The JPEG bytes
+	 * @throws IOException Encoding error
+	 */
+	public static byte[] encodeJPEG(BufferedImage img, float quality) throws IOException
+	{
+		Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("jpeg");
+		if (!it.hasNext())
+			throw new IOException("No JPEG encoder available");
+
+		ImageWriter w = it.next();
+		ImageWriteParam p = w.getDefaultWriteParam();
+		p.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+		p.setCompressionQuality(Math.max(0f, Math.min(1f, quality)));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ImageOutputStream ios = ImageIO.createImageOutputStream(out))
+		{
+			w.setOutput(ios);
+			w.write(null, new IIOImage(img, null, null), p);
+		}
+		finally
+		{
+			w.dispose();
+		}
+
+		return out.toByteArray();
+	}
+}
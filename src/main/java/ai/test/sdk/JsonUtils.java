@@ -5,8 +5,11 @@ import org.slf4j.LoggerFactory;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
 import okhttp3.Response;
+import okhttp3.ResponseBody;
 
 /**
  * Shared utility methods for common tasks
@@ -21,6 +24,11 @@ final class JsonUtils
 	 */
 	private static Logger log = LoggerFactory.getLogger(JsonUtils.class);
 
+	/**
+	 * The maximum number of bytes of a response body to include in debug logs.
+	 */
+	private static final int MAX_LOGGED_BODY = 2048;
+
 	/**
 	 * Convenience method, extract the body of a {@code Response} as a {@code JsonObject}.
 	 * 
@@ -32,13 +40,42 @@ final class JsonUtils
 		try
 		{
 			String body = r.body().string();
-			log.debug("Status: {} ----- Body: {}", r.code(), body);
+			if (log.isDebugEnabled())
+				log.debug("Status: {} ----- Body: {}", r.code(), body.length() > MAX_LOGGED_BODY ? body.substring(0, MAX_LOGGED_BODY) + "...(truncated)" : body);
 
 			return JsonParser.parseString(body).getAsJsonObject();
 		}
 		catch (Throwable e)
 		{
-			e.printStackTrace();
+			log.warn("Unable to decode the response to {} (http {})", r.request().url().encodedPath(), r.code(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Decodes the body of a {@code Response} straight off the response stream with the specified adapter, without first reading it into a String or building a JSON tree. The response is closed
+	 * afterwards.
+	 * 
+	 * @param <X> The type to decode the body into
+	 * @param r The Response object to use
+	 * @param adapter The adapter to decode the body with
+	 * @return The decoded body of {@code r}, or {@code null} if it could not be decoded.
+	 */
+	public static <X> X responseAs(Response r, TypeAdapter<X> adapter)
+	{
+		try (ResponseBody b = r.body())
+		{
+			if (log.isDebugEnabled())
+			{
+				String peek = r.peekBody(MAX_LOGGED_BODY + 1).string();
+				log.debug("Status: {} ----- Body: {}", r.code(), peek.length() > MAX_LOGGED_BODY ? peek.substring(0, MAX_LOGGED_BODY) + "...(truncated)" : peek);
+			}
+
+			return adapter.read(new JsonReader(b.charStream()));
+		}
+		catch (Throwable e)
+		{
+			log.warn("Unable to decode the response to {} (http {})", r.request().url().encodedPath(), r.code(), e);
 			return null;
 		}
 	}
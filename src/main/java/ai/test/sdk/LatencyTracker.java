@@ -0,0 +1,192 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * Tracks the latency of recent calls to each endpoint, and derives adaptive timeouts and hedging delays from their percentiles. Installed as a network interceptor on the clients handed out by
+ * {@link TransportRegistry}, so each attempt of a retried call is measured on its own, from sending the request to receiving the response headers. Attempts which time out or fail are measured up
+ * to their failure, except those nobody waited for any more.
+ */
+public final class LatencyTracker implements Interceptor
+{
+	/**
+	 * The number of recent calls kept per endpoint
+	 */
+	private static final int WINDOW = 256;
+
+	/**
+	 * Percentiles are not trusted until an endpoint has had this many calls
+	 */
+	private static final int MIN_SAMPLES = 20;
+
+	/**
+	 * Adaptive timeouts are this many times the p99 latency...
+	 */
+	private static final int TIMEOUT_FACTOR = 3;
+
+	/**
+	 * ...but never shorter than this.
+	 */
+	private static final Duration MIN_TIMEOUT = Duration.ofSeconds(2);
+
+	/**
+	 * The recent latencies of each endpoint
+	 */
+	private final ConcurrentHashMap<String, Window> windows = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether adaptive timeouts are enabled
+	 */
+	private volatile boolean adaptive;
+
+	/**
+	 * Constructor, creates a new LatencyTracker.
+	 *
+	 * @param adaptive Set {@code true} to enable adaptive timeouts.
+	 */
+	LatencyTracker(boolean adaptive)
+	{
+		this.adaptive = adaptive;
+	}
+
+	/**
+	 * Enables or disables adaptive timeouts, keeping the latencies recorded so far.
+	 *
+	 * @param adaptive Set {@code true} to enable adaptive timeouts.
+	 */
+	void setAdaptive(boolean adaptive)
+	{
+		this.adaptive = adaptive;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException
+	{
+		String endpoint = endpoint(chain.request().url().pathSegments());
+		long start = System.nanoTime();
+
+		Response r;
+		try
+		{
+			r = chain.proceed(chain.request());
+		}
+		catch (IOException e)
+		{
+			// a call which timed out took at least this long, and without its sample a lasting slowdown would make every call time out at the old timeout and never raise it
+			if (!AsyncCalls.isAbandoned(chain.call()))
+				record(endpoint, System.nanoTime() - start);
+
+			throw e;
+		}
+
+		if (r.code() < 500 && r.code() != 429)
+			record(endpoint, System.nanoTime() - start);
+
+		return r;
+	}
+
+	/**
+	 * Records the latency of a call. Calls which failed without an answer are recorded with the time they waited, which is at most their real latency.
+	 *
+	 * @param endpoint The endpoint which was called
+	 * @param nanos The latency of the call, in nanoseconds
+	 */
+	void record(String endpoint, long nanos)
+	{
+		windows.computeIfAbsent(endpoint, k -> new Window()).add(nanos);
+	}
+
+	/**
+	 * Gets a latency percentile of an endpoint, over its recent calls.
+	 *
+	 * @param endpoint The endpoint, e.g. {@code classify}
+	 * @param p The percentile, between 0 and 100
+	 * @return The percentile, or {@code null} if the endpoint has not had enough calls yet.
+	 */
+	public Duration getPercentile(String endpoint, double p)
+	{
+		Window w = windows.get(endpoint);
+		return w != null ? w.percentile(p) : null;
+	}
+
+	/**
+	 * Gets the adaptive timeout of an endpoint: a multiple of its p99 latency.
+	 *
+	 * @param endpoint The endpoint, e.g. {@code classify}
+	 * @return The timeout, or {@code null} if adaptive timeouts are disabled or the endpoint has not had enough calls yet.
+	 */
+	public Duration getAdaptiveTimeout(String endpoint)
+	{
+		Duration p99 = adaptive ? getPercentile(endpoint, 99) : null;
+		if (p99 == null)
+			return null;
+
+		Duration t = p99.multipliedBy(TIMEOUT_FACTOR);
+		return t.compareTo(MIN_TIMEOUT) < 0 ? MIN_TIMEOUT : t;
+	}
+
+	/**
+	 * Gets the endpoint of a call.
+	 *
+	 * @param segments The path segments of the call's url
+	 * @return The last path segment
+	 */
+	static String endpoint(List<String> segments)
+	{
+		return segments.get(segments.size() - 1);
+	}
+
+	/**
+	 * A ring buffer of the recent latencies of one endpoint.
+	 */
+	private static class Window
+	{
+		/**
+		 * The latencies, in nanoseconds
+		 */
+		private final long[] samples = new long[WINDOW];
+
+		/**
+		 * The total number of latencies recorded
+		 */
+		private long count;
+
+		/**
+		 * Records a latency.
+		 *
+		 * @param nanos The latency, in nanoseconds
+		 */
+		synchronized void add(long nanos)
+		{
+			samples[(int) (count++ % WINDOW)] = nanos;
+		}
+
+		/**
+		 * Computes a percentile of the recorded latencies.
+		 *
+		 * @param p The percentile, between 0 and 100
+		 * @return The percentile, or {@code null} if there are not enough samples.
+		 */
+		Duration percentile(double p)
+		{
+			long[] s;
+			synchronized (this)
+			{
+				if (count < MIN_SAMPLES)
+					return null;
+
+				s = Arrays.copyOf(samples, (int) Math.min(count, WINDOW));
+			}
+
+			Arrays.sort(s);
+			return Duration.ofNanos(s[(int) Math.min(s.length - 1, Math.max(0, Math.ceil(p / 100 * s.length) - 1))]);
+		}
+	}
+}
@@ -0,0 +1,445 @@
+package ai.test.sdk;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.Rectangle;
+
+/**
+ * A local, pure-Java visual matcher. It remembers what each label looked like the last time it was found (by the server or by Appium), and when Appium fails it searches the current screenshot for
+ * that appearance with multi-scale normalized cross-correlation. Confident matches are answered locally; everything else goes on to the server. Disabled by default.
+ */
+public final class LocalMatcher
+{
+	/**
+	 * Screenshots are searched at this width, in pixels.
+	 */
+	private static final int WORK_WIDTH = 360;
+
+	/**
+	 * Templates smaller than this, in pixels at {@link #WORK_WIDTH}, carry too little information to match reliably.
+	 */
+	private static final int MIN_TEMPLATE_SIDE = 6;
+
+	/**
+	 * The template scales to try, to allow for small changes in element size.
+	 */
+	private static final double[] SCALES = { 0.85, 0.9, 0.95, 1.0, 1.05, 1.1, 1.15 };
+
+	/**
+	 * The templates learned so far, by label.
+	 */
+	private final ConcurrentHashMap<String, Template> templates = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether this matcher is enabled.
+	 */
+	private volatile boolean enabled;
+
+	/**
+	 * The minimum correlation (between -1 and 1) for a match to be trusted.
+	 */
+	private volatile double threshold = 0.9;
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+	/**
+	 * Constructor, creates a new, disabled, LocalMatcher.
+	 */
+	LocalMatcher()
+	{
+	}
+
+	/**
+	 * Enables or disables this matcher. Disabling the matcher forgets all learned templates.
+	 *
+	 * @param enabled Set {@code true} to enable local matching.
+	 * @return This {@code LocalMatcher}, for chaining convenience.
+	 */
+	public LocalMatcher setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+			templates.clear();
+
+		return this;
+	}
+
+	/**
+	 * Indicates whether this matcher is enabled.
+	 *
+	 * @return {@code true} if this matcher is enabled.
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets the minimum normalized cross-correlation for a local match to be trusted. Lower values answer more lookups locally, at the risk of returning the wrong element. Default is 0.9.
+	 *
+	 * @param threshold The minimum correlation, between -1 and 1.
+	 * @return This {@code LocalMatcher}, for chaining convenience.
+	 */
+	public LocalMatcher setThreshold(double threshold)
+	{
+		this.threshold = threshold;
+		return this;
+	}
+
+	/**
+	 * Forgets the template learned for a label.
+	 *
+	 * @param label The label to forget
+	 */
+	public void forget(String label)
+	{
+		templates.remove(label);
+	}
+
+	/**
+	 * Gets the number of lookups which were answered locally.
+	 *
+	 * @return The number of local matches
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups which could not be answered locally.
+	 *
+	 * @return The number of lookups which went on to the server
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Determines if a template should be learned for the specified label.
+	 *
+	 * @param label The label
+	 * @return {@code true} if this matcher is enabled and has no template for {@code label} yet.
+	 */
+	boolean wants(String label)
+	{
+		return enabled && !templates.containsKey(label);
+	}
+
+	/**
+	 * Learns (or replaces) the template of a label.
+	 *
+	 * @param label The label
+	 * @param screen The screenshot the element was found in
+	 * @param r The location of the element, in screenshot pixels
+	 * @param text The text of the element, if known
+	 * @param tagName The tag name of the element, if known
+	 */
+	void learn(String label, BufferedImage screen, Rectangle r, String text, String tagName)
+	{
+		if (!enabled)
+			return;
+
+		int x = Math.max(0, r.x), y = Math.max(0, r.y), w = Math.min(r.width, screen.getWidth() - x), h = Math.min(r.height, screen.getHeight() - y);
+
+		double f = 1.0 * WORK_WIDTH / screen.getWidth();
+		int tw = (int) Math.round(w * f), th = (int) Math.round(h * f);
+		if (tw < MIN_TEMPLATE_SIDE || th < MIN_TEMPLATE_SIDE)
+			return;
+
+		float[] px = toFloat(ImageUtils.grayThumbnail(screen, x, y, w, h, tw, th));
+		if (variance(px) < 1)
+			return; // a flat region matches anything flat
+
+		templates.put(label, new Template(px, tw, th, text, tagName));
+	}
+
+	/**
+	 * Searches a screenshot for a label.
+	 *
+	 * @param label The label to search for
+	 * @param screen The screenshot to search
+	 * @return The match, or {@code null} if there was no template for {@code label} or no confident match.
+	 */
+	Match find(String label, BufferedImage screen)
+	{
+		Template t = enabled ? templates.get(label) : null;
+		if (t == null)
+			return null;
+
+		double f = 1.0 * WORK_WIDTH / screen.getWidth();
+		int fw = WORK_WIDTH, fh = (int) Math.round(screen.getHeight() * f);
+		float[] fine = toFloat(ImageUtils.grayThumbnail(screen, 0, 0, screen.getWidth(), screen.getHeight(), fw, fh));
+
+		// Coarse-to-fine: find the best candidate for each scale on a reduced image, then refine it at full working resolution.
+		int c = Math.min(t.w, t.h) >= 16 ? 4 : Math.min(t.w, t.h) >= 8 ? 2 : 1, cw = fw / c, ch = fh / c;
+		float[] coarse = c == 1 ? fine : resample(fine, fw, fh, cw, ch);
+
+		double[] best = null;
+		int bw = 0, bh = 0;
+		for (double s : SCALES)
+		{
+			int sw = (int) Math.round(t.w * s), sh = (int) Math.round(t.h * s);
+			if (sw > fw || sh > fh)
+				continue;
+
+			double[] cand = bestMatch(coarse, cw, ch, resample(t.px, t.w, t.h, Math.max(1, sw / c), Math.max(1, sh / c)), Math.max(1, sw / c), Math.max(1, sh / c), 0, 0, cw, ch);
+			if (cand == null)
+				continue;
+
+			double[] m = bestMatch(fine, fw, fh, resample(t.px, t.w, t.h, sw, sh), sw, sh, (int) cand[0] * c - c, (int) cand[1] * c - c, (int) cand[0] * c + c + 1, (int) cand[1] * c + c + 1);
+			if (m != null && (best == null || m[2] > best[2]))
+			{
+				best = m;
+				bw = sw;
+				bh = sh;
+			}
+		}
+
+		if (best == null || best[2] < threshold)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return new Match(new Rectangle((int) Math.round(best[0] / f), (int) Math.round(best[1] / f), (int) Math.round(bh / f), (int) Math.round(bw / f)), best[2], t.text, t.tagName);
+	}
+
+	/**
+	 * Finds the position where a template best matches an image, by normalized cross-correlation.
+	 *
+	 * @param img The image to search, grayscale, row-major
+	 * @param iw The width of {@code img}
+	 * @param ih The height of {@code img}
+	 * @param tpl The template to search for, grayscale, row-major
+	 * @param tw The width of {@code tpl}
+	 * @param th The height of {@code tpl}
+	 * @param x0 The smallest x coordinate to try (inclusive)
+	 * @param y0 The smallest y coordinate to try (inclusive)
+	 * @param x1 The largest x coordinate to try (exclusive)
+	 * @param y1 The largest y coordinate to try (exclusive)
+	 * @return {@code [x, y, score]} of the best match, or {@code null} if the template did not fit anywhere.
+	 */
+	private static double[] bestMatch(float[] img, int iw, int ih, float[] tpl, int tw, int th, int x0, int y0, int x1, int y1)
+	{
+		x0 = Math.max(0, x0);
+		y0 = Math.max(0, y0);
+		x1 = Math.min(iw - tw + 1, x1);
+		y1 = Math.min(ih - th + 1, y1);
+		if (x0 >= x1 || y0 >= y1)
+			return null;
+
+		int n = tw * th;
+
+		// center the template, so that sum(I * t) is the covariance numerator
+		double mean = 0, norm = 0;
+		for (float v : tpl)
+			mean += v;
+		mean /= n;
+
+		float[] t = new float[n];
+		for (int i = 0; i < n; i++)
+		{
+			t[i] = (float) (tpl[i] - mean);
+			norm += t[i] * t[i];
+		}
+		norm = Math.sqrt(norm);
+		if (norm < 1e-6)
+			return null;
+
+		// integral images of I and I^2, for the window statistics
+		int sw = iw + 1;
+		double[] sum = new double[sw * (ih + 1)], sq = new double[sw * (ih + 1)];
+		for (int y = 0; y < ih; y++)
+		{
+			double rs = 0, rq = 0;
+			for (int x = 0; x < iw; x++)
+			{
+				float v = img[y * iw + x];
+				rs += v;
+				rq += v * v;
+				sum[(y + 1) * sw + x + 1] = sum[y * sw + x + 1] + rs;
+				sq[(y + 1) * sw + x + 1] = sq[y * sw + x + 1] + rq;
+			}
+		}
+
+		double[] best = { x0, y0, -2 };
+		for (int y = y0; y < y1; y++)
+			for (int x = x0; x < x1; x++)
+			{
+				double s = sum[(y + th) * sw + x + tw] - sum[y * sw + x + tw] - sum[(y + th) * sw + x] + sum[y * sw + x],
+						q = sq[(y + th) * sw + x + tw] - sq[y * sw + x + tw] - sq[(y + th) * sw + x] + sq[y * sw + x], var = q - s * s / n;
+				if (var < 1e-6)
+					continue;
+
+				double dot = 0;
+				for (int ty = 0, ti = 0; ty < th; ty++)
+				{
+					int row = (y + ty) * iw + x;
+					for (int tx = 0; tx < tw; tx++, ti++)
+						dot += img[row + tx] * t[ti];
+				}
+
+				double score = dot / (Math.sqrt(var) * norm);
+				if (score > best[2])
+				{
+					best[0] = x;
+					best[1] = y;
+					best[2] = score;
+				}
+			}
+
+		return best;
+	}
+
+	/**
+	 * Resamples a grayscale image with bilinear interpolation.
+	 *
+	 * @param src The image to resample, row-major
+	 * @param w The width of {@code src}
+	 * @param h The height of {@code src}
+	 * @param nw The width of the result
+	 * @param nh The height of the result
+	 * @return The resampled image
+	 */
+	private static float[] resample(float[] src, int w, int h, int nw, int nh)
+	{
+		if (nw == w && nh == h)
+			return src;
+
+		float[] out = new float[nw * nh];
+		for (int y = 0; y < nh; y++)
+		{
+			double sy = Math.max(0, Math.min(h - 1, (y + 0.5) * h / nh - 0.5));
+			int y0 = (int) sy, y1 = Math.min(h - 1, y0 + 1);
+			double fy = sy - y0;
+
+			for (int x = 0; x < nw; x++)
+			{
+				double sx = Math.max(0, Math.min(w - 1, (x + 0.5) * w / nw - 0.5));
+				int x0 = (int) sx, x1 = Math.min(w - 1, x0 + 1);
+				double fx = sx - x0;
+
+				out[y * nw + x] = (float) ((src[y0 * w + x0] * (1 - fx) + src[y0 * w + x1] * fx) * (1 - fy) + (src[y1 * w + x0] * (1 - fx) + src[y1 * w + x1] * fx) * fy);
+			}
+		}
+
+		return out;
+	}
+
+	/**
+	 * Converts luma values to floats.
+	 *
+	 * @param px The luma values
+	 * @return {@code px} as floats
+	 */
+	private static float[] toFloat(int[] px)
+	{
+		float[] f = new float[px.length];
+		for (int i = 0; i < px.length; i++)
+			f[i] = px[i];
+
+		return f;
+	}
+
+	/**
+	 * Computes the variance of a set of pixels.
+	 *
+	 * @param px The pixels
+	 * @return The variance of {@code px}
+	 */
+	private static double variance(float[] px)
+	{
+		double s = 0, q = 0;
+		for (float v : px)
+		{
+			s += v;
+			q += v * v;
+		}
+
+		return q / px.length - (s / px.length) * (s / px.length);
+	}
+
+	/**
+	 * What a label looked like the last time it was found.
+	 */
+	private static class Template
+	{
+		/**
+		 * The grayscale pixels of the element, at {@link LocalMatcher#WORK_WIDTH}
+		 */
+		final float[] px;
+
+		/**
+		 * The size of {@link #px}
+		 */
+		final int w, h;
+
+		/**
+		 * The text and tag name of the element
+		 */
+		final String text, tagName;
+
+		/**
+		 * Constructor, creates a new Template.
+		 *
+		 * @param px The grayscale pixels of the element
+		 * @param w The width of {@code px}
+		 * @param h The height of {@code px}
+		 * @param text The text of the element
+		 * @param tagName The tag name of the element
+		 */
+		Template(float[] px, int w, int h, String text, String tagName)
+		{
+			this.px = px;
+			this.w = w;
+			this.h = h;
+			this.text = text;
+			this.tagName = tagName;
+		}
+	}
+
+	/**
+	 * A confident local match.
+	 */
+	static class Match
+	{
+		/**
+		 * The location of the match, in screenshot pixels
+		 */
+		final Rectangle rect;
+
+		/**
+		 * The normalized cross-correlation of the match
+		 */
+		final double score;
+
+		/**
+		 * The text and tag name of the element, as last reported
+		 */
+		final String text, tagName;
+
+		/**
+		 * Constructor, creates a new Match.
+		 *
+		 * @param rect The location of the match, in screenshot pixels
+		 * @param score The normalized cross-correlation of the match
+		 * @param text The text of the element
+		 * @param tagName The tag name of the element
+		 */
+		Match(Rectangle rect, double score, String text, String tagName)
+		{
+			this.rect = rect;
+			this.score = score;
+			this.text = text;
+			this.tagName = tagName;
+		}
+	}
+}
@@ -0,0 +1,225 @@
+package ai.test.sdk;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openqa.selenium.Rectangle;
+
+import ai.test.sdk.LocalMatcher.Match;
+
+/**
+ * Remembers where each label was last located, along with a small pixel signature of that region. When Appium fails, the remembered region is compared against a fresh screenshot, and if it still
+ * looks the same it is returned immediately, without searching the screen or calling classify. Disabled by default.
+ */
+public final class LocatorMemory
+{
+	/**
+	 * The side length of the grid each region is reduced to for its signature.
+	 */
+	private static final int SIGNATURE_SIDE = 16;
+
+	/**
+	 * The last known location of each label.
+	 */
+	private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether this memory is enabled.
+	 */
+	private volatile boolean enabled;
+
+	/**
+	 * The maximum difference in luma (0-255) of any signature cell for a region to be considered unchanged.
+	 */
+	private volatile int tolerance = 12;
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private final AtomicLong hits = new AtomicLong(), misses = new AtomicLong();
+
+	/**
+	 * Constructor, creates a new, disabled, LocatorMemory.
+	 */
+	LocatorMemory()
+	{
+	}
+
+	/**
+	 * Enables or disables this memory. Disabling the memory forgets all remembered locations.
+	 *
+	 * @param enabled Set {@code true} to remember the location of each label.
+	 * @return This {@code LocatorMemory}, for chaining convenience.
+	 */
+	public LocatorMemory setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+			entries.clear();
+
+		return this;
+	}
+
+	/**
+	 * Indicates whether this memory is enabled.
+	 *
+	 * @return {@code true} if this memory is enabled.
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Sets how much a remembered region may change and still be considered the same element. The region is reduced to a 16x16 grid of average luma values, and every cell must be within
+	 * {@code tolerance} of its remembered value. Default is 12.
+	 *
+	 * @param tolerance The maximum luma difference (0-255) of any cell
+	 * @return This {@code LocatorMemory}, for chaining convenience.
+	 */
+	public LocatorMemory setTolerance(int tolerance)
+	{
+		this.tolerance = Math.max(0, tolerance);
+		return this;
+	}
+
+	/**
+	 * Forgets the location of a label.
+	 *
+	 * @param label The label to forget
+	 */
+	public void forget(String label)
+	{
+		entries.remove(label);
+	}
+
+	/**
+	 * Gets the number of lookups which were answered from a remembered location.
+	 *
+	 * @return The number of hits
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * Gets the number of lookups of remembered labels whose region had changed.
+	 *
+	 * @return The number of misses
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * Remembers (or replaces) the location of a label.
+	 *
+	 * @param label The label
+	 * @param screen The screenshot the element was found in
+	 * @param r The location of the element, in screenshot pixels
+	 * @param text The text of the element, if known
+	 * @param tagName The tag name of the element, if known
+	 */
+	void remember(String label, BufferedImage screen, Rectangle r, String text, String tagName)
+	{
+		if (!enabled)
+			return;
+
+		int[] sig = signature(screen, r);
+		if (sig != null)
+			entries.put(label, new Entry(r, screen.getWidth(), screen.getHeight(), sig, text, tagName));
+	}
+
+	/**
+	 * Checks whether a label is still where it was last located.
+	 *
+	 * @param label The label to look up
+	 * @param screen A fresh screenshot
+	 * @return The remembered location, or {@code null} if there is none or the region has changed.
+	 */
+	Match recall(String label, BufferedImage screen)
+	{
+		Entry e = enabled ? entries.get(label) : null;
+		if (e == null)
+			return null;
+
+		int[] sig = screen.getWidth() == e.screenWidth && screen.getHeight() == e.screenHeight ? signature(screen, e.rect) : null;
+
+		int diff = sig == null ? Integer.MAX_VALUE : 0;
+		for (int i = 0; sig != null && i < sig.length; i++)
+			diff = Math.max(diff, Math.abs(sig[i] - e.signature[i]));
+
+		if (diff > tolerance)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return new Match(e.rect, 1 - diff / 255.0, e.text, e.tagName);
+	}
+
+	/**
+	 * Computes the pixel signature of a region.
+	 *
+	 * @param screen The screenshot
+	 * @param r The region, in screenshot pixels
+	 * @return The signature, or {@code null} if {@code r} is not entirely on the screen.
+	 */
+	private static int[] signature(BufferedImage screen, Rectangle r)
+	{
+		if (r.x < 0 || r.y < 0 || r.width <= 0 || r.height <= 0 || r.x + r.width > screen.getWidth() || r.y + r.height > screen.getHeight())
+			return null;
+
+		return ImageUtils.grayThumbnail(screen, r.x, r.y, r.width, r.height, Math.min(SIGNATURE_SIDE, r.width), Math.min(SIGNATURE_SIDE, r.height));
+	}
+
+	/**
+	 * The last known location of a label.
+	 */
+	private static class Entry
+	{
+		/**
+		 * The location of the element, in screenshot pixels
+		 */
+		final Rectangle rect;
+
+		/**
+		 * The size of the screenshot the element was found in
+		 */
+		final int screenWidth, screenHeight;
+
+		/**
+		 * The pixel signature of {@link #rect}
+		 */
+		final int[] signature;
+
+		/**
+		 * The text and tag name of the element
+		 */
+		final String text, tagName;
+
+		/**
+		 * Constructor, creates a new Entry.
+		 *
+		 * @param rect The location of the element, in screenshot pixels
+		 * @param screenWidth The width of the screenshot the element was found in
+		 * @param screenHeight The height of the screenshot the element was found in
+		 * @param signature The pixel signature of {@code rect}
+		 * @param text The text of the element
+		 * @param tagName The tag name of the element
+		 */
+		Entry(Rectangle rect, int screenWidth, int screenHeight, int[] signature, String text, String tagName)
+		{
+			this.rect = rect;
+			this.screenWidth = screenWidth;
+			this.screenHeight = screenHeight;
+			this.signature = signature;
+			this.text = text;
+			this.tagName = tagName;
+		}
+	}
+}
@@ -0,0 +1,125 @@
+package ai.test.sdk;
+
+/**
+ * Receives measurements of the SDK's internals: how long each phase of a lookup takes, how large the uploaded payloads are, and how often caches hit or lookups fall back to test.ai. Implement this
+ * to forward measurements to a metrics library (Micrometer, Dropwizard, OpenTelemetry, ...) and install it with {@link TestAiDriver#setMetrics(Metrics)}. Every method does nothing by default, so
+ * implementations only need to override what they use.
+ * <p>
+ * Tags are passed as alternating keys and values, e.g. {@code "label", "login_button"}. Implementations are called from many threads and should return quickly.
+ */
+public interface Metrics
+{
+	/**
+	 * A {@code Metrics} which discards everything.
+	 */
+	Metrics NOOP = new Metrics() {
+	};
+
+	/**
+	 * Timer: an entire {@code findElementBy...} call. Tagged with {@code outcome}: {@code appium}, {@code fallback}, or {@code failed}.
+	 */
+	String FIND = "testai.find";
+
+	/**
+	 * Timer: the Appium lookup of a {@code findElementBy...} call.
+	 */
+	String APPIUM_FIND = "testai.appium.find";
+
+	/**
+	 * Timer: capturing the page source for classify.
+	 */
+	String CAPTURE_SOURCE = "testai.capture.source";
+
+	/**
+	 * Timer: capturing and preparing the screenshot for classify.
+	 */
+	String CAPTURE_SCREENSHOT = "testai.capture.screenshot";
+
+	/**
+	 * Timer: an entire classify, from capture to result.
+	 */
+	String CLASSIFY = "testai.classify";
+
+	/**
+	 * Timer: sending a classify request, until the request has been fully written.
+	 */
+	String UPLOAD = "testai.classify.upload";
+
+	/**
+	 * Timer: from the end of a classify request to the start of its response, i.e. server time plus one round trip.
+	 */
+	String SERVER = "testai.classify.server";
+
+	/**
+	 * Timer: reading and decoding a classify response.
+	 */
+	String PARSE = "testai.classify.parse";
+
+	/**
+	 * Timer: one {@code add_action} upload. Tagged with {@code outcome}: {@code success} or {@code failure}.
+	 */
+	String ADD_ACTION = "testai.add_action";
+
+	/**
+	 * Histogram: the size of each uploaded screenshot, in bytes.
+	 */
+	String SCREENSHOT_BYTES = "testai.payload.screenshot";
+
+	/**
+	 * Histogram: the size of each uploaded page source (or page source delta), in characters.
+	 */
+	String SOURCE_CHARS = "testai.payload.source";
+
+	/**
+	 * Counter: lookups of the classify cache. Tagged with {@code result}: {@code hit} or {@code miss}.
+	 */
+	String CACHE = "testai.cache";
+
+	/**
+	 * Counter: lookups of the classify recording while replaying. Tagged with {@code result}: {@code hit} or {@code miss}.
+	 */
+	String REPLAY = "testai.replay";
+
+	/**
+	 * Counter: lookups answered locally, without classify. Tagged with {@code source}: {@code memory} or {@code matcher}.
+	 */
+	String LOCAL_HIT = "testai.local.hit";
+
+	/**
+	 * Counter: lookups Appium could not answer, which fell back to test.ai. Tagged with {@code label}.
+	 */
+	String FALLBACK = "testai.fallback";
+
+	/**
+	 * Records the duration of an operation.
+	 *
+	 * @param name The name of the timer
+	 * @param nanos The duration, in nanoseconds
+	 * @param tags Alternating tag keys and values
+	 */
+	default void recordTime(String name, long nanos, String... tags)
+	{
+	}
+
+	/**
+	 * Increments a counter.
+	 *
+	 * @param name The name of the counter
+	 * @param amount The amount to increment by
+	 * @param tags Alternating tag keys and values
+	 */
+	default void increment(String name, long amount, String... tags)
+	{
+	}
+
+	/**
+	 * Records a value in a distribution, such as a payload size.
+	 *
+	 * @param name The name of the histogram
+	 * @param value The value to record
+	 * @param tags Alternating tag keys and values
+	 */
+	default void recordValue(String name, long value, String... tags)
+	{
+	}
+}
@@ -0,0 +1,159 @@
+package ai.test.sdk;
+
+import java.awt.Dimension;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.Properties;
+
+import org.openqa.selenium.Capabilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A small persistent cache of screen density multipliers, keyed by device and screenshot size. This lets sessions on a device which has been seen before start without measuring the screen. Only
+ * devices with a udid are cached: names like {@code Android Emulator} are shared by devices with different screens. A udid can be reused too, e.g. {@code emulator-5554} by whichever emulator
+ * started first, so the key also holds the size of the screenshot, which gives the orientation, and the screen density if the session reports one.
+ * <p>
+ * The cache is kept in {@code ~/.testai/multipliers.properties}, or in {@code multipliers.properties} under the directory named by the {@code TESTAI_CACHE_DIR} environment variable. Several JVMs may
+ * share the file; writes are made under a file lock and merged with what other JVMs have written.
+ */
+final class MultiplierCache
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(MultiplierCache.class);
+
+	/**
+	 * The file the cache is persisted to
+	 */
+	private static final Path FILE = Paths.get(Objects.requireNonNullElse(System.getenv("TESTAI_CACHE_DIR"), Paths.get(System.getProperty("user.home"), ".testai").toString()),
+			"multipliers.properties");
+
+	/**
+	 * Held while the cache file is rewritten, so concurrent JVMs do not lose each other's entries
+	 */
+	private static final Path LOCK = FILE.resolveSibling("multipliers.properties.lock");
+
+	/**
+	 * The cached multipliers. Loaded on first use.
+	 */
+	private static Properties props;
+
+	/**
+	 * Builds the cache key for a device showing screenshots of a given size.
+	 *
+	 * @param caps The capabilities of the session on the device
+	 * @param screenshot The size of the device's screenshots, in the current orientation
+	 * @return The cache key, or {@code null} if the device has no udid, in which case its multiplier must not be cached.
+	 */
+	public static String key(Capabilities caps, Dimension screenshot)
+	{
+		Object id = caps.getCapability("udid");
+		if (id == null)
+			id = caps.getCapability("deviceUDID");
+		if (id == null || id.toString().isBlank())
+			return null;
+
+		Object density = caps.getCapability("deviceScreenDensity");
+		return String.format("%s.%s.%s.%dx%d%s", caps.getPlatform(), Objects.toString(caps.getCapability("deviceModel"), "unknown"), id, screenshot.width, screenshot.height,
+				density != null ? "." + density : "").replace(' ', '_');
+	}
+
+	/**
+	 * Looks up a cached multiplier.
+	 *
+	 * @param key The cache key, from {@link #key(Capabilities, Dimension)}
+	 * @return The cached multiplier, or 0 if there was none.
+	 */
+	public static synchronized double get(String key)
+	{
+		try
+		{
+			return Double.parseDouble(load().getProperty(key, "0"));
+		}
+		catch (NumberFormatException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Caches a multiplier and persists the cache.
+	 *
+	 * @param key The cache key, from {@link #key(Capabilities, Dimension)}
+	 * @param multiplier The multiplier to cache
+	 */
+	public static synchronized void put(String key, double multiplier)
+	{
+		load().setProperty(key, Double.toString(multiplier));
+
+		try
+		{
+			Files.createDirectories(FILE.getParent());
+
+			try (FileChannel lock = FileChannel.open(LOCK, StandardOpenOption.CREATE, StandardOpenOption.WRITE); FileLock l = lock.lock())
+			{
+				// another JVM may have added entries since we loaded the file
+				Properties merged = read();
+				merged.setProperty(key, Double.toString(multiplier));
+
+				Path tmp = Files.createTempFile(FILE.getParent(), "multipliers", ".tmp");
+				try (OutputStream out = Files.newOutputStream(tmp))
+				{
+					merged.store(out, "test.ai screen multipliers");
+				}
+
+				Files.move(tmp, FILE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				props = merged;
+			}
+		}
+		catch (IOException e)
+		{
+			log.debug("Unable to persist the multiplier cache to {}: {}", FILE, e.toString());
+		}
+	}
+
+	/**
+	 * Loads the cache from disk if it has not been loaded yet.
+	 *
+	 * @return The cached multipliers
+	 */
+	private static Properties load()
+	{
+		if (props == null)
+			props = read();
+
+		return props;
+	}
+
+	/**
+	 * Reads the cache file.
+	 *
+	 * @return The multipliers in the cache file, or none if it could not be read.
+	 */
+	private static Properties read()
+	{
+		Properties p = new Properties();
+		if (Files.isRegularFile(FILE))
+			try (InputStream in = Files.newInputStream(FILE))
+			{
+				p.load(in);
+			}
+			catch (IOException e)
+			{
+				log.debug("Unable to read the multiplier cache from {}: {}", FILE, e.toString());
+			}
+
+		return p;
+	}
+}
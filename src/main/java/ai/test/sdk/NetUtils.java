@@ -6,6 +6,7 @@ import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.time.Duration;
 import java.util.HashMap;
+import java.util.Map;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
@@ -13,11 +14,17 @@ import javax.net.ssl.SSLSession;
 import javax.net.ssl.TrustManager;
 import javax.net.ssl.X509TrustManager;
 
+import okhttp3.Call;
 import okhttp3.FormBody;
 import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
+import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
+import okio.Utf8;
 
 /**
  * Shared network/http-related utilities and functionality
@@ -38,11 +45,92 @@ final class NetUtils
 	 * @throws IOException Network error
 	 */
 	public static Response basicPOST(OkHttpClient client, HttpUrl baseURL, String endpoint, HashMap<String, String> form) throws IOException
+	{
+		return newPOST(client, baseURL, endpoint, form).execute();
+	}
+
+	/**
+	 * Prepares, but does not execute, a simple form POST to the specified url with the provided client and form data. Useful for callers who want to {@code enqueue()} the request instead of
+	 * blocking on it.
+	 * 
+	 * @param client The OkHTTP client to use
+	 * @param baseURL The base URL to target
+	 * @param endpoint The endpoint on the baseURL to target.
+	 * @param form The form data to POST
+	 * @return A {@code Call} which has not been executed yet
+	 */
+	public static Call newPOST(OkHttpClient client, HttpUrl baseURL, String endpoint, HashMap<String, String> form)
 	{
 		FormBody.Builder fb = new FormBody.Builder();
 		form.forEach(fb::add);
 
-		return client.newCall(new Request.Builder().url(baseURL.newBuilder().addPathSegment(endpoint).build()).post(fb.build()).build()).execute();
+		return client.newCall(new Request.Builder().url(baseURL.newBuilder().addPathSegment(endpoint).build()).post(fb.build()).build());
+	}
+
+	/**
+	 * Performs a multipart POST to the specified url with the provided client, form data, and binary/streamed parts. Unlike {@link #basicPOST(OkHttpClient, HttpUrl, String, HashMap)}, large values
+	 * are neither base64 nor percent-encoded.
+	 * 
+	 * @param client The OkHTTP client to use
+	 * @param baseURL The base URL to target
+	 * @param endpoint The endpoint on the baseURL to target.
+	 * @param form The (small) form fields to POST
+	 * @param parts The (large) parts to POST, keyed by field name. Each part is sent as a file named after its field.
+	 * @return The response from the server, in the form of a {@code Response} object
+	 * @throws IOException Network error
+	 */
+	public static Response multipartPOST(OkHttpClient client, HttpUrl baseURL, String endpoint, HashMap<String, String> form, Map<String, RequestBody> parts) throws IOException
+	{
+		return newMultipartPOST(client, baseURL, endpoint, form, parts).execute();
+	}
+
+	/**
+	 * Prepares, but does not execute, a multipart POST to the specified url with the provided client, form data, and binary/streamed parts.
+	 * 
+	 * @param client The OkHTTP client to use
+	 * @param baseURL The base URL to target
+	 * @param endpoint The endpoint on the baseURL to target.
+	 * @param form The (small) form fields to POST
+	 * @param parts The (large) parts to POST, keyed by field name. Each part is sent as a file named after its field.
+	 * @return A {@code Call} which has not been executed yet
+	 */
+	public static Call newMultipartPOST(OkHttpClient client, HttpUrl baseURL, String endpoint, HashMap<String, String> form, Map<String, RequestBody> parts)
+	{
+		MultipartBody.Builder mb = new MultipartBody.Builder().setType(MultipartBody.FORM);
+		form.forEach(mb::addFormDataPart);
+		parts.forEach((k, v) -> mb.addFormDataPart(k, k, v));
+
+		return client.newCall(new Request.Builder().url(baseURL.newBuilder().addPathSegment(endpoint).build()).post(mb.build()).build());
+	}
+
+	/**
+	 * Creates a {@code RequestBody} which streams a String as UTF-8 straight to the network, without first copying it into a byte array.
+	 * 
+	 * @param s The String to send
+	 * @param contentType The content type of {@code s}
+	 * @return A {@code RequestBody} for {@code s}
+	 */
+	public static RequestBody streamingBody(String s, MediaType contentType)
+	{
+		return new RequestBody() {
+			@Override
+			public MediaType contentType()
+			{
+				return contentType;
+			}
+
+			@Override
+			public long contentLength()
+			{
+				return Utf8.size(s);
+			}
+
+			@Override
+			public void writeTo(BufferedSink sink) throws IOException
+			{
+				sink.writeUtf8(s);
+			}
+		};
 	}
 
 	/**
@@ -63,6 +151,17 @@ final class NetUtils
 	 * @return A new {@code OkHttpClient} which ignores expired/invalid ssl certificates.
 	 */
 	public static OkHttpClient unsafeClient()
+	{
+		OkHttpClient.Builder b = unsafeClientBuilder();
+		return b != null ? b.build() : null;
+	}
+
+	/**
+	 * Creates a new OkHttpBuilder with timeouts configured, which ignores expired/invalid ssl certificates.
+	 * 
+	 * @return A OkHttpClient builder which ignores expired/invalid ssl certificates.
+	 */
+	static OkHttpClient.Builder unsafeClientBuilder()
 	{
 		try
 		{
@@ -71,7 +170,7 @@ final class NetUtils
 			SSLContext sslContext = SSLContext.getInstance("SSL");
 			sslContext.init(null, tl, new SecureRandom());
 
-			return basicClient().sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) tl[0]).hostnameVerifier(new TrustAllHostnameVerifier()).build();
+			return basicClient().sslSocketFactory(sslContext.getSocketFactory(), (X509TrustManager) tl[0]).hostnameVerifier(new TrustAllHostnameVerifier());
 		}
 		catch (Throwable e) // highly unlikely, shut up compiler
 		{
@@ -0,0 +1,275 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.GzipSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * An interceptor which gzips request bodies (e.g. the page source sent to {@code classify}) while they are uploaded. Bodies are compressed as they are streamed to the server, so a large screenshot
+ * is never held in memory a second time in compressed form; the trade-off is that compressed bodies are sent with chunked transfer encoding, since their length is not known up front. The sizes of
+ * each compressed body are reported as a {@link CompressionEvent}, and totals are kept by the counters of this class.
+ */
+public final class RequestCompressor implements Interceptor
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(RequestCompressor.class);
+
+	/**
+	 * Determines when request bodies are compressed.
+	 */
+	public enum Mode
+	{
+		/**
+		 * Never compress request bodies.
+		 */
+		OFF,
+
+		/**
+		 * Only compress request bodies sent to a server which has advertised gzip support with an {@code Accept-Encoding} response header.
+		 */
+		AUTO,
+
+		/**
+		 * Always compress request bodies, unless the server rejects them with {@code 415 Unsupported Media Type}.
+		 */
+		ALWAYS
+	}
+
+	/**
+	 * Determines when request bodies are compressed.
+	 */
+	private final Mode mode;
+
+	/**
+	 * Bodies which are known to be smaller than this many bytes are sent as-is.
+	 */
+	private final long threshold;
+
+	/**
+	 * The hosts which have advertised gzip support.
+	 */
+	private final Set<String> supported = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The hosts which have rejected a gzipped request.
+	 */
+	private final Set<String> rejected = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Counters exposed to the user.
+	 */
+	private final AtomicLong requests = new AtomicLong(), rawBytes = new AtomicLong(), compressedBytes = new AtomicLong();
+
+	/**
+	 * Constructor, creates a new RequestCompressor.
+	 *
+	 * @param mode Determines when request bodies are compressed
+	 * @param threshold Bodies which are known to be smaller than this many bytes are sent as-is
+	 */
+	RequestCompressor(Mode mode, long threshold)
+	{
+		this.mode = mode;
+		this.threshold = threshold;
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException
+	{
+		Request req = chain.request();
+		RequestBody body = req.body();
+		String host = req.url().host();
+
+		if (body == null || req.header("Content-Encoding") != null || !shouldCompress(host) || (body.contentLength() >= 0 && body.contentLength() < threshold))
+			return observe(chain.proceed(req), host);
+
+		Response r = chain.proceed(req.newBuilder().header("Content-Encoding", "gzip").method(req.method(), new GzipBody(body, req.url().encodedPath())).build());
+		if (r.code() != 415)
+			return observe(r, host);
+
+		log.info("{} does not accept gzipped requests, sending them uncompressed from now on", host);
+		rejected.add(host);
+		r.close();
+
+		return chain.proceed(req);
+	}
+
+	/**
+	 * Determines if requests to the specified host should be compressed.
+	 *
+	 * @param host The host the request is for
+	 * @return {@code true} if requests to {@code host} should be compressed.
+	 */
+	private boolean shouldCompress(String host)
+	{
+		switch (mode)
+		{
+			case ALWAYS:
+				return !rejected.contains(host);
+			case AUTO:
+				return supported.contains(host) && !rejected.contains(host);
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Records whether a server has advertised gzip support.
+	 *
+	 * @param r The response from the server
+	 * @param host The host which sent {@code r}
+	 * @return {@code r}
+	 */
+	private Response observe(Response r, String host)
+	{
+		String ae = r.header("Accept-Encoding");
+		if (mode == Mode.AUTO && ae != null && ae.contains("gzip"))
+			supported.add(host);
+
+		return r;
+	}
+
+	/**
+	 * Counts the bytes written through it.
+	 */
+	static class CountingSink extends ForwardingSink
+	{
+		/**
+		 * The number of bytes written so far
+		 */
+		long count;
+
+		/**
+		 * Constructor, creates a new CountingSink.
+		 *
+		 * @param delegate The sink to write to
+		 */
+		CountingSink(Sink delegate)
+		{
+			super(delegate);
+		}
+
+		@Override
+		public void write(Buffer source, long byteCount) throws IOException
+		{
+			count += byteCount;
+			super.write(source, byteCount);
+		}
+	}
+
+	/**
+	 * A request body which gzips another body as it is written to the network.
+	 */
+	private class GzipBody extends RequestBody
+	{
+		/**
+		 * The body to compress
+		 */
+		private final RequestBody body;
+
+		/**
+		 * The path the request is sent to
+		 */
+		private final String path;
+
+		/**
+		 * Constructor, creates a new GzipBody.
+		 *
+		 * @param body The body to compress
+		 * @param path The path the request is sent to
+		 */
+		GzipBody(RequestBody body, String path)
+		{
+			this.body = body;
+			this.path = path;
+		}
+
+		@Override
+		public MediaType contentType()
+		{
+			return body.contentType();
+		}
+
+		@Override
+		public long contentLength()
+		{
+			return -1;
+		}
+
+		@Override
+		public boolean isOneShot()
+		{
+			return body.isOneShot();
+		}
+
+		@Override
+		public void writeTo(BufferedSink sink) throws IOException
+		{
+			CompressionEvent ev = new CompressionEvent();
+			ev.begin();
+
+			CountingSink compressed = new CountingSink(sink), raw;
+			try (BufferedSink gz = Okio.buffer(raw = new CountingSink(new GzipSink(compressed))))
+			{
+				body.writeTo(gz);
+			}
+
+			requests.incrementAndGet();
+			rawBytes.addAndGet(raw.count);
+			compressedBytes.addAndGet(compressed.count);
+			log.debug("Compressed {} request body: {} -> {} bytes", path, raw.count, compressed.count);
+
+			ev.endpoint = path.substring(path.lastIndexOf('/') + 1);
+			ev.rawBytes = raw.count;
+			ev.compressedBytes = compressed.count;
+			ev.commit();
+		}
+	}
+
+	/**
+	 * Gets the number of requests whose bodies were compressed.
+	 *
+	 * @return The number of compressed requests
+	 */
+	public long getCompressedRequestCount()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * Gets the total size, before compression, of all compressed request bodies.
+	 *
+	 * @return The number of bytes before compression
+	 */
+	public long getRawBytes()
+	{
+		return rawBytes.get();
+	}
+
+	/**
+	 * Gets the total size, after compression, of all compressed request bodies.
+	 *
+	 * @return The number of bytes after compression
+	 */
+	public long getCompressedBytes()
+	{
+		return compressedBytes.get();
+	}
+}
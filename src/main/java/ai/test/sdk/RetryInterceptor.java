@@ -0,0 +1,201 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * An interceptor which retries failed calls with jittered exponential backoff, and which fails calls fast while the server's {@link CircuitBreaker} is open. Installed on the clients handed out by
+ * {@link TransportRegistry}.
+ * <p>
+ * Calls which the server certainly did not process (connection failures, {@code 429 Too Many Requests}, {@code 503 Service Unavailable}) are retried for every endpoint. Other failures (timeouts,
+ * {@code 502}, {@code 504}) are only retried for idempotent calls, i.e. {@code GET}s and {@code classify}, since retrying e.g. {@code add_action} could record the same action twice.
+ */
+final class RetryInterceptor implements Interceptor
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(RetryInterceptor.class);
+
+	/**
+	 * POST endpoints which are safe to retry.
+	 */
+	private static final Set<String> IDEMPOTENT = Set.of("classify");
+
+	/**
+	 * The circuit breaker of the server
+	 */
+	private final CircuitBreaker breaker;
+
+	/**
+	 * The maximum number of times a call is retried
+	 */
+	private final int maxRetries;
+
+	/**
+	 * The backoff before the first retry, and the maximum backoff, in milliseconds
+	 */
+	private final long baseBackoff, maxBackoff;
+
+	/**
+	 * Constructor, creates a new RetryInterceptor.
+	 *
+	 * @param breaker The circuit breaker of the server
+	 * @param maxRetries The maximum number of times a call is retried
+	 * @param baseBackoff The backoff before the first retry. Each retry doubles it.
+	 * @param maxBackoff The maximum backoff. Calls the server asks to retry after longer than this ({@code Retry-After}) are not retried.
+	 */
+	RetryInterceptor(CircuitBreaker breaker, int maxRetries, Duration baseBackoff, Duration maxBackoff)
+	{
+		this.breaker = breaker;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.baseBackoff = baseBackoff.toMillis();
+		this.maxBackoff = maxBackoff.toMillis();
+	}
+
+	@Override
+	public Response intercept(Chain chain) throws IOException
+	{
+		Request req = chain.request();
+		boolean idempotent = isIdempotent(req);
+
+		for (int attempt = 0;; attempt++)
+		{
+			if (!breaker.tryAcquire())
+				throw new CircuitBreaker.OpenException(breaker);
+
+			Response r = null;
+			IOException failure = null;
+			try
+			{
+				r = chain.proceed(req);
+			}
+			catch (IOException e)
+			{
+				failure = e;
+			}
+			catch (RuntimeException | Error e)
+			{
+				breaker.onAbandoned(); // frees the trial call of the half-open state
+				throw e;
+			}
+
+			// OkHttp also cancels calls whose call timeout expires, but a server which does not answer in time is unhealthy, so only calls nobody waits for are not counted
+			if (failure != null && AsyncCalls.isAbandoned(chain.call()))
+			{
+				breaker.onAbandoned(); // says nothing about the server's health
+				throw failure;
+			}
+
+			if (failure != null || r.code() == 429 || r.code() >= 500)
+				breaker.onFailure();
+			else
+				breaker.onSuccess();
+
+			boolean retryable = failure != null ? (idempotent || failure instanceof ConnectException || failure instanceof NoRouteToHostException)
+					: r.code() == 429 || r.code() == 503 || (idempotent && (r.code() == 502 || r.code() == 504));
+			if (!retryable || attempt >= maxRetries)
+			{
+				if (failure != null)
+					throw failure;
+
+				return r;
+			}
+
+			long delay = backoff(attempt, r);
+			if (delay < 0)
+				return r; // the server wants us to wait longer than we are willing to
+
+			if (r != null)
+				r.close();
+
+			log.debug("{} failed ({}), retrying in {} ms", req.url().encodedPath(), failure != null ? failure.toString() : r.code(), delay);
+			try
+			{
+				Thread.sleep(delay);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to retry " + req.url());
+			}
+		}
+	}
+
+	/**
+	 * Determines how long to wait before retrying. Honours the server's {@code Retry-After} header if present, otherwise uses exponential backoff with full jitter.
+	 *
+	 * @param attempt The number of the attempt which just failed, starting at 0
+	 * @param r The response of that attempt, or {@code null} if there was none
+	 * @return The delay, in milliseconds, or -1 if the server asked for a longer delay than the maximum backoff.
+	 */
+	private long backoff(int attempt, Response r)
+	{
+		long retryAfter = r != null ? retryAfter(r.header("Retry-After")) : -1;
+		if (retryAfter >= 0)
+			return retryAfter <= maxBackoff ? retryAfter : -1;
+
+		long cap = Math.min(maxBackoff, baseBackoff << Math.min(attempt, 20));
+		return ThreadLocalRandom.current().nextLong(cap + 1);
+	}
+
+	/**
+	 * Parses a {@code Retry-After} header, which is either a number of seconds or an HTTP date.
+	 *
+	 * @param v The value of the header
+	 * @return The delay the server asked for, in milliseconds, or -1 if {@code v} is missing or invalid.
+	 */
+	static long retryAfter(String v)
+	{
+		if (v == null || v.isBlank())
+			return -1;
+
+		v = v.trim();
+		try
+		{
+			return Math.max(0, Long.parseLong(v) * 1000);
+		}
+		catch (NumberFormatException e) // not delta-seconds, so it should be a date
+		{
+		}
+
+		try
+		{
+			return Math.max(0, Duration.between(ZonedDateTime.now(), ZonedDateTime.parse(v, DateTimeFormatter.RFC_1123_DATE_TIME)).toMillis());
+		}
+		catch (Throwable e)
+		{
+			return -1;
+		}
+	}
+
+	/**
+	 * Determines if a call is safe to retry even if the server may have processed it.
+	 *
+	 * @param req The request
+	 * @return {@code true} if {@code req} is idempotent.
+	 */
+	private static boolean isIdempotent(Request req)
+	{
+		if (req.method().equals("GET") || req.method().equals("HEAD"))
+			return true;
+
+		List<String> segments = req.url().pathSegments();
+		return IDEMPOTENT.contains(segments.get(segments.size() - 1));
+	}
+}
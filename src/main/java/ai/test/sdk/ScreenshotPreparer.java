@@ -0,0 +1,170 @@
+package ai.test.sdk;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepares screenshots before they are uploaded for classification. Screenshots can be downscaled, converted to grayscale, and/or transcoded to JPEG, which greatly reduces the number of bytes
+ * uploaded per call to classify. By default screenshots are uploaded as-is.
+ */
+public final class ScreenshotPreparer
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(ScreenshotPreparer.class);
+
+	/**
+	 * The maximum width of uploaded screenshots, in pixels. Set 0 for no limit.
+	 */
+	private volatile int maxWidth;
+
+	/**
+	 * The factor to scale screenshots by. Values below 1 shrink the screenshot.
+	 */
+	private volatile double scale = 1;
+
+	/**
+	 * Indicates whether screenshots should be converted to grayscale.
+	 */
+	private volatile boolean grayscale;
+
+	/**
+	 * The JPEG quality to encode screenshots with, between 0 and 1. Set a negative value to keep them as PNGs.
+	 */
+	private volatile float jpegQuality = -1;
+
+	/**
+	 * Constructor, creates a new ScreenshotPreparer which does not modify screenshots.
+	 */
+	ScreenshotPreparer()
+	{
+	}
+
+	/**
+	 * Sets the maximum width of uploaded screenshots. Wider screenshots are downscaled, preserving their aspect ratio. Default is 0 (no limit).
+	 *
+	 * @param maxWidth The maximum width, in pixels. Set 0 for no limit.
+	 * @return This {@code ScreenshotPreparer}, for chaining convenience.
+	 */
+	public ScreenshotPreparer setMaxWidth(int maxWidth)
+	{
+		this.maxWidth = Math.max(0, maxWidth);
+		return this;
+	}
+
+	/**
+	 * Sets the factor to scale screenshots by. If a maximum width is also set, whichever results in the smaller image wins. Default is 1.
+	 *
+	 * @param scale The scale factor, in {@code (0, 1]}.
+	 * @return This {@code ScreenshotPreparer}, for chaining convenience.
+	 */
+	public ScreenshotPreparer setScale(double scale)
+	{
+		if (scale <= 0 || scale > 1)
+			throw new IllegalArgumentException("scale must be in (0, 1], got " + scale);
+
+		this.scale = scale;
+		return this;
+	}
+
+	/**
+	 * Sets whether screenshots should be converted to grayscale. Default is {@code false}.
+	 *
+	 * @param grayscale Set {@code true} to convert screenshots to grayscale.
+	 * @return This {@code ScreenshotPreparer}, for chaining convenience.
+	 */
+	public ScreenshotPreparer setGrayscale(boolean grayscale)
+	{
+		this.grayscale = grayscale;
+		return this;
+	}
+
+	/**
+	 * Sets the JPEG quality to transcode screenshots with. Default is -1 (keep screenshots as PNGs).
+	 *
+	 * @param jpegQuality The quality, between 0 and 1, or a negative value to keep screenshots as PNGs.
+	 * @return This {@code ScreenshotPreparer}, for chaining convenience.
+	 */
+	public ScreenshotPreparer setJpegQuality(float jpegQuality)
+	{
+		this.jpegQuality = Math.min(1f, jpegQuality);
+		return this;
+	}
+
+	/**
+	 * Prepares a screenshot for upload. If this preparer has nothing to do, {@code png} is returned as-is without being decoded.
+	 *
+	 * @param png The screenshot, as captured by Appium
+	 * @param decoded {@code png}, already decoded by the caller, or {@code null} to decode it here if necessary.
+	 * @return The prepared screenshot. If preparation fails, the original screenshot is used.
+	 */
+	PreparedScreenshot prepare(byte[] png, BufferedImage decoded)
+	{
+		double s = scale;
+		int mw = maxWidth;
+		boolean gray = grayscale;
+		float q = jpegQuality;
+
+		if (s >= 1 && mw == 0 && !gray && q < 0)
+			return new PreparedScreenshot(png, 1, "image/png");
+
+		try
+		{
+			BufferedImage img = decoded != null ? decoded : ImageUtils.decode(png);
+			if (mw > 0 && img.getWidth() * s > mw)
+				s = 1.0 * mw / img.getWidth();
+
+			int w = (int) Math.round(img.getWidth() * s), h = (int) Math.round(img.getHeight() * s);
+			BufferedImage out = ImageUtils.resize(img, w, h, gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+
+			byte[] b = q >= 0 ? ImageUtils.encodeJPEG(out, q) : ImageUtils.encodePNG(out);
+			log.debug("Prepared screenshot: {}x{} ({} bytes) -> {}x{} ({} bytes)", img.getWidth(), img.getHeight(), png.length, w, h, b.length);
+
+			return new PreparedScreenshot(b, 1.0 * w / img.getWidth(), q >= 0 ? "image/jpeg" : "image/png");
+		}
+		catch (IOException e)
+		{
+			log.warn("Unable to prepare screenshot, uploading it as-is", e);
+			return new PreparedScreenshot(png, 1, "image/png");
+		}
+	}
+
+	/**
+	 * Simple container for a screenshot which is ready to be uploaded.
+	 */
+	static class PreparedScreenshot
+	{
+		/**
+		 * The encoded screenshot
+		 */
+		final byte[] bytes;
+
+		/**
+		 * The factor the screenshot was scaled by. Coordinates returned by the server must be divided by this to get back to the original screenshot.
+		 */
+		final double scale;
+
+		/**
+		 * The content type of the encoded screenshot, e.g. {@code image/png}
+		 */
+		final String contentType;
+
+		/**
+		 * Constructor, creates a new PreparedScreenshot.
+		 *
+		 * @param bytes The encoded screenshot
+		 * @param scale The factor the screenshot was scaled by
+		 * @param contentType The content type of the encoded screenshot
+		 */
+		PreparedScreenshot(byte[] bytes, double scale, String contentType)
+		{
+			this.bytes = bytes;
+			this.scale = scale;
+			this.contentType = contentType;
+		}
+	}
+}
@@ -0,0 +1,249 @@
+package ai.test.sdk;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link Metrics} which keeps live aggregates (counts, totals, means, maxima) of everything it receives, and forwards every measurement on to another {@code Metrics}. Each
+ * {@code TestAiDriver} and {@code TestAiDriverPool} has one, registered as a JMX MXBean under {@code ai.test.sdk}.
+ */
+public final class SdkStats implements Metrics, SdkStatsMXBean
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(SdkStats.class);
+
+	/**
+	 * The counters, by key
+	 */
+	private final ConcurrentHashMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * The timers and histograms, by key
+	 */
+	private final ConcurrentHashMap<String, Aggregate> timers = new ConcurrentHashMap<>(), histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * The metrics every measurement is forwarded to
+	 */
+	private volatile Metrics downstream = Metrics.NOOP;
+
+	/**
+	 * The name this is registered with JMX under, or {@code null} if it is not registered.
+	 */
+	private ObjectName objectName;
+
+	/**
+	 * Constructor, creates a new, empty, SdkStats.
+	 */
+	SdkStats()
+	{
+	}
+
+	/**
+	 * Sets the metrics every measurement is forwarded to.
+	 *
+	 * @param downstream The metrics to forward to. Set {@code null} to stop forwarding.
+	 */
+	void setDownstream(Metrics downstream)
+	{
+		this.downstream = downstream != null ? downstream : Metrics.NOOP;
+	}
+
+	@Override
+	public void recordTime(String name, long nanos, String... tags)
+	{
+		timers.computeIfAbsent(key(name, tags), k -> new Aggregate()).add(nanos);
+		downstream.recordTime(name, nanos, tags);
+	}
+
+	@Override
+	public void increment(String name, long amount, String... tags)
+	{
+		counters.computeIfAbsent(key(name, tags), k -> new LongAdder()).add(amount);
+		downstream.increment(name, amount, tags);
+	}
+
+	@Override
+	public void recordValue(String name, long value, String... tags)
+	{
+		histograms.computeIfAbsent(key(name, tags), k -> new Aggregate()).add(value);
+		downstream.recordValue(name, value, tags);
+	}
+
+	@Override
+	public Map<String, Long> getCounters()
+	{
+		Map<String, Long> m = new TreeMap<>();
+		counters.forEach((k, v) -> m.put(k, v.sum()));
+		return m;
+	}
+
+	@Override
+	public Map<String, Long> getTimerCounts()
+	{
+		return view(timers, a -> a.count.sum());
+	}
+
+	@Override
+	public Map<String, Double> getTimerTotalMillis()
+	{
+		return view(timers, a -> a.total.sum() / 1e6);
+	}
+
+	@Override
+	public Map<String, Double> getTimerMeanMillis()
+	{
+		return view(timers, a -> a.mean() / 1e6);
+	}
+
+	@Override
+	public Map<String, Double> getTimerMaxMillis()
+	{
+		return view(timers, a -> a.max.get() / 1e6);
+	}
+
+	@Override
+	public Map<String, Double> getHistogramMeans()
+	{
+		return view(histograms, Aggregate::mean);
+	}
+
+	@Override
+	public Map<String, Long> getHistogramMaxes()
+	{
+		return view(histograms, a -> a.max.get());
+	}
+
+	@Override
+	public void reset()
+	{
+		counters.clear();
+		timers.clear();
+		histograms.clear();
+	}
+
+	/**
+	 * Registers this with the platform MBean server. Failures are logged and otherwise ignored.
+	 *
+	 * @param type The type of the owner, e.g. {@code TestAiDriver}
+	 * @param name A name which is unique among owners of the same type
+	 */
+	synchronized void register(String type, String name)
+	{
+		try
+		{
+			ObjectName on = new ObjectName(String.format("ai.test.sdk:type=%s,name=%s", type, ObjectName.quote(name)));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+			objectName = on;
+		}
+		catch (Throwable e)
+		{
+			log.debug("Unable to register SDK stats with JMX: {}", e.toString());
+		}
+	}
+
+	/**
+	 * Unregisters this from the platform MBean server, if it was registered.
+	 */
+	synchronized void unregister()
+	{
+		if (objectName == null)
+			return;
+
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		}
+		catch (Throwable e)
+		{
+			log.debug("Unable to unregister SDK stats from JMX: {}", e.toString());
+		}
+
+		objectName = null;
+	}
+
+	/**
+	 * Creates the key of a metric.
+	 *
+	 * @param name The name of the metric
+	 * @param tags Alternating tag keys and values
+	 * @return {@code name}, followed by {@code tags} in braces if there are any.
+	 */
+	private static String key(String name, String... tags)
+	{
+		if (tags.length == 0)
+			return name;
+
+		StringBuilder sb = new StringBuilder(name).append('{');
+		for (int i = 0; i + 1 < tags.length; i += 2)
+			sb.append(i == 0 ? "" : ",").append(tags[i]).append('=').append(tags[i + 1]);
+
+		return sb.append('}').toString();
+	}
+
+	/**
+	 * Creates a sorted snapshot of some aggregates.
+	 *
+	 * @param <X> The type of the values of the snapshot
+	 * @param m The aggregates
+	 * @param fn Extracts the value of interest from an aggregate
+	 * @return The snapshot
+	 */
+	private static <X> Map<String, X> view(Map<String, Aggregate> m, Function<Aggregate, X> fn)
+	{
+		Map<String, X> out = new TreeMap<>();
+		m.forEach((k, v) -> out.put(k, fn.apply(v)));
+		return out;
+	}
+
+	/**
+	 * The count, total, and maximum of a set of values.
+	 */
+	private static class Aggregate
+	{
+		/**
+		 * The number of values and their total
+		 */
+		final LongAdder count = new LongAdder(), total = new LongAdder();
+
+		/**
+		 * The largest value
+		 */
+		final LongAccumulator max = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+		/**
+		 * Adds a value.
+		 *
+		 * @param v The value to add
+		 */
+		void add(long v)
+		{
+			count.increment();
+			total.add(v);
+			max.accumulate(v);
+		}
+
+		/**
+		 * Computes the mean of the values.
+		 *
+		 * @return The mean, or 0 if there are no values.
+		 */
+		double mean()
+		{
+			long n = count.sum();
+			return n == 0 ? 0 : 1.0 * total.sum() / n;
+		}
+	}
+}
@@ -0,0 +1,63 @@
+package ai.test.sdk;
+
+import java.util.Map;
+
+/**
+ * The JMX view of an {@link SdkStats}. Keys are metric names, followed by their tags in braces if they have any, e.g. {@code testai.fallback{label=login_button}}.
+ */
+public interface SdkStatsMXBean
+{
+	/**
+	 * Gets the value of every counter.
+	 *
+	 * @return The counters, by key
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * Gets the number of operations recorded by every timer.
+	 *
+	 * @return The number of operations, by key
+	 */
+	Map<String, Long> getTimerCounts();
+
+	/**
+	 * Gets the total time recorded by every timer. This is where the time went.
+	 *
+	 * @return The total time in milliseconds, by key
+	 */
+	Map<String, Double> getTimerTotalMillis();
+
+	/**
+	 * Gets the mean time recorded by every timer.
+	 *
+	 * @return The mean time in milliseconds, by key
+	 */
+	Map<String, Double> getTimerMeanMillis();
+
+	/**
+	 * Gets the longest time recorded by every timer.
+	 *
+	 * @return The longest time in milliseconds, by key
+	 */
+	Map<String, Double> getTimerMaxMillis();
+
+	/**
+	 * Gets the mean value recorded by every histogram.
+	 *
+	 * @return The mean value, by key
+	 */
+	Map<String, Double> getHistogramMeans();
+
+	/**
+	 * Gets the largest value recorded by every histogram.
+	 *
+	 * @return The largest value, by key
+	 */
+	Map<String, Long> getHistogramMaxes();
+
+	/**
+	 * Clears all aggregates.
+	 */
+	void reset();
+}
@@ -0,0 +1,283 @@
+package ai.test.sdk;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Interceptor;
+import okhttp3.Response;
+
+/**
+ * A global, fair limit on the number of {@code classify} and {@code add_action} calls in flight. Each session gets its own interceptor, which waits for a permit before sending one of those calls
+ * and records how long it waited. Permits are handed out to the sessions with waiting calls in turn, and to the calls of a session in the order they were made, so a burst from one session cannot
+ * starve the others.
+ */
+public final class ServerCallLimiter
+{
+	/**
+	 * The endpoints which are subject to the limit.
+	 */
+	private static final Set<String> LIMITED = Set.of("classify", "add_action");
+
+	/**
+	 * The current limit.
+	 */
+	private int limit;
+
+	/**
+	 * The number of free permits. Negative while the limit has been lowered below the number of calls in flight.
+	 */
+	private int available;
+
+	/**
+	 * The queues of the sessions with calls waiting for a permit, in the order they get their next permit.
+	 */
+	private final ArrayDeque<ArrayDeque<Waiter>> turns = new ArrayDeque<>();
+
+	/**
+	 * Constructor, creates a new ServerCallLimiter.
+	 *
+	 * @param limit The maximum number of limited calls in flight
+	 */
+	ServerCallLimiter(int limit)
+	{
+		this.limit = available = Math.max(1, limit);
+	}
+
+	/**
+	 * Changes the maximum number of limited calls in flight. Calls which are already in flight are not affected.
+	 *
+	 * @param limit The new limit
+	 */
+	synchronized void setLimit(int limit)
+	{
+		limit = Math.max(1, limit);
+		if (limit < this.limit)
+			available -= this.limit - limit;
+		else
+			for (int i = this.limit; i < limit; i++)
+				release();
+
+		this.limit = limit;
+	}
+
+	/**
+	 * Gets the maximum number of limited calls in flight.
+	 *
+	 * @return The current limit
+	 */
+	synchronized int getLimit()
+	{
+		return limit;
+	}
+
+	/**
+	 * Creates the interceptor for a session.
+	 *
+	 * @param stats The statistics of the session, which the interceptor will update
+	 * @return An interceptor which applies this limit to the calls of one session
+	 */
+	Interceptor interceptor(SessionStats stats)
+	{
+		ArrayDeque<Waiter> queue = new ArrayDeque<>();
+		return chain -> {
+			List<String> segments = chain.request().url().pathSegments();
+			if (!LIMITED.contains(segments.get(segments.size() - 1)))
+				return chain.proceed(chain.request());
+
+			long start = System.nanoTime();
+			stats.queued.incrementAndGet();
+			try
+			{
+				acquire(queue);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting to call " + chain.request().url());
+			}
+			finally
+			{
+				stats.queued.decrementAndGet();
+			}
+
+			long waited = System.nanoTime() - start;
+			stats.calls.incrementAndGet();
+			stats.totalWait.addAndGet(waited);
+			stats.maxWait.accumulateAndGet(waited, Math::max);
+
+			stats.inFlight.incrementAndGet();
+			try
+			{
+				return chain.proceed(chain.request());
+			}
+			finally
+			{
+				stats.inFlight.decrementAndGet();
+				release();
+			}
+		};
+	}
+
+	/**
+	 * Waits for a permit.
+	 *
+	 * @param queue The queue of the session the permit is for
+	 * @throws InterruptedException If interrupted while waiting. No permit is held then.
+	 */
+	private synchronized void acquire(ArrayDeque<Waiter> queue) throws InterruptedException
+	{
+		if (available > 0 && turns.isEmpty())
+		{
+			available--;
+			return;
+		}
+
+		Waiter w = new Waiter();
+		if (queue.isEmpty())
+			turns.add(queue);
+		queue.add(w);
+
+		try
+		{
+			while (!w.granted)
+				wait();
+		}
+		catch (InterruptedException e)
+		{
+			if (w.granted)
+				release();
+			else
+			{
+				queue.remove(w);
+				if (queue.isEmpty())
+					turns.remove(queue);
+			}
+
+			throw e;
+		}
+	}
+
+	/**
+	 * Gives back a permit, handing it to the first waiting call of the session whose turn it is.
+	 */
+	private synchronized void release()
+	{
+		if (available < 0 || turns.isEmpty())
+		{
+			available++;
+			return;
+		}
+
+		ArrayDeque<Waiter> queue = turns.poll();
+		queue.poll().granted = true;
+		if (!queue.isEmpty())
+			turns.add(queue);
+
+		notifyAll();
+	}
+
+	/**
+	 * A call waiting for a permit.
+	 */
+	private static class Waiter
+	{
+		/**
+		 * Indicates whether the call has been given a permit
+		 */
+		boolean granted;
+	}
+
+	/**
+	 * Per-session statistics of calls subject to a {@link ServerCallLimiter}.
+	 */
+	public static final class SessionStats
+	{
+		/**
+		 * The number of calls currently waiting for a permit
+		 */
+		private final AtomicInteger queued = new AtomicInteger();
+
+		/**
+		 * The number of calls currently in flight
+		 */
+		private final AtomicInteger inFlight = new AtomicInteger();
+
+		/**
+		 * The number of calls which were given a permit
+		 */
+		private final AtomicLong calls = new AtomicLong();
+
+		/**
+		 * The total and longest time calls waited for a permit, in nanoseconds
+		 */
+		private final AtomicLong totalWait = new AtomicLong(), maxWait = new AtomicLong();
+
+		/**
+		 * Constructor, creates a new, empty, SessionStats.
+		 */
+		SessionStats()
+		{
+		}
+
+		/**
+		 * Gets the number of calls currently waiting for a permit.
+		 *
+		 * @return The current queue length of the session
+		 */
+		public int getQueuedCount()
+		{
+			return queued.get();
+		}
+
+		/**
+		 * Gets the number of calls currently in flight.
+		 *
+		 * @return The number of calls in flight
+		 */
+		public int getInFlightCount()
+		{
+			return inFlight.get();
+		}
+
+		/**
+		 * Gets the number of calls which were given a permit so far.
+		 *
+		 * @return The number of calls
+		 */
+		public long getCallCount()
+		{
+			return calls.get();
+		}
+
+		/**
+		 * Gets the total time calls spent waiting for a permit.
+		 *
+		 * @return The total time spent queued
+		 */
+		public Duration getTotalWait()
+		{
+			return Duration.ofNanos(totalWait.get());
+		}
+
+		/**
+		 * Gets the longest time a call spent waiting for a permit.
+		 *
+		 * @return The longest time spent queued
+		 */
+		public Duration getMaxWait()
+		{
+			return Duration.ofNanos(maxWait.get());
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("queued=%d, inFlight=%d, calls=%d, totalWait=%s, maxWait=%s", getQueuedCount(), getInFlightCount(), getCallCount(), getTotalWait(), getMaxWait());
+		}
+	}
+}
@@ -0,0 +1,163 @@
+package ai.test.sdk;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line-level diffs of page sources, used to upload only what changed since the last page source the server acknowledged in this run.
+ * <p>
+ * A delta is a sequence of hunks. Each hunk is a header line {@code <base line>,<lines deleted>,<lines inserted>} followed by the inserted lines, and hunks appear in increasing base line order.
+ * Lines are separated by {@code \n}.
+ */
+final class SourceDelta
+{
+	/**
+	 * Diffs which need more edits than this are not worth computing; the caller should upload the full page source instead.
+	 */
+	private static final int MAX_EDITS = 500;
+
+	/**
+	 * Computes the hash the server uses to identify a page source.
+	 *
+	 * @param source The page source to hash
+	 * @return The SHA-256 of {@code source}, in hex.
+	 */
+	public static String hash(String source)
+	{
+		try
+		{
+			StringBuilder sb = new StringBuilder();
+			for (byte b : MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8)))
+				sb.append(String.format("%02x", b));
+
+			return sb.toString();
+		}
+		catch (NoSuchAlgorithmException e) // every JVM has SHA-256, shut up compiler
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Computes the delta which turns {@code base} into {@code current}, using Myers' O(ND) algorithm on lines.
+	 *
+	 * @param base The page source the server already has
+	 * @param current The new page source
+	 * @return The delta, or {@code null} if the page sources are too different for a delta to be worthwhile.
+	 */
+	public static String diff(String base, String current)
+	{
+		String[] a = base.split("\n", -1), b = current.split("\n", -1);
+		int n = a.length, m = b.length, max = Math.min(n + m, MAX_EDITS), off = max + 1;
+
+		// trace.get(d) is the furthest x reached on each diagonal k after d edits
+		List<int[]> trace = new ArrayList<>();
+		int[] v = new int[2 * max + 3];
+
+		int dFound = -1;
+		for (int d = 0; d <= max && dFound < 0; d++)
+		{
+			for (int k = -d; k <= d; k += 2)
+			{
+				int x = k == -d || (k != d && v[off + k - 1] < v[off + k + 1]) ? v[off + k + 1] : v[off + k - 1] + 1, y = x - k;
+				while (x < n && y < m && a[x].equals(b[y]))
+				{
+					x++;
+					y++;
+				}
+
+				v[off + k] = x;
+				if (x >= n && y >= m)
+				{
+					dFound = d;
+					break;
+				}
+			}
+
+			trace.add(v.clone());
+		}
+
+		if (dFound < 0)
+			return null;
+
+		// Walk back through the trace, collecting a mark for each edit: base line of the edit, and whether it is an insert of b[y] or a delete of a[x].
+		List<int[]> edits = new ArrayList<>();
+		int x = n, y = m;
+		for (int d = dFound; d > 0; d--)
+		{
+			int[] pv = trace.get(d - 1);
+			int k = x - y, pk = k == -d || (k != d && pv[off + k - 1] < pv[off + k + 1]) ? k + 1 : k - 1, px = pv[off + pk], py = px - pk;
+
+			while (x > px && y > py)
+			{
+				x--;
+				y--;
+			}
+
+			if (pk == k + 1)
+				edits.add(0, new int[] { px, py, 1 }); // insert b[py] before a[px]
+			else
+				edits.add(0, new int[] { px, py, 0 }); // delete a[px]
+
+			x = px;
+			y = py;
+		}
+
+		// Merge consecutive edits into hunks.
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < edits.size();)
+		{
+			int start = edits.get(i)[0], del = 0;
+			List<String> ins = new ArrayList<>();
+
+			while (i < edits.size() && edits.get(i)[0] == start + del)
+			{
+				int[] e = edits.get(i++);
+				if (e[2] == 1)
+					ins.add(b[e[1]]);
+				else
+					del++;
+			}
+
+			sb.append(start).append(',').append(del).append(',').append(ins.size()).append('\n');
+			ins.forEach(l -> sb.append(l).append('\n'));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Applies a delta created by {@link #diff(String, String)}.
+	 *
+	 * @param base The page source the delta was computed against
+	 * @param delta The delta to apply
+	 * @return The new page source
+	 */
+	public static String apply(String base, String delta)
+	{
+		String[] a = base.split("\n", -1), d = delta.split("\n", -1);
+		List<String> out = new ArrayList<>();
+
+		int pos = 0;
+		for (int i = 0; i < d.length && !d[i].isEmpty();)
+		{
+			String[] h = d[i++].split(",");
+			int start = Integer.parseInt(h[0]), del = Integer.parseInt(h[1]), ins = Integer.parseInt(h[2]);
+
+			while (pos < start)
+				out.add(a[pos++]);
+
+			pos += del;
+			for (int j = 0; j < ins; j++)
+				out.add(d[i++]);
+		}
+
+		while (pos < a.length)
+			out.add(a[pos++]);
+
+		return String.join("\n", out);
+	}
+}
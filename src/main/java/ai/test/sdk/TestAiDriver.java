@@ -1,20 +1,34 @@
 package ai.test.sdk;
 
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.logging.Level;
 
-import javax.imageio.ImageIO;
-
 import org.openqa.selenium.By;
 import org.openqa.selenium.Capabilities;
 import org.openqa.selenium.DeviceRotation;
@@ -39,12 +53,16 @@ import org.openqa.selenium.remote.SessionId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonObject;
-
+import ai.test.sdk.CollectionUtils.Tuple;
+import ai.test.sdk.ScreenshotPreparer.PreparedScreenshot;
+import com.google.gson.JsonArray;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.MobileElement;
+import okhttp3.Call;
 import okhttp3.HttpUrl;
+import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
 import okhttp3.Response;
 
 /**
@@ -62,6 +80,11 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	 */
 	private static Logger log = LoggerFactory.getLogger(TestAiDriver.class);
 
+	/**
+	 * Returned by {@code classify()} in place of a result for a lookup of a batch which needs the server. The batch then classifies all such lookups with a single call.
+	 */
+	private static final ClassifyResult DEFERRED = new ClassifyResult(null, null, "", 1);
+
 	/**
 	 * The client to use for making http requests
 	 */
@@ -103,9 +126,113 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	// private String lastTestCaseScreenshotUUID;
 
 	/**
-	 * The screen density multiplier
+	 * The screen density multiplier for the current orientation. Computed lazily, 0 until then and whenever the orientation changes.
+	 */
+	private volatile double multiplier;
+
+	/**
+	 * Indicates whether {@link #multiplier} was determined in landscape orientation.
+	 */
+	private volatile boolean landscape;
+
+	/**
+	 * Uploads {@code add_action} records in the background so that successful lookups don't wait on the network.
+	 */
+	private ActionUploader uploader;
+
+	/**
+	 * Optional on-disk journal of {@code add_action} records. If set, records are written here instead of being uploaded, and are bulk-flushed to the server on {@link #quit()}.
+	 */
+	private ActionJournal journal;
+
+	/**
+	 * The maximum amount of time {@link #quit()} waits for the records of {@link #journal} to be uploaded.
+	 */
+	private Duration journalDrainTimeout = ActionJournal.DEFAULT_DRAIN_TIMEOUT;
+
+	/**
+	 * Prepares screenshots (downscaling, transcoding) before they are uploaded for classification.
+	 */
+	private ScreenshotPreparer preparer = new ScreenshotPreparer();
+
+	/**
+	 * Caches successful classifications by label and screen fingerprint.
+	 */
+	private ClassifyCache cache = new ClassifyCache();
+
+	/**
+	 * Records classifications to disk, and replays them in later runs.
+	 */
+	private ClassifyReplay replay = new ClassifyReplay();
+
+	/**
+	 * Matches previously seen elements locally before asking the server.
+	 */
+	private LocalMatcher matcher = new LocalMatcher();
+
+	/**
+	 * Remembers where each label was last located, so unchanged screens can be answered without searching or classifying.
+	 */
+	private LocatorMemory memory = new LocatorMemory();
+
+	/**
+	 * The keys the server has assigned to labels in this run, along with the scale of the screenshot each key was created from.
+	 */
+	private ConcurrentHashMap<String, Tuple<String, Double>> elementKeys = new ConcurrentHashMap<>();
+
+	/**
+	 * Indicates whether known keys should be reused when Appium finds an element, instead of calling classify again.
+	 */
+	private boolean reuseElementKeys = true;
+
+	/**
+	 * Indicates whether classify requests should be sent as multipart uploads with a binary screenshot, instead of as url-encoded forms with a base64 screenshot.
+	 */
+	private boolean multipartUploads;
+
+	/**
+	 * Indicates whether page sources should be uploaded as deltas against the last page source the server acknowledged.
+	 */
+	private boolean sourceDeltas;
+
+	/**
+	 * The last page source the server acknowledged in this run, and its hash. {@code null} until then.
+	 */
+	private volatile Tuple<String, String> sourceBase;
+
+	/**
+	 * Runs the page source and screenshot captures of {@code classify()} concurrently.
+	 */
+	private ExecutorService captureExecutor = Executors.newCachedThreadPool(r -> {
+		Thread t = new Thread(r, "testai-capture");
+		t.setDaemon(true);
+		return t;
+	});
+
+	/**
+	 * The maximum amount of time, in milliseconds, to wait for the page source or the screenshot in {@code classify()}.
+	 */
+	private long captureTimeoutMillis = 30000;
+
+	/**
+	 * Runs the {@code ...Async} variants of the find methods.
+	 */
+	private Executor asyncExecutor = AsyncCalls.DEFAULT_EXECUTOR;
+
+	/**
+	 * The circuit breaker of the server. While it is open, lookups which Appium could not answer fail fast instead of waiting on the server.
+	 */
+	private CircuitBreaker breaker;
+
+	/**
+	 * Indicates whether slow classify requests should be hedged with a duplicate request.
+	 */
+	private boolean hedgedClassify;
+
+	/**
+	 * Live aggregates of this driver's measurements, which are also forwarded to the user's {@link Metrics}.
 	 */
-	private double multiplier;
+	private SdkStats stats = new SdkStats();
 
 	/**
 	 * Constructor, creates a new TestAiDriver.
@@ -118,6 +245,22 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	 * @throws IOException If there was an initialization error.
 	 */
 	public TestAiDriver(AppiumDriver<T> driver, String apiKey, String serverURL, String testCaseName, boolean train) throws IOException
+	{
+		this(driver, apiKey, serverURL, testCaseName, train, null);
+	}
+
+	/**
+	 * Constructor, creates a new TestAiDriver which makes its http requests with the specified client.
+	 * 
+	 * @param driver The AppiumDriver to wrap
+	 * @param apiKey Your API key, acquired from <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 * @param serverURL The server URL. Set {@code null} to use the default of <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 * @param testCaseName The test case name to use for interactive mode. Setting this to something other than {@code null} enables interactive mode.
+	 * @param train Set `true` to enable training for each encountered element.
+	 * @param client The client to use for making http requests. Set {@code null} to use the client shared by all drivers for this server (see {@link TransportRegistry}).
+	 * @throws IOException If there was an initialization error.
+	 */
+	public TestAiDriver(AppiumDriver<T> driver, String apiKey, String serverURL, String testCaseName, boolean train, OkHttpClient client) throws IOException
 	{
 		// super(driver.getCapabilities());
 
@@ -126,12 +269,13 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		this.testCaseName = testCaseName;
 		// this.train = train;
 
-		this.serverURL = HttpUrl.parse(serverURL != null ? serverURL : Objects.requireNonNullElse(System.getenv("TESTAI_FLUFFY_DRAGON_URL"), "https://sdk.test.ai"));
-		client = this.serverURL.equals(HttpUrl.parse("https://sdk.dev.test.ai")) ? NetUtils.unsafeClient() : NetUtils.basicClient().build();
-
-		multiplier = 1.0 * ImageIO.read(driver.getScreenshotAs(OutputType.FILE)).getWidth() / driver.manage().window().getSize().width;
+		this.serverURL = resolveServerURL(serverURL);
+		this.client = client != null ? client : sharedClient(this.serverURL);
+		uploader = new ActionUploader(this.client, this.serverURL);
+		breaker = TransportRegistry.getCircuitBreaker(this.serverURL);
 
-		log.debug("The screen multiplier is {}", multiplier);
+		uploader.setMetrics(stats);
+		stats.register("TestAiDriver", runID);
 	}
 
 	/**
@@ -146,6 +290,242 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		this(driver, apiKey, null, null, true);
 	}
 
+	/**
+	 * Determines the server to talk to.
+	 * 
+	 * @param serverURL The server URL specified by the user, or {@code null} to use the {@code TESTAI_FLUFFY_DRAGON_URL} environment variable or the default of
+	 *           <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 * @return The server URL to use
+	 */
+	static HttpUrl resolveServerURL(String serverURL)
+	{
+		return HttpUrl.parse(serverURL != null ? serverURL : Objects.requireNonNullElse(System.getenv("TESTAI_FLUFFY_DRAGON_URL"), "https://sdk.test.ai"));
+	}
+
+	/**
+	 * Gets the client shared by all drivers talking to a server.
+	 * 
+	 * @param serverURL The server URL
+	 * @return The shared client for {@code serverURL}
+	 */
+	static OkHttpClient sharedClient(HttpUrl serverURL)
+	{
+		return TransportRegistry.get(serverURL, serverURL.equals(HttpUrl.parse("https://sdk.dev.test.ai")));
+	}
+
+	/**
+	 * Gets the uploader which sends training data ({@code add_action} records) to the test.ai server in the background. Use this to tune batching or to inspect the upload/drop counters.
+	 * 
+	 * @return The {@code ActionUploader} used by this driver.
+	 */
+	public ActionUploader getActionUploader()
+	{
+		return uploader;
+	}
+
+	/**
+	 * Gets the preparer which downscales and/or transcodes screenshots before they are uploaded for classification. By default screenshots are uploaded as-is.
+	 * 
+	 * @return The {@code ScreenshotPreparer} used by this driver.
+	 */
+	public ScreenshotPreparer getScreenshotPreparer()
+	{
+		return preparer;
+	}
+
+	/**
+	 * Gets the cache of classification results. When enabled, repeated lookups of a label on an unchanged screen are answered locally instead of by the server. Disabled by default.
+	 * 
+	 * @return The {@code ClassifyCache} used by this driver.
+	 */
+	public ClassifyCache getClassifyCache()
+	{
+		return cache;
+	}
+
+	/**
+	 * Gets the record/replay settings of classifications. In record mode, every classification is saved to a local file; in replay mode, classifications of a label on a screen which was recorded
+	 * are answered from that file, with no network latency. Off by default, unless enabled with the {@code TESTAI_REPLAY_MODE} environment variable.
+	 * 
+	 * @return The {@code ClassifyReplay} used by this driver.
+	 */
+	public ClassifyReplay getClassifyReplay()
+	{
+		return replay;
+	}
+
+	/**
+	 * Gets the local visual matcher. When enabled, the driver remembers what each element looked like when it was last found, and when Appium fails to find an element it first searches the current
+	 * screenshot for it locally, only asking the server if there is no confident match. Disabled by default.
+	 * 
+	 * @return The {@code LocalMatcher} used by this driver.
+	 */
+	public LocalMatcher getLocalMatcher()
+	{
+		return matcher;
+	}
+
+	/**
+	 * Replaces the local visual matcher, so that several drivers can share what they have learned.
+	 * 
+	 * @param matcher The matcher to use
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	TestAiDriver<T> setLocalMatcher(LocalMatcher matcher)
+	{
+		this.matcher = matcher;
+		return this;
+	}
+
+	/**
+	 * Gets the locator memory. When enabled, the driver remembers where each element was last located, and when Appium fails to find an element it first checks whether that region of the screen is
+	 * unchanged, in which case the remembered location is returned immediately. Disabled by default.
+	 * 
+	 * @return The {@code LocatorMemory} used by this driver.
+	 */
+	public LocatorMemory getLocatorMemory()
+	{
+		return memory;
+	}
+
+	/**
+	 * Sets whether the key of a label should be remembered for the rest of the run. If enabled (the default), only the first successful Appium lookup of each label calls classify to get its key,
+	 * and later lookups only upload the element's location.
+	 * 
+	 * @param reuseElementKeys Set {@code false} to call classify on every successful Appium lookup.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setReuseElementKeys(boolean reuseElementKeys)
+	{
+		this.reuseElementKeys = reuseElementKeys;
+		if (!reuseElementKeys)
+			elementKeys.clear();
+
+		return this;
+	}
+
+	/**
+	 * Sets whether classify requests should be sent as streaming multipart uploads. In this mode the screenshot is sent as raw image bytes and the page source is streamed as-is, instead of both
+	 * being encoded into a url-encoded form, which saves bytes on the wire and several copies of each in memory. Default is {@code false}.
+	 * 
+	 * @param multipartUploads Set {@code true} to send classify requests as multipart uploads.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setMultipartUploads(boolean multipartUploads)
+	{
+		this.multipartUploads = multipartUploads;
+		return this;
+	}
+
+	/**
+	 * Sets whether page sources should be uploaded as deltas. In this mode, the driver remembers the last page source the server acknowledged in this run, and sends only a reference to it if the
+	 * page source is unchanged, or a line-level delta against it if the page source changed. If the server no longer has that page source, the full page source is sent instead. Default is
+	 * {@code false}.
+	 * 
+	 * @param sourceDeltas Set {@code true} to upload page sources as deltas.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setSourceDeltas(boolean sourceDeltas)
+	{
+		this.sourceDeltas = sourceDeltas;
+		sourceBase = null;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum amount of time to wait for the page source and the screenshot when classifying an element. Both are captured at the same time. If the page source times out,
+	 * classification proceeds without it; if the screenshot times out, classification fails. Default is 30 seconds.
+	 * 
+	 * @param captureTimeout The maximum amount of time to wait for each capture
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setCaptureTimeout(Duration captureTimeout)
+	{
+		captureTimeoutMillis = captureTimeout.toMillis();
+		return this;
+	}
+
+	/**
+	 * Sets whether slow classify requests should be hedged. If a classify request has not been answered by the recent p95 latency of classify, an identical request is sent and whichever answers
+	 * first is used. This cuts tail latency at the cost of a few percent more requests. Default is {@code false}.
+	 * 
+	 * @param hedgedClassify Set {@code true} to hedge slow classify requests.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setHedgedClassify(boolean hedgedClassify)
+	{
+		this.hedgedClassify = hedgedClassify;
+		return this;
+	}
+
+	/**
+	 * Sets where measurements of this driver's internals are sent: the duration of each phase of a lookup (Appium, captures, upload, server, parsing, {@code add_action}), payload sizes, cache
+	 * hits, and fallbacks per label. Live aggregates are always available from {@link #getStats()} and over JMX, regardless of this setting.
+	 * 
+	 * @param metrics The metrics to send measurements to. Set {@code null} to stop sending them.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setMetrics(Metrics metrics)
+	{
+		stats.setDownstream(metrics);
+		return this;
+	}
+
+	/**
+	 * Gets the live aggregates of this driver's measurements. The same aggregates are registered with JMX as {@code ai.test.sdk:type=TestAiDriver,name="<run id>"}.
+	 * 
+	 * @return The {@code SdkStats} of this driver.
+	 */
+	public SdkStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * Sets the executor which runs the {@code ...Async} find methods. Default is a virtual thread per task if the JVM supports virtual threads, otherwise a shared pool of daemon threads.
+	 * <p>
+	 * The Appium client is synchronous, so an asynchronous find does not free up threads: it frees up the caller, by running the whole blocking lookup (the Appium round trip, and any classify call
+	 * if Appium fails) on a thread of this executor. An executor with fewer threads than the finds in flight makes the extra finds wait their turn.
+	 * 
+	 * @param asyncExecutor The executor to use. Set {@code null} to restore the default.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 */
+	public TestAiDriver<T> setAsyncExecutor(Executor asyncExecutor)
+	{
+		this.asyncExecutor = asyncExecutor != null ? asyncExecutor : AsyncCalls.DEFAULT_EXECUTOR;
+		return this;
+	}
+
+	/**
+	 * Enables the crash-safe training journal. Instead of being uploaded as they happen, {@code add_action} records are appended to a memory-mapped file in {@code dir}, which is bulk-flushed to the
+	 * server on {@link #quit()}. If the JVM dies before then, the journal can be flushed later on with {@link ActionJournal#main(String[])}.
+	 * 
+	 * @param dir The directory to keep the journal in.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 * @throws IOException If the journal could not be created.
+	 */
+	public TestAiDriver<T> enableJournal(Path dir) throws IOException
+	{
+		return enableJournal(dir, ActionJournal.DEFAULT_DRAIN_TIMEOUT);
+	}
+
+	/**
+	 * Enables the crash-safe training journal, see {@link #enableJournal(Path)}.
+	 * 
+	 * @param dir The directory to keep the journal in.
+	 * @param drainTimeout The maximum amount of time {@link #quit()} waits for the journal to be uploaded. Records which were not uploaded by then stay in the journal, to be replayed later on.
+	 * @return This {@code TestAiDriver}, for chaining convenience.
+	 * @throws IOException If the journal could not be created.
+	 */
+	public TestAiDriver<T> enableJournal(Path dir, Duration drainTimeout) throws IOException
+	{
+		if (journal == null)
+			journal = new ActionJournal(dir, runID);
+
+		journalDrainTimeout = drainTimeout;
+		return this;
+	}
+
 	/**
 	 * Convenience method, implicitly wait for the specified amount of time.
 	 * 
@@ -226,11 +606,13 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	public void rotate(DeviceRotation rotation)
 	{
 		driver.rotate(rotation);
+		multiplier = 0;
 	}
 
 	public void rotate(ScreenOrientation orientation)
 	{
 		driver.rotate(orientation);
+		multiplier = 0;
 	}
 
 	public DeviceRotation rotation()
@@ -340,6 +722,21 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 
 	public void quit()
 	{
+		uploader.close(Duration.ofSeconds(30));
+		captureExecutor.shutdownNow();
+		stats.unregister();
+
+		if (journal != null)
+			try
+			{
+				journal.close();
+				ActionJournal.replay(journal.getPath(), client, serverURL, apiKey, journalDrainTimeout);
+			}
+			catch (Throwable e)
+			{
+				log.warn("Unable to flush the training journal {}, it can be replayed later on", journal.getPath(), e);
+			}
+
 		driver.quit();
 	}
 
@@ -391,6 +788,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByAccessibilityId(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by accessibility id. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The accessibility id of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByAccessibilityIdAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByAccessibilityId(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by accessibility id.
+	 * 
+	 * @param using The accessibility id of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByAccessibilityIdAsync(String using)
+	{
+		return findElementByAccessibilityIdAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching accessibility id.
 	 * 
@@ -425,6 +845,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByClassName(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by class name. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The class name of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByClassNameAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByClassName(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by class name.
+	 * 
+	 * @param using The class name of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByClassNameAsync(String using)
+	{
+		return findElementByClassNameAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching class name.
 	 * 
@@ -460,14 +903,37 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	}
 
 	/**
-	 * Attempts to find all elements with the matching css selector.
+	 * Asynchronously attempts to find an element by css selector. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
 	 * 
-	 * @param using The css selector of the elements to find.
-	 * @return A {@code List} with any elements that were found, or an empty {@code List} if no matches were found.
+	 * @param using The css selector of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
 	 */
-	public List findElementsByCssSelector(String using)
+	public CompletableFuture<T> findElementByCssSelectorAsync(String using, String elementName)
 	{
-		return driver.findElementsByCssSelector(using);
+		return AsyncCalls.supply(() -> findElementByCssSelector(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by css selector.
+	 * 
+	 * @param using The css selector of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByCssSelectorAsync(String using)
+	{
+		return findElementByCssSelectorAsync(using, null);
+	}
+
+	/**
+	 * Attempts to find all elements with the matching css selector.
+	 * 
+	 * @param using The css selector of the elements to find.
+	 * @return A {@code List} with any elements that were found, or an empty {@code List} if no matches were found.
+	 */
+	public List findElementsByCssSelector(String using)
+	{
+		return driver.findElementsByCssSelector(using);
 	}
 
 	/**
@@ -493,6 +959,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementById(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by id. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The id of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByIdAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementById(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by id.
+	 * 
+	 * @param using The id of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByIdAsync(String using)
+	{
+		return findElementByIdAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching id.
 	 * 
@@ -527,6 +1016,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByLinkText(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by link text. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The link text of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByLinkTextAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByLinkText(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by link text.
+	 * 
+	 * @param using The link text of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByLinkTextAsync(String using)
+	{
+		return findElementByLinkTextAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching link text.
 	 * 
@@ -561,6 +1073,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByName(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by name. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The name of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByNameAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByName(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by name.
+	 * 
+	 * @param using The name of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByNameAsync(String using)
+	{
+		return findElementByNameAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching name.
 	 * 
@@ -595,6 +1130,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByPartialLinkText(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by partial link text. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The partial link text of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByPartialLinkTextAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByPartialLinkText(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by partial link text.
+	 * 
+	 * @param using The partial link text of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByPartialLinkTextAsync(String using)
+	{
+		return findElementByPartialLinkTextAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching partial link text.
 	 * 
@@ -629,6 +1187,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByTagName(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by tag name. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The tag name of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByTagNameAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByTagName(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by tag name.
+	 * 
+	 * @param using The tag name of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByTagNameAsync(String using)
+	{
+		return findElementByTagNameAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching tag name.
 	 * 
@@ -663,6 +1244,29 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		return findElementByXPath(using, null);
 	}
 
+	/**
+	 * Asynchronously attempts to find an element by xpath. The lookup, including any calls to the test.ai server, runs on the executor set with {@link #setAsyncExecutor(Executor)}, and holds one of its threads until it completes.
+	 * 
+	 * @param using The xpath of the element to find
+	 * @param elementName The label name of the element to be classified. Optional, set {@code null} to auto generate an element name.
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByXPathAsync(String using, String elementName)
+	{
+		return AsyncCalls.supply(() -> findElementByXPath(using, elementName), asyncExecutor);
+	}
+
+	/**
+	 * Asynchronously attempts to find an element by xpath.
+	 * 
+	 * @param using The xpath of the element to find
+	 * @return A future for the element that was found, which completes exceptionally if no element was found. Cancelling it cancels any request to the test.ai server in flight.
+	 */
+	public CompletableFuture<T> findElementByXPathAsync(String using)
+	{
+		return findElementByXPathAsync(using, null);
+	}
+
 	/**
 	 * Attempts to find all elements with the matching xpath.
 	 * 
@@ -682,13 +1286,178 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	 */
 	public MobileElement findByElementName(String elementName)
 	{
-		ClassifyResult r = classify(elementName);
+		FindEvent ev = new FindEvent();
+		ev.strategy = "element_name";
+		ev.label = elementName;
+		ev.appiumOutcome = "skipped";
+		ev.begin();
+
+		ClassifyResult r = locate(elementName);
+		ev.fallbackOutcome = r.e != null ? "found" : "failed";
+		ev.commit();
+
 		if (r.e == null)
 			throw new NoSuchElementException(r.msg);
 
 		return r.e;
 	}
 
+	/**
+	 * Finds an element by {@code elementName}, giving up once {@code timeout} has passed. Calls to the test.ai server are given no more than the time remaining.
+	 * 
+	 * @param elementName The label name of the element to be classified.
+	 * @param timeout The maximum amount of time the lookup may take
+	 * @return An element associated with {@code elementName}. Throws NoSuchElementException otherwise.
+	 */
+	public MobileElement findByElementName(String elementName, Duration timeout)
+	{
+		return withDeadline(timeout, () -> findByElementName(elementName));
+	}
+
+	/**
+	 * Finds several elements by {@code elementName} on the current screen. The screenshot and page source are captured once and shared by every lookup, and the lookups run concurrently on the
+	 * executor set with {@link #setAsyncExecutor(Executor)}. The labels which need the test.ai server are then classified together, uploading the screenshot once.
+	 * 
+	 * @param elementNames The label names of the elements to be classified.
+	 * @return The result for each label, in the order of {@code elementNames}. Lookups which fail are reported in their result, they do not throw.
+	 */
+	public Map<String, FindResult> findByElementNames(List<String> elementNames)
+	{
+		Map<String, FindResult> results = new LinkedHashMap<>();
+		if (elementNames.isEmpty())
+			return results;
+
+		Map<String, FindEvent> events = new LinkedHashMap<>();
+		for (String n : elementNames)
+		{
+			FindEvent ev = new FindEvent();
+			ev.strategy = "element_name";
+			ev.label = n;
+			ev.appiumOutcome = "skipped";
+			ev.begin();
+			events.put(n, ev);
+		}
+
+		Capture cap = captureForBatch();
+		if (cap != null)
+			cap.batch = new ConcurrentHashMap<>();
+
+		Map<String, CompletableFuture<ClassifyResult>> lookups = new LinkedHashMap<>();
+		for (String n : events.keySet())
+			lookups.put(n, AsyncCalls.supply(() -> locate(n, cap), asyncExecutor));
+
+		Map<String, ClassifyResult> located = new HashMap<>();
+		lookups.forEach((n, f) -> {
+			try
+			{
+				located.put(n, f.join());
+			}
+			catch (Throwable e)
+			{
+				located.put(n, new ClassifyResult(null, null, String.format("test.ai driver exception: %s", e.getCause() != null ? e.getCause() : e), 1));
+			}
+		});
+
+		if (cap != null && !cap.batch.isEmpty())
+		{
+			Map<String, PendingClassify> pending = new LinkedHashMap<>();
+			for (String n : events.keySet())
+				if (cap.batch.containsKey(n))
+					pending.put(n, cap.batch.get(n));
+
+			located.putAll(classifyBatch(cap, pending));
+		}
+
+		events.forEach((n, ev) -> {
+			ClassifyResult r = located.get(n);
+			if (r == null)
+				r = new ClassifyResult(null, null, String.format("test.ai was unable to find '%s'", n), 1);
+
+			ev.fallbackOutcome = r.e != null ? "found" : "failed";
+			ev.commit();
+
+			results.put(n, new FindResult(r.e, r.msg));
+		});
+
+		return results;
+	}
+
+	/**
+	 * Finds several elements by {@code elementName} on the current screen, giving up once {@code timeout} has passed.
+	 * 
+	 * @param elementNames The label names of the elements to be classified.
+	 * @param timeout The maximum amount of time the lookups may take
+	 * @return The result for each label, in the order of {@code elementNames}.
+	 */
+	public Map<String, FindResult> findByElementNames(List<String> elementNames, Duration timeout)
+	{
+		return withDeadline(timeout, () -> findByElementNames(elementNames));
+	}
+
+	/**
+	 * Attempts to find several elements with Appium, falling back to test.ai for any which Appium could not find. Elements Appium finds are handled like those of the {@code findElementBy...} methods;
+	 * the rest are located together with {@link #findByElementNames(List)}, from a single capture of the screen.
+	 * 
+	 * @param locators The Appium locator of each element, keyed by the label name of the element.
+	 * @return The result for each label, in the order of {@code locators}. Lookups which fail are reported in their result, they do not throw.
+	 */
+	public Map<String, FindResult> findElementsByLabels(Map<String, By> locators)
+	{
+		Map<String, FindResult> found = new HashMap<>();
+		List<String> fallbacks = new ArrayList<>();
+
+		locators.forEach((n, by) -> {
+			String label = n.replace(' ', '_');
+			long start = System.nanoTime();
+			try
+			{
+				T driverElement = driver.findElement(by);
+				stats.recordTime(Metrics.APPIUM_FIND, System.nanoTime() - start);
+
+				train(driverElement, label);
+				found.put(n, new FindResult((MobileElement) driverElement, null));
+			}
+			catch (Throwable x)
+			{
+				log.info("Element '{}' was not found by Appium, trying with test.ai...", label);
+				stats.increment(Metrics.FALLBACK, 1, "label", label);
+				fallbacks.add(label);
+			}
+		});
+
+		Map<String, FindResult> located = findByElementNames(fallbacks), results = new LinkedHashMap<>();
+		for (String n : locators.keySet())
+			results.put(n, found.containsKey(n) ? found.get(n) : located.get(n.replace(' ', '_')));
+
+		return results;
+	}
+
+	/**
+	 * Runs an action, such as one or more find methods, with a deadline. Calls to the test.ai server made by the action are given no more than the time remaining, and fail immediately once the
+	 * deadline has passed. Deadlines carry over to the {@code ...Async} find methods started by the action, and nested deadlines can only shorten the outer one.
+	 * 
+	 * @param <X> The type of the result of the action
+	 * @param timeout The maximum amount of time the action may take
+	 * @param action The action to run
+	 * @return The result of {@code action}
+	 */
+	public <X> X withDeadline(Duration timeout, Supplier<X> action)
+	{
+		return CallDeadline.within(timeout, action);
+	}
+
+	/**
+	 * Asynchronously finds an element by {@code elementName}. Use this to classify the element for the next step while the current step is still interacting with the device.
+	 * 
+	 * @param elementName The label name of the element to be classified.
+	 * @return A future for the element associated with {@code elementName}, which completes exceptionally with NoSuchElementException otherwise. Cancelling it cancels any request to the test.ai
+	 *         server in flight.
+	 */
+	public CompletableFuture<MobileElement> findByElementNameAsync(String elementName)
+	{
+		return AsyncCalls.supply(() -> findByElementName(elementName), asyncExecutor);
+	}
+
 	/**
 	 * Shared {@code findElementBy} functionality. This serves as the base logic for most find by methods exposed to the end user.
 	 * 
@@ -705,52 +1474,195 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 
 		elementName = elementName.replace(' ', '_');
 
+		FindEvent ev = new FindEvent();
+		ev.strategy = shortcode;
+		ev.label = elementName;
+		ev.begin();
+
+		long start = System.nanoTime();
 		try
 		{
 			T driverElement = fn.apply(using);
+			stats.recordTime(Metrics.APPIUM_FIND, System.nanoTime() - start);
+			ev.appiumOutcome = driverElement != null ? "found" : "not_found";
+
 			if (driverElement != null)
-			{
-				ClassifyResult result = classify(elementName);
-				updateElement(driverElement, result.key, elementName, true);
-			}
+				train(driverElement, elementName);
+
+			stats.recordTime(Metrics.FIND, System.nanoTime() - start, "outcome", "appium");
+			ev.commit();
 
 			return driverElement;
 		}
 		catch (Throwable x)
 		{
 			log.info("Element '{}' was not found by Appium, trying with test.ai...", elementName);
+			stats.increment(Metrics.FALLBACK, 1, "label", elementName);
+			ev.appiumOutcome = "not_found";
 
-			ClassifyResult result = classify(elementName);
+			ClassifyResult result = locate(elementName);
 			if (result.e != null)
+			{
+				stats.recordTime(Metrics.FIND, System.nanoTime() - start, "outcome", "fallback");
+				ev.fallbackOutcome = "found";
+				ev.commit();
+
 				return (T) result.e;
+			}
 
 			log.error("test.ai was also unable to find the element with name '{}'", elementName);
+			stats.recordTime(Metrics.FIND, System.nanoTime() - start, "outcome", "failed");
+			ev.fallbackOutcome = "failed";
+			ev.commit();
 
 			throw x;
 		}
 	}
 
 	/**
-	 * Updates the entry for an element as it is known to the test.ai servers.
+	 * Records an element which Appium found: its key is looked up (classifying it if necessary), the element is queued for upload to the test.ai server, and the local matcher learns what it looks
+	 * like.
+	 * 
+	 * @param driverElement The element Appium found
+	 * @param elementName The name associated with this element
+	 */
+	private void train(T driverElement, String elementName)
+	{
+		Tuple<String, Double> k = reuseElementKeys ? elementKeys.get(elementName) : null;
+		if (k == null)
+		{
+			ClassifyResult result = classify(elementName);
+			k = new Tuple<>(result.key, result.scale);
+		}
+
+		if (k.k != null)
+			updateElement(driverElement, k.k, k.v, elementName, true);
+
+		if (matcher.wants(elementName))
+			learnLocally(elementName, driverElement);
+	}
+
+	/**
+	 * Updates the entry for an element as it is known to the test.ai servers. The update is queued and uploaded in the background.
 	 * 
 	 * @param elem The element to update
 	 * @param key The key associated with this element
+	 * @param scale The factor the screenshot associated with {@code key} was scaled by before it was uploaded
 	 * @param elementName The name associated with this element
 	 * @param trainIfNecessary Set {@code true} if the model on the server should also be trained with this element.
 	 */
-	private void updateElement(T elem, String key, String elementName, boolean trainIfNecessary)
+	private void updateElement(T elem, String key, double scale, String elementName, boolean trainIfNecessary)
 	{
 		Rectangle rect = ((MobileElement) elem).getRect();
+		double multiplier;
+		try
+		{
+			multiplier = multiplier(null) * scale;
+		}
+		catch (Throwable e)
+		{
+			log.warn("Unable to determine the screen multiplier, not updating element '{}'", elementName, e);
+			return;
+		}
+
+		if (replay.getMode() == ClassifyReplay.Mode.REPLAY)
+		{
+			log.debug("Not uploading element '{}' while replaying offline", elementName);
+			return;
+		}
+
+		if (journal != null)
+			try
+			{
+				journal.append(key, rect, multiplier, runID, trainIfNecessary);
+				return;
+			}
+			catch (Throwable e)
+			{
+				log.warn("Unable to write to the training journal, uploading directly instead", e);
+			}
+
 		HashMap<String, String> form = CollectionUtils.keyValuesToHM("key", key, "api_key", apiKey, "run_id", runID, "x", Integer.toString(rect.x), "y", Integer.toString(rect.y), "width",
 				Integer.toString(rect.width), "height", Integer.toString(rect.height), "multiplier", Double.toString(multiplier), "train_if_necessary", Boolean.toString(trainIfNecessary));
 
-		try (Response r = NetUtils.basicPOST(client, serverURL, "add_action", form))
+		uploader.submit(form);
+	}
+
+	/**
+	 * Locates an element without Appium's help. Tries the locator memory and the local matcher first, then classification by the test.ai server.
+	 * 
+	 * @param elementName The name of the element to locate.
+	 * @return The result of the lookup.
+	 */
+	private ClassifyResult locate(String elementName)
+	{
+		return locate(elementName, null);
+	}
+
+	/**
+	 * Locates an element without Appium's help. Tries the locator memory and the local matcher first, then classification by the test.ai server.
+	 * 
+	 * @param elementName The name of the element to locate.
+	 * @param screen The screen to locate the element on, captured by {@link #captureForBatch()}, or {@code null} to capture a new one.
+	 * @return The result of the lookup.
+	 */
+	private ClassifyResult locate(String elementName, Capture screen)
+	{
+		if (!memory.isEnabled() && !matcher.isEnabled())
+			return classify(elementName, screen);
+
+		Capture cap = screen;
+		try
 		{
+			if (cap == null)
+				cap = captureScreen(cache.isEnabled() || replay.isEnabled(), true);
+
+			LocalMatcher.Match m = memory.recall(elementName, cap.img);
+			if (m != null)
+			{
+				log.info("Successfully located from memory: {}", elementName);
+				stats.increment(Metrics.LOCAL_HIT, 1, "source", "memory");
+			}
+			else if ((m = matcher.find(elementName, cap.img)) != null)
+			{
+				log.info("Successfully matched locally: {} (score {})", elementName, String.format("%.3f", m.score));
+				stats.increment(Metrics.LOCAL_HIT, 1, "source", "matcher");
+				memory.remember(elementName, cap.img, m.rect, m.text, m.tagName);
+			}
+
+			if (m != null)
+				return new ClassifyResult(new TestAiElement(m.rect, m.text, m.tagName, driver, multiplier(cap.png)), null, 1);
 		}
 		catch (Throwable e)
 		{
-			e.printStackTrace();
+			log.debug("Local lookup failed for '{}': {}", elementName, e.toString());
 		}
+
+		return classify(elementName, cap);
+	}
+
+	/**
+	 * Learns what an element found by Appium looks like, for the local matcher. The screenshot is captured in the background.
+	 * 
+	 * @param elementName The name of the element
+	 * @param elem The element found by Appium
+	 */
+	private void learnLocally(String elementName, T elem)
+	{
+		captureExecutor.submit(() -> {
+			try
+			{
+				Rectangle r = ((MobileElement) elem).getRect();
+				Capture cap = captureScreen(false, true);
+				double m = multiplier(cap.png);
+
+				matcher.learn(elementName, cap.img, new Rectangle((int) (r.x * m), (int) (r.y * m), (int) (r.height * m), (int) (r.width * m)), elem.getText(), elem.getTagName());
+			}
+			catch (Throwable e)
+			{
+				log.debug("Unable to learn the appearance of '{}': {}", elementName, e.toString());
+			}
+		});
 	}
 
 	/**
@@ -760,57 +1672,667 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	 * @return The result of the classification.
 	 */
 	private ClassifyResult classify(String elementName)
+	{
+		return classify(elementName, null);
+	}
+
+	/**
+	 * Perform additional classification on an element by querying the test.ai server.
+	 * 
+	 * @param elementName The name of the element to run classification on.
+	 * @param screen A screenshot (and optionally the page source) which was just captured, or {@code null} to capture a new one.
+	 * @return The result of the classification.
+	 */
+	private ClassifyResult classify(String elementName, Capture screen)
 	{
 		if (testCaseName != null)
 			return null; // TODO: add test case creation/interactive mode
 
+		// the cache answers without calling the server, so when it may have an answer the checks wait until it has been asked
+		ClassifyResult unavailable = cache.isEnabled() ? null : unavailable(elementName);
+		if (unavailable != null)
+			return unavailable;
+
 		String pageSource = "", msg = "test.ai driver exception", key = null;
+		double scale = 1;
+
+		long deadline = System.nanoTime() + Math.min(TimeUnit.MILLISECONDS.toNanos(captureTimeoutMillis), CallDeadline.remainingNanos());
+		boolean hashScreen = cache.isEnabled() || replay.isEnabled(), decodeScreen = matcher.isEnabled() || memory.isEnabled();
+
+		ClassifyEvent ev = new ClassifyEvent();
+		ev.label = elementName;
+		ev.begin();
+
+		long start = System.nanoTime();
+		Future<String> sourceF = screen != null && screen.source != null ? CompletableFuture.completedFuture(screen.source) : captureExecutor.submit(() -> {
+			String src = driver.getPageSource();
+			stats.recordTime(Metrics.CAPTURE_SOURCE, ev.captureSource = System.nanoTime() - start);
+			return src;
+		});
+		Future<Capture> screenF = screen != null && (screen.hash != null || !hashScreen) ? CompletableFuture.completedFuture(screen) : captureExecutor.submit(() -> {
+			Capture c = captureScreen(hashScreen, decodeScreen);
+			stats.recordTime(Metrics.CAPTURE_SCREENSHOT, ev.captureScreenshot = System.nanoTime() - start);
+			return c;
+		});
+
 		try
 		{
-			pageSource = driver.getPageSource();
+			pageSource = Objects.requireNonNullElse(await(sourceF, deadline), "");
 		}
 		catch (Throwable e)
 		{
+			log.debug("Unable to capture the page source, continuing without it: {}", e.toString());
+		}
+
+		try
+		{
+			Capture cap = await(screenF, deadline);
+
+			long[] hash = cap.hash;
+			if (hash != null)
+			{
+				ClassifyResult cached = cache.get(elementName, hash, pageSource);
+				stats.increment(Metrics.CACHE, 1, "result", cached != null ? "hit" : "miss");
+				if (cached != null)
+				{
+					log.info("Successfully classified (cached): {}", elementName);
+					ev.cached = true;
+					ev.success = cached.e != null;
+					ev.commit();
+
+					return cached;
+				}
+			}
+
+			if ((unavailable = unavailable(elementName)) != null)
+			{
+				ev.commit();
+				return unavailable;
+			}
+
+			scale = cap.shot.scale;
+
+			ClassifyResponse r = hash != null && replay.isReplaying() ? replay.get(elementName, hash, pageSource, scale) : null;
+			if (replay.isReplaying())
+				stats.increment(Metrics.REPLAY, 1, "result", r != null ? "hit" : "miss");
 
+			if (r != null)
+			{
+				log.debug("Replaying the recorded classification of '{}'", elementName);
+				ev.replayed = true;
+			}
+			else if (replay.getMode() == ClassifyReplay.Mode.REPLAY)
+			{
+				msg = String.format("Classification failed for element_name: %s - There is no recorded classification for this screen in %s", elementName, replay.getFile());
+				log.warn(msg);
+				ev.commit();
+
+				return new ClassifyResult(null, null, msg, scale);
+			}
+			else if (cap == screen && screen.batch != null)
+			{
+				screen.batch.put(elementName, new PendingClassify(cap, pageSource, start, ev));
+				return DEFERRED;
+			}
+			else
+				r = upload(CollectionUtils.keyValuesToHM("api_key", apiKey, "label", elementName, "run_id", runID), cap.shot, pageSource, ev);
+
+			return interpret(elementName, r, new PendingClassify(cap, pageSource, start, ev));
 		}
+		catch (Throwable e)
+		{
+			log.warn("Error while classifying '{}'", elementName, e);
+		}
+
+		log.warn(msg);
+		ev.commit();
+
+		return new ClassifyResult(null, key, msg, scale);
+	}
 
+	/**
+	 * Classifies the labels of a batch of lookups which got as far as needing the server, all in a single {@code classify} call. Labels the server gave no answer for in that call, e.g. because it
+	 * predates classifying several labels at once, are then classified with a call each.
+	 * 
+	 * @param cap The screen the lookups share
+	 * @param pending The classifications waiting for the server, by label
+	 * @return The result of each classification, by label
+	 */
+	private Map<String, ClassifyResult> classifyBatch(Capture cap, Map<String, PendingClassify> pending)
+	{
+		Map<String, ClassifyResult> results = new LinkedHashMap<>();
+		if (pending.size() == 1)
+		{
+			pending.forEach((n, p) -> results.put(n, classifyAlone(n, p)));
+			return results;
+		}
+
+		JsonArray labels = new JsonArray();
+		pending.keySet().forEach(labels::add);
+
+		PendingClassify first = pending.values().iterator().next();
+		ClassifyResponse r;
 		try
 		{
-			String screenshotBase64 = driver.getScreenshotAs(OutputType.BASE64);
-			// Files.write(Paths.get("/tmp/scnshot.png"), Base64.getMimeDecoder().decode(screenshotBase64));
+			r = upload(CollectionUtils.keyValuesToHM("api_key", apiKey, "labels", labels.toString(), "run_id", runID), cap.shot, first.pageSource, first.ev);
+		}
+		catch (Throwable e)
+		{
+			log.warn("Error while classifying {}", pending.keySet(), e);
+			pending.forEach((n, p) -> {
+				p.ev.commit();
+				results.put(n, new ClassifyResult(null, null, String.format("Classification failed for element_name: %s - %s", n, e), cap.shot.scale));
+			});
+
+			return results;
+		}
 
-			JsonObject r = JsonUtils.responseAsJson(NetUtils.basicPOST(client, serverURL, "classify",
-					CollectionUtils.keyValuesToHM("screenshot", screenshotBase64, "source", pageSource, "api_key", apiKey, "label", elementName, "run_id", runID)));
+		Map<String, CompletableFuture<ClassifyResult>> lookups = new LinkedHashMap<>();
+		pending.forEach((n, p) -> {
+			ClassifyResponse a = r == null ? null : r.status >= 400 ? r : r.results != null ? r.results.get(n) : null;
+			if (a != null && a != r)
+				a.status = r.status;
 
-			key = JsonUtils.stringFromJson(r, "key");
+			lookups.put(n, a != null ? CompletableFuture.completedFuture(interpret(n, a, p)) : AsyncCalls.supply(() -> classifyAlone(n, p), asyncExecutor));
+		});
 
-			if (JsonUtils.booleanFromJson(r, "success"))
+		lookups.forEach((n, f) -> {
+			try
+			{
+				results.put(n, f.join());
+			}
+			catch (Throwable e)
+			{
+				results.put(n, new ClassifyResult(null, null, String.format("test.ai driver exception: %s", e.getCause() != null ? e.getCause() : e), cap.shot.scale));
+			}
+		});
+
+		return results;
+	}
+
+	/**
+	 * Finishes a classification of a batch with a {@code classify} call of its own.
+	 * 
+	 * @param elementName The name of the element to run classification on.
+	 * @param p The classification
+	 * @return The result of the classification.
+	 */
+	private ClassifyResult classifyAlone(String elementName, PendingClassify p)
+	{
+		ClassifyResponse r;
+		try
+		{
+			r = upload(CollectionUtils.keyValuesToHM("api_key", apiKey, "label", elementName, "run_id", runID), p.cap.shot, p.pageSource, p.ev);
+		}
+		catch (Throwable e)
+		{
+			log.warn("Error while classifying '{}'", elementName, e);
+			p.ev.commit();
+
+			return new ClassifyResult(null, null, "test.ai driver exception", p.cap.shot.scale);
+		}
+
+		return interpret(elementName, r, p);
+	}
+
+	/**
+	 * Turns the server's classification of an element into a result, remembering what it learned about the element along the way.
+	 * 
+	 * @param elementName The name of the element which was classified.
+	 * @param r The response from the server, or {@code null} if it could not be decoded.
+	 * @param p The classification
+	 * @return The result of the classification.
+	 */
+	private ClassifyResult interpret(String elementName, ClassifyResponse r, PendingClassify p)
+	{
+		Capture cap = p.cap;
+		ClassifyEvent ev = p.ev;
+		double scale = cap.shot.scale;
+
+		String msg = "test.ai driver exception", key = null;
+		try
+		{
+			if (!ev.replayed)
+			{
+				if (r == null || r.status >= 400)
+				{
+					// an error status may still carry one of the messages below, e.g. a label which has to be labelled first, and those tell the user what to do
+					String known = r != null ? failureMessage(elementName, r.message) : null;
+					msg = r == null ? String.format("Classification failed for element_name: %s - The response from %s could not be read", elementName, serverURL)
+							: known != null ? known : String.format("Classification failed for element_name: %s - %s answered with http %d: %s", elementName, serverURL, r.status, r.message);
+					log.warn(msg);
+					ev.commit();
+
+					return new ClassifyResult(null, null, msg, scale);
+				}
+
+				if (cap.hash != null && replay.getMode() == ClassifyReplay.Mode.RECORD)
+					replay.put(elementName, cap.hash, p.pageSource, scale, r);
+			}
+
+			stats.recordTime(Metrics.CLASSIFY, System.nanoTime() - p.start);
+
+			// a replayed key belongs to the run which recorded it, so it must not be sent with add_action under this run's id
+			key = ev.replayed ? null : r.key;
+			if (reuseElementKeys && key != null && !key.isEmpty())
+				elementKeys.put(elementName, new Tuple<>(key, scale));
+
+			if (r.success && r.elem != null)
 			{
 				log.info("Successfully classified: {}", elementName);
-				return new ClassifyResult(new TestAiElement(r.get("elem").getAsJsonObject(), driver, multiplier), key);
+				ClassifyResult result = new ClassifyResult(new TestAiElement(r.elem, driver, multiplier(null) * scale), key, scale);
+				if (cap.img != null)
+				{
+					Rectangle rect = new Rectangle((int) (r.elem.x / scale), (int) (r.elem.y / scale), (int) (r.elem.height / scale), (int) (r.elem.width / scale));
+					matcher.learn(elementName, cap.img, rect, r.elem.text, r.elem.tagName);
+					memory.remember(elementName, cap.img, rect, r.elem.text, r.elem.tagName);
+				}
+
+				if (cap.hash != null)
+					cache.put(elementName, cap.hash, p.pageSource, result);
+
+				ev.success = true;
+				ev.commit();
+
+				return result;
 			}
 
-			String rawMsg = JsonUtils.stringFromJson(r, "message");
-			if (rawMsg != null)
+			if (r.message != null)
+				msg = Objects.requireNonNullElse(failureMessage(elementName, r.message), String.format("%s: Unknown error, here was the API response: %s", msg, r));
+		}
+		catch (Throwable e)
+		{
+			log.warn("Error while classifying '{}'", elementName, e);
+		}
+
+		log.warn(msg);
+		ev.commit();
+
+		return new ClassifyResult(null, key, msg, scale);
+	}
+
+	/**
+	 * Explains a message the server gave for not finding an element.
+	 * 
+	 * @param elementName The name of the element which was classified.
+	 * @param rawMsg The message from the server
+	 * @return The explanation, or {@code null} if the message is not one the user can act on.
+	 */
+	private String failureMessage(String elementName, String rawMsg)
+	{
+		String cFailedBase = "Classification failed for element_name: ";
+
+		if (rawMsg.contains("Please label") || rawMsg.contains("Did not find"))
+			return String.format("%s%s - Please visit %s/label/%s to classify", cFailedBase, elementName, serverURL, elementName);
+		else if (rawMsg.contains("frozen label"))
+			return String.format("%s%s - However this element is frozen, so no new screenshot was uploaded. Please unfreeze the element if you want to add this screenshot to training", cFailedBase,
+					elementName);
+
+		return null;
+	}
+
+	/**
+	 * Checks whether a classification may go ahead: the caller's deadline has not passed, and unless classifications are replayed, the circuit breaker lets calls to the server through.
+	 * 
+	 * @param elementName The name of the element to run classification on.
+	 * @return A failed result explaining why the classification may not go ahead, or {@code null} if it may.
+	 */
+	private ClassifyResult unavailable(String elementName)
+	{
+		if (CallDeadline.remainingNanos() <= 0)
+		{
+			log.warn("Not classifying '{}', the deadline has passed", elementName);
+			return new ClassifyResult(null, null, "Deadline exceeded before classifying " + elementName, 1);
+		}
+
+		if (!replay.isReplaying() && !breaker.isCallPermitted())
+		{
+			log.warn("Not classifying '{}', {} is unhealthy", elementName, serverURL);
+			return new ClassifyResult(null, null, "test.ai is currently unavailable: " + breaker, 1);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Uploads a screenshot and page source to the server for classification. In delta mode, the page source is sent as a reference or a delta against the last page source the server acknowledged,
+	 * falling back to a full upload if the server reports that it does not have that page source.
+	 * 
+	 * @param form The small form fields to send, naming the label or labels to classify
+	 * @param shot The screenshot to upload
+	 * @param pageSource The page source to upload
+	 * @param ev The flight recorder event of this classify, which the timings and sizes of the requests are added to
+	 * @return The response from the server, or {@code null} if it could not be decoded.
+	 * @throws IOException Network error
+	 */
+	private ClassifyResponse upload(HashMap<String, String> form, PreparedScreenshot shot, String pageSource, ClassifyEvent ev) throws IOException
+	{
+		if (!sourceDeltas)
+			return post(form, shot, "source", pageSource, ev);
+
+		String hash = SourceDelta.hash(pageSource);
+		Tuple<String, String> base = sourceBase;
+
+		ClassifyResponse r = null;
+		if (base != null && base.v.equals(hash))
+		{
+			form.put("source_ref", hash);
+			r = post(form, shot, null, null, ev);
+		}
+		else if (base != null)
+		{
+			String delta = SourceDelta.diff(base.k, pageSource);
+			if (delta != null && delta.length() < pageSource.length() / 2)
 			{
-				String cFailedBase = "Classification failed for element_name: ";
+				form.put("source_base", base.v);
+				r = post(form, shot, "source_delta", delta, ev);
+			}
+		}
 
-				if (rawMsg.contains("Please label") || rawMsg.contains("Did not find"))
-					msg = String.format("%s%s - Please visit %s/label/%s to classify", cFailedBase, elementName, serverURL, elementName);
-				else if (rawMsg.contains("frozen label"))
-					msg = String.format("%s%s - However this element is frozen, so no new screenshot was uploaded. Please unfreeze the element if you want to add this screenshot to training", cFailedBase,
-							elementName);
+		if (r != null && r.sourceMismatch)
+		{
+			log.debug("The server does not have page source {}, uploading the full page source", base.v);
+			form.remove("source_ref");
+			form.remove("source_base");
+			r = null;
+		}
+
+		if (r == null)
+			r = post(form, shot, "source", pageSource, ev);
+
+		// only a successful call tells us the server kept the page source, a failed one may have been rejected before it was stored
+		if (r != null && r.success && !r.sourceMismatch)
+			sourceBase = new Tuple<>(pageSource, hash);
+
+		return r;
+	}
+
+	/**
+	 * POSTs a classify request, either as a url-encoded form or as a multipart upload.
+	 * 
+	 * @param form The small form fields to send
+	 * @param shot The screenshot to send
+	 * @param sourceField The name of the field to send {@code source} in. Set {@code null} to not send a page source.
+	 * @param source The page source (or delta) to send
+	 * @param ev The flight recorder event of the classify this request is part of
+	 * @return The response from the server, with its http status, or {@code null} if it could not be decoded.
+	 * @throws IOException Network error
+	 */
+	private ClassifyResponse post(HashMap<String, String> form, PreparedScreenshot shot, String sourceField, String source, ClassifyEvent ev) throws IOException
+	{
+		form = new HashMap<>(form);
+
+		Call c;
+		if (multipartUploads)
+		{
+			Map<String, RequestBody> parts = new LinkedHashMap<>();
+			parts.put("screenshot", RequestBody.create(shot.bytes, MediaType.get(shot.contentType)));
+			if (sourceField != null)
+				parts.put(sourceField, NetUtils.streamingBody(source, MediaType.get("source".equals(sourceField) ? "text/xml; charset=utf-8" : "text/plain; charset=utf-8")));
+
+			c = NetUtils.newMultipartPOST(client, serverURL, "classify", form, parts);
+		}
+		else
+		{
+			form.put("screenshot", Base64.getEncoder().encodeToString(shot.bytes));
+			if (sourceField != null)
+				form.put(sourceField, source);
+
+			c = NetUtils.newPOST(client, serverURL, "classify", form);
+		}
+
+		LatencyTracker latency = TransportRegistry.getLatencyTracker();
+		CallDeadline.apply(c, client, latency.getAdaptiveTimeout("classify"));
+
+		stats.recordValue(Metrics.SCREENSHOT_BYTES, shot.bytes.length);
+		ev.screenshotBytes += shot.bytes.length;
+		if (sourceField != null)
+		{
+			stats.recordValue(Metrics.SOURCE_CHARS, source.length(), "field", sourceField);
+			ev.sourceChars += source.length();
+		}
+
+		Duration hedgeAfter = hedgedClassify ? latency.getPercentile("classify", 95) : null;
+		long startMillis = System.currentTimeMillis();
+		Response resp = AsyncCalls.execute(c, hedgeAfter != null ? hedgeAfter.toNanos() : -1);
+
+		long upload = TimeUnit.MILLISECONDS.toNanos(Math.max(0, resp.sentRequestAtMillis() - startMillis)),
+				server = TimeUnit.MILLISECONDS.toNanos(Math.max(0, resp.receivedResponseAtMillis() - resp.sentRequestAtMillis()));
+		stats.recordTime(Metrics.UPLOAD, upload);
+		stats.recordTime(Metrics.SERVER, server);
+		ev.upload += upload;
+		ev.server += server;
+
+		long parseStart = System.nanoTime();
+		ClassifyResponse r = JsonUtils.responseAs(resp, ClassifyResponse.ADAPTER);
+		if (r != null)
+			r.status = resp.code();
+		long parse = System.nanoTime() - parseStart;
+		stats.recordTime(Metrics.PARSE, parse);
+		ev.parse += parse;
+
+		return r;
+	}
+
+	/**
+	 * Gets the screen density multiplier for the current orientation, computing it if necessary. Multipliers are cached on disk per device and screenshot size (see {@link MultiplierCache}), and
+	 * only the header of the screenshot is read, the screenshot is never fully decoded. The multiplier is recomputed after {@code rotate()} is called, or if {@code screenshot}
+	 * shows the device has changed orientation.
+	 * 
+	 * @param screenshot A screenshot which was just captured, to compute the multiplier from. Set {@code null} to capture one if necessary.
+	 * @return The screen density multiplier
+	 * @throws IOException If the size of the screenshot could not be determined.
+	 */
+	private double multiplier(byte[] screenshot) throws IOException
+	{
+		Dimension d = screenshot != null ? ImageUtils.imageSize(screenshot) : null;
+
+		double m = multiplier;
+		if (m != 0 && (d == null || (d.width > d.height) == landscape))
+			return m;
+
+		synchronized (this)
+		{
+			if (multiplier != 0 && d != null && (d.width > d.height) != landscape)
+			{
+				log.debug("Screen orientation changed, recomputing the screen multiplier");
+				multiplier = 0;
+			}
+
+			if (multiplier == 0)
+			{
+				if (d == null)
+					d = ImageUtils.imageSize(driver.getScreenshotAs(OutputType.BYTES));
+
+				String key = MultiplierCache.key(driver.getCapabilities(), d);
+				double cached = key != null ? MultiplierCache.get(key) : 0;
+				if (cached != 0)
+					multiplier = cached;
 				else
-					msg = String.format("%s: Unknown error, here was the API response: %s", msg, r);
+				{
+					multiplier = 1.0 * d.width / driver.manage().window().getSize().width;
+					if (key != null)
+						MultiplierCache.put(key, multiplier);
+				}
+
+				landscape = d.width > d.height;
+				log.debug("The screen multiplier is {}", multiplier);
 			}
+
+			return multiplier;
+		}
+	}
+
+	/**
+	 * Captures a screenshot and prepares it for upload. Usually runs on the {@link #captureExecutor}.
+	 * 
+	 * @param hash Set {@code true} to also decode the screenshot and compute its perceptual hash.
+	 * @param decode Set {@code true} to decode the screenshot.
+	 * @return The captured screenshot
+	 * @throws IOException If the screenshot could not be decoded.
+	 */
+	private Capture captureScreen(boolean hash, boolean decode) throws IOException
+	{
+		Capture c = new Capture();
+		c.png = driver.getScreenshotAs(OutputType.BYTES);
+		multiplier(c.png);
+
+		if (hash || decode)
+			c.img = ImageUtils.decode(c.png);
+		if (hash)
+			c.hash = ImageUtils.dHash(c.img, ClassifyCache.HASH_SIDE);
+
+		c.shot = preparer.prepare(c.png, c.img);
+		return c;
+	}
+
+	/**
+	 * Captures the screenshot and page source once for a batch of lookups, concurrently and within the capture timeout. The screenshot is hashed and decoded if any lookup will need it to be.
+	 * 
+	 * @return The capture, or {@code null} if it failed, in which case each lookup captures the screen itself.
+	 */
+	private Capture captureForBatch()
+	{
+		long deadline = System.nanoTime() + Math.min(TimeUnit.MILLISECONDS.toNanos(captureTimeoutMillis), CallDeadline.remainingNanos());
+		boolean hashScreen = cache.isEnabled() || replay.isEnabled(), decodeScreen = matcher.isEnabled() || memory.isEnabled();
+
+		long start = System.nanoTime();
+		Future<String> sourceF = captureExecutor.submit(() -> {
+			String src = driver.getPageSource();
+			stats.recordTime(Metrics.CAPTURE_SOURCE, System.nanoTime() - start);
+			return src;
+		});
+		Future<Capture> screenF = captureExecutor.submit(() -> {
+			Capture c = captureScreen(hashScreen, decodeScreen);
+			stats.recordTime(Metrics.CAPTURE_SCREENSHOT, System.nanoTime() - start);
+			return c;
+		});
+
+		try
+		{
+			Capture cap = await(screenF, deadline);
+			try
+			{
+				cap.source = Objects.requireNonNullElse(await(sourceF, deadline), "");
+			}
+			catch (Throwable e)
+			{
+				log.debug("Unable to capture the page source, continuing without it: {}", e.toString());
+				cap.source = "";
+			}
+
+			return cap;
 		}
 		catch (Throwable e)
 		{
-			e.printStackTrace();
+			log.warn("Unable to capture the screen for a batch of lookups, capturing it for each one instead: {}", e.toString());
+			sourceF.cancel(true);
+			return null;
 		}
+	}
 
-		log.warn(msg);
-		return new ClassifyResult(null, key, msg);
+	/**
+	 * Waits for a capture to complete, cancelling it if it does not complete before {@code deadline}.
+	 * 
+	 * @param <X> The type of the result of the capture
+	 * @param f The capture to wait for
+	 * @param deadline The {@code System.nanoTime()} by which the capture must complete
+	 * @return The result of the capture
+	 * @throws Exception If the capture failed or timed out.
+	 */
+	private static <X> X await(Future<X> f, long deadline) throws Exception
+	{
+		try
+		{
+			return f.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+		}
+		catch (ExecutionException e)
+		{
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+		catch (TimeoutException e)
+		{
+			f.cancel(true);
+			throw e;
+		}
+	}
+
+	/**
+	 * Simple container for a screenshot captured by {@code classify()}.
+	 */
+	private static class Capture
+	{
+		/**
+		 * The screenshot, as captured by Appium
+		 */
+		byte[] png;
+
+		/**
+		 * The decoded screenshot, or {@code null} if it was not needed
+		 */
+		BufferedImage img;
+
+		/**
+		 * The perceptual hash of the screenshot, or {@code null} if it was not needed
+		 */
+		long[] hash;
+
+		/**
+		 * The screenshot, ready to be uploaded
+		 */
+		PreparedScreenshot shot;
+
+		/**
+		 * The page source, captured along with the screenshot, or {@code null} if it was not captured
+		 */
+		String source;
+
+		/**
+		 * The classifications of the lookups sharing this capture which wait to be sent to the server together, by label, or {@code null} if the lookups do not classify together
+		 */
+		Map<String, PendingClassify> batch;
+	}
+
+	/**
+	 * Simple container for a classification which got as far as needing the server.
+	 */
+	private static class PendingClassify
+	{
+		/**
+		 * The screen the element is classified on
+		 */
+		final Capture cap;
+
+		/**
+		 * The page source to upload
+		 */
+		final String pageSource;
+
+		/**
+		 * The {@code System.nanoTime()} at which the classification started
+		 */
+		final long start;
+
+		/**
+		 * The flight recorder event of the classification
+		 */
+		final ClassifyEvent ev;
+
+		/**
+		 * Constructor, creates a new PendingClassify.
+		 * 
+		 * @param cap The screen the element is classified on
+		 * @param pageSource The page source to upload
+		 * @param start The {@code System.nanoTime()} at which the classification started
+		 * @param ev The flight recorder event of the classification
+		 */
+		PendingClassify(Capture cap, String pageSource, long start, ClassifyEvent ev)
+		{
+			this.cap = cap;
+			this.pageSource = pageSource;
+			this.start = start;
+			this.ev = ev;
+		}
 	}
 
 	/**
@@ -819,7 +2341,7 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 	 * @author Alexander Wu (alec@test.ai)
 	 *
 	 */
-	private static class ClassifyResult
+	static class ClassifyResult
 	{
 		/**
 		 * The TestAiElement created by the call to classify
@@ -836,29 +2358,37 @@ public class TestAiDriver<T extends WebElement> // extends AppiumDriver<T>
 		 */
 		public String msg;
 
+		/**
+		 * The factor the uploaded screenshot was scaled by
+		 */
+		public double scale;
+
 		/**
 		 * Constructor, creates a new ClassifyResult.
 		 * 
 		 * @param e The TestAiElement to to use
 		 * @param key The key to use
 		 * @param msg The message to associate with this result
+		 * @param scale The factor the uploaded screenshot was scaled by
 		 */
-		ClassifyResult(TestAiElement e, String key, String msg)
+		ClassifyResult(TestAiElement e, String key, String msg, double scale)
 		{
 			this.e = e;
 			this.key = key;
 			this.msg = msg;
+			this.scale = scale;
 		}
 
 		/**
 		 * Constructor, creates a new ClassifyResult, where the {@code msg} is set to the empty String by default.
 		 * 
-		 * @param e
-		 * @param key
+		 * @param e The TestAiElement to to use
+		 * @param key The key to use
+		 * @param scale The factor the uploaded screenshot was scaled by
 		 */
-		ClassifyResult(TestAiElement e, String key)
+		ClassifyResult(TestAiElement e, String key, double scale)
 		{
-			this(e, key, "");
+			this(e, key, "", scale);
 		}
 	}
 }
@@ -0,0 +1,339 @@
+package ai.test.sdk;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.openqa.selenium.WebElement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.appium.java_client.AppiumDriver;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Creates and manages {@code TestAiDriver}s for many Appium sessions in one JVM. All drivers in a pool share the same transport (see {@link TransportRegistry}) and local visual matcher, and a
+ * global, fair limit on the number of {@code classify} and {@code add_action} calls in flight, so a burst of lookups on a few devices cannot saturate the server for everyone else.
+ *
+ * @param <T> The element type to return, must be a subclass of MobileElement.
+ */
+public class TestAiDriverPool<T extends WebElement>
+{
+	/**
+	 * The logger for this class
+	 */
+	private static Logger log = LoggerFactory.getLogger(TestAiDriverPool.class);
+
+	/**
+	 * The user's fluffy dragon API key
+	 */
+	private final String apiKey;
+
+	/**
+	 * The base URL of the target server (e.g. {@code https://sdk.test.ai})
+	 */
+	private final HttpUrl serverURL;
+
+	/**
+	 * Indicates whether Test.ai should be used to improve the accuracy of returned elements
+	 */
+	private final boolean train;
+
+	/**
+	 * The limit on calls in flight, shared by all sessions.
+	 */
+	private final ServerCallLimiter limiter = new ServerCallLimiter(16);
+
+	/**
+	 * The local visual matcher shared by all sessions.
+	 */
+	private final LocalMatcher matcher = new LocalMatcher();
+
+	/**
+	 * The sessions in this pool, by name.
+	 */
+	private final Map<String, Session<T>> sessions = Collections.synchronizedMap(new LinkedHashMap<>());
+
+	/**
+	 * The names of the sessions being added, so a second session of the same name is turned away before its driver is created. Guarded by {@link #sessions}.
+	 */
+	private final Set<String> adding = new HashSet<>();
+
+	/**
+	 * Runs the tasks passed to {@link #submit(String, SessionTask)}.
+	 */
+	private volatile Executor executor = AsyncCalls.DEFAULT_EXECUTOR;
+
+	/**
+	 * The aggregated metrics of all sessions in this pool.
+	 */
+	private final SdkStats stats = new SdkStats();
+
+	/**
+	 * Constructor, creates a new TestAiDriverPool.
+	 *
+	 * @param apiKey Your API key, acquired from <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 * @param serverURL The server URL. Set {@code null} to use the default of <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 * @param train Set `true` to enable training for each encountered element.
+	 */
+	public TestAiDriverPool(String apiKey, String serverURL, boolean train)
+	{
+		this.apiKey = apiKey;
+		this.serverURL = TestAiDriver.resolveServerURL(serverURL);
+		this.train = train;
+
+		stats.register("TestAiDriverPool", Integer.toHexString(System.identityHashCode(this)));
+	}
+
+	/**
+	 * Constructor, creates a new TestAiDriverPool with the default server url (<a href="https://sdk.test.ai">sdk.test.ai</a>) and with training enabled.
+	 *
+	 * @param apiKey Your API key, acquired from <a href="https://sdk.test.ai">sdk.test.ai</a>.
+	 */
+	public TestAiDriverPool(String apiKey)
+	{
+		this(apiKey, null, true);
+	}
+
+	/**
+	 * Sets the maximum number of {@code classify} and {@code add_action} calls which may be in flight at once, across all sessions in this pool. Calls beyond the limit wait their turn, first come
+	 * first served. Default is 16.
+	 *
+	 * @param maxConcurrentCalls The maximum number of calls in flight
+	 * @return This {@code TestAiDriverPool}, for chaining convenience.
+	 */
+	public TestAiDriverPool<T> setMaxConcurrentCalls(int maxConcurrentCalls)
+	{
+		limiter.setLimit(maxConcurrentCalls);
+		return this;
+	}
+
+	/**
+	 * Gets the maximum number of {@code classify} and {@code add_action} calls which may be in flight at once.
+	 *
+	 * @return The maximum number of calls in flight
+	 */
+	public int getMaxConcurrentCalls()
+	{
+		return limiter.getLimit();
+	}
+
+	/**
+	 * Sets the executor which runs the tasks passed to {@link #submit(String, SessionTask)}. Default is a virtual thread per task if the JVM supports virtual threads, otherwise a shared pool of
+	 * daemon threads.
+	 *
+	 * @param executor The executor to use. Set {@code null} to restore the default.
+	 * @return This {@code TestAiDriverPool}, for chaining convenience.
+	 */
+	public TestAiDriverPool<T> setExecutor(Executor executor)
+	{
+		this.executor = executor != null ? executor : AsyncCalls.DEFAULT_EXECUTOR;
+		return this;
+	}
+
+	/**
+	 * Sets the metrics to send the measurements of every session in this pool to. Live aggregates across all sessions are always available from {@link #getStats()} and over JMX.
+	 *
+	 * @param metrics The metrics to send measurements to. Set {@code null} to stop sending them.
+	 * @return This {@code TestAiDriverPool}, for chaining convenience.
+	 */
+	public TestAiDriverPool<T> setMetrics(Metrics metrics)
+	{
+		stats.setDownstream(metrics);
+		return this;
+	}
+
+	/**
+	 * Gets the live aggregates of the measurements of every session in this pool. Each session's own aggregates are available from its driver's {@link TestAiDriver#getStats()}.
+	 *
+	 * @return The {@code SdkStats} of this pool.
+	 */
+	public SdkStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * Gets the local visual matcher shared by all sessions in this pool. Disabled by default.
+	 *
+	 * @return The shared {@code LocalMatcher}
+	 */
+	public LocalMatcher getLocalMatcher()
+	{
+		return matcher;
+	}
+
+	/**
+	 * Wraps an Appium session and adds it to this pool.
+	 *
+	 * @param name The name of the session, unique within this pool, e.g. the device's UDID.
+	 * @param driver The AppiumDriver to wrap
+	 * @return The new {@code TestAiDriver}
+	 * @throws IOException If there was an initialization error.
+	 */
+	public TestAiDriver<T> add(String name, AppiumDriver<T> driver) throws IOException
+	{
+		synchronized (sessions)
+		{
+			if (sessions.containsKey(name) || !adding.add(name))
+				throw new IllegalArgumentException("There is already a session named " + name);
+		}
+
+		try
+		{
+			ServerCallLimiter.SessionStats stats = new ServerCallLimiter.SessionStats();
+			OkHttpClient client = TestAiDriver.sharedClient(serverURL).newBuilder().addInterceptor(limiter.interceptor(stats)).build();
+
+			TestAiDriver<T> d = new TestAiDriver<>(driver, apiKey, serverURL.toString(), null, train, client).setLocalMatcher(matcher).setMetrics(this.stats);
+			sessions.put(name, new Session<>(d, stats));
+
+			return d;
+		}
+		finally
+		{
+			synchronized (sessions)
+			{
+				adding.remove(name);
+			}
+		}
+	}
+
+	/**
+	 * Gets the driver of a session.
+	 *
+	 * @param name The name of the session
+	 * @return The {@code TestAiDriver} of the session, or {@code null} if there is no session named {@code name}.
+	 */
+	public TestAiDriver<T> get(String name)
+	{
+		Session<T> s = sessions.get(name);
+		return s != null ? s.driver : null;
+	}
+
+	/**
+	 * Gets the names of the sessions in this pool, in the order they were added.
+	 *
+	 * @return The names of the sessions
+	 */
+	public Set<String> getSessionNames()
+	{
+		synchronized (sessions)
+		{
+			return Set.copyOf(sessions.keySet());
+		}
+	}
+
+	/**
+	 * Gets the statistics of a session's calls to the server: how many are queued behind the pool's limit or in flight, and how long they have waited.
+	 *
+	 * @param name The name of the session
+	 * @return The statistics of the session, or {@code null} if there is no session named {@code name}.
+	 */
+	public ServerCallLimiter.SessionStats getSessionStats(String name)
+	{
+		Session<T> s = sessions.get(name);
+		return s != null ? s.stats : null;
+	}
+
+	/**
+	 * Runs a task against a session on its own thread (a virtual thread, by default). Calls to the server made by the task can be cancelled by cancelling the returned future.
+	 *
+	 * @param <R> The type of the result of the task
+	 * @param name The name of the session to run the task against
+	 * @param task The task to run
+	 * @return A future for the result of {@code task}
+	 */
+	public <R> CompletableFuture<R> submit(String name, SessionTask<T, R> task)
+	{
+		TestAiDriver<T> d = get(name);
+		if (d == null)
+			throw new IllegalArgumentException("There is no session named " + name);
+
+		return AsyncCalls.supply(() -> task.run(d), executor);
+	}
+
+	/**
+	 * Quits a session and removes it from this pool.
+	 *
+	 * @param name The name of the session to quit
+	 */
+	public void quit(String name)
+	{
+		Session<T> s = sessions.remove(name);
+		if (s != null)
+			s.driver.quit();
+	}
+
+	/**
+	 * Quits every session in this pool.
+	 */
+	public void quitAll()
+	{
+		for (String name : getSessionNames())
+			try
+			{
+				quit(name);
+			}
+			catch (Throwable e)
+			{
+				log.warn("Unable to quit session '{}'", name, e);
+			}
+
+		stats.unregister();
+	}
+
+	/**
+	 * A task to run against one session of a pool.
+	 *
+	 * @param <T> The element type of the session's driver
+	 * @param <R> The type of the result of the task
+	 */
+	@FunctionalInterface
+	public interface SessionTask<T extends WebElement, R>
+	{
+		/**
+		 * Runs the task.
+		 *
+		 * @param driver The driver of the session
+		 * @return The result of the task
+		 * @throws Exception If the task failed.
+		 */
+		R run(TestAiDriver<T> driver) throws Exception;
+	}
+
+	/**
+	 * Simple container for a session in a pool.
+	 *
+	 * @param <T> The element type of the session's driver
+	 */
+	private static class Session<T extends WebElement>
+	{
+		/**
+		 * The driver of the session
+		 */
+		final TestAiDriver<T> driver;
+
+		/**
+		 * The statistics of the session's calls to the server
+		 */
+		final ServerCallLimiter.SessionStats stats;
+
+		/**
+		 * Constructor, creates a new Session.
+		 *
+		 * @param driver The driver of the session
+		 * @param stats The statistics of the session's calls to the server
+		 */
+		Session(TestAiDriver<T> driver, ServerCallLimiter.SessionStats stats)
+		{
+			this.driver = driver;
+			this.stats = stats;
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package ai.test.sdk;
 
-import com.google.gson.JsonObject;
-
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.MobileElement;
 import io.appium.java_client.TouchAction;
@@ -63,27 +61,53 @@ public class TestAiElement extends MobileElement
 	/**
 	 * Constructor, creates a new TestAiElement
 	 * 
-	 * @param elem The element data returned by the FD API, as JSON
+	 * @param elem The element data returned by the FD API
 	 * @param driver The driver the user is using to interact with their app
-	 * @param multiplier The screen density multiplier to use
+	 * @param multiplier The factor to divide the coordinates in {@code elem} by to convert them to device coordinates. This is the screen density multiplier times the scale of the uploaded
+	 *            screenshot.
 	 */
-	TestAiElement(JsonObject elem, @SuppressWarnings("rawtypes") AppiumDriver driver, double multiplier)
+	TestAiElement(ClassifyResponse.Elem elem, @SuppressWarnings("rawtypes") AppiumDriver driver, double multiplier)
+	{
+		this(new Rectangle(elem.x, elem.y, elem.height, elem.width), elem.text, elem.tagName, driver, multiplier);
+	}
+
+	/**
+	 * Constructor, creates a new TestAiElement from a location in a screenshot
+	 * 
+	 * @param screenRect The location and size of the element, in screenshot pixels
+	 * @param text The text in the element
+	 * @param tagName The tag name of the element
+	 * @param driver The driver the user is using to interact with their app
+	 * @param multiplier The factor to divide the coordinates in {@code screenRect} by to convert them to device coordinates.
+	 */
+	TestAiElement(Rectangle screenRect, String text, String tagName, @SuppressWarnings("rawtypes") AppiumDriver driver, double multiplier)
 	{
 		this.driver = driver;
 		setParent(driver);
 
-		text = JsonUtils.stringFromJson(elem, "text");
-		size = new Dimension(JsonUtils.intFromJson(elem, "width") / (int) multiplier, JsonUtils.intFromJson(elem, "height") / (int) multiplier);
+		this.text = text;
+		size = new Dimension(scale(screenRect.width, multiplier), scale(screenRect.height, multiplier));
 
-		location = new Point(JsonUtils.intFromJson(elem, "x") / (int) multiplier, JsonUtils.intFromJson(elem, "y") / (int) multiplier);
+		location = new Point(scale(screenRect.x, multiplier), scale(screenRect.y, multiplier));
 
 		// this.property = property //TODO: not referenced/implemented on python side??
 		rectangle = new Rectangle(location, size);
-		tagName = JsonUtils.stringFromJson(elem, "class");
+		this.tagName = tagName;
 
-		cX = location.x / (int) multiplier + size.width / (int) multiplier / 2;
-		cY = location.y / (int) multiplier + size.height / (int) multiplier / 2;
+		cX = location.x + size.width / 2;
+		cY = location.y + size.height / 2;
+	}
 
+	/**
+	 * Converts a screenshot coordinate to a device coordinate.
+	 * 
+	 * @param v The screenshot coordinate
+	 * @param multiplier The factor to divide {@code v} by
+	 * @return {@code v} divided by {@code multiplier}, rounded to the nearest int.
+	 */
+	private static int scale(int v, double multiplier)
+	{
+		return (int) Math.round(v / multiplier);
 	}
 
 	@Override
@@ -0,0 +1,154 @@
+package ai.test.sdk;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+/**
+ * A process-wide registry of {@code OkHttpClient}s, keyed by server and TLS mode. Every client handed out shares a single connection pool and dispatcher, so many {@code TestAiDriver}s talking to
+ * the same server reuse connections (and TLS sessions) and threads instead of each creating their own.
+ */
+public final class TransportRegistry
+{
+	/**
+	 * The clients handed out so far, keyed by {@code scheme://host:port} and TLS mode.
+	 */
+	private static final ConcurrentHashMap<String, OkHttpClient> clients = new ConcurrentHashMap<>();
+
+	/**
+	 * The settings used to create new clients.
+	 */
+	private static TransportSettings settings = new TransportSettings();
+
+	/**
+	 * The connection pool shared by all clients.
+	 */
+	private static ConnectionPool pool;
+
+	/**
+	 * The dispatcher shared by all clients.
+	 */
+	private static Dispatcher dispatcher;
+
+	/**
+	 * The request compressor shared by all clients.
+	 */
+	private static RequestCompressor compressor;
+
+	/**
+	 * The circuit breakers of the servers clients were handed out for, keyed by {@code scheme://host:port}.
+	 */
+	private static final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+	/**
+	 * The latency tracker shared by all clients. Outlives {@link #configure(TransportSettings)}, like {@link #breakers}, so clients handed out before and after it feed and read the same
+	 * latencies.
+	 */
+	private static final LatencyTracker latency = new LatencyTracker(settings.adaptiveTimeouts);
+
+	static
+	{
+		configure(settings);
+	}
+
+	/**
+	 * Constructor, private to prevent instantiation.
+	 */
+	private TransportRegistry()
+	{
+	}
+
+	/**
+	 * Applies new transport settings. Clients handed out from now on will use them; clients which were already handed out keep their old settings. The circuit breakers and the latency tracker
+	 * are kept, with their thresholds updated, so they go on reflecting every client talking to a server.
+	 *
+	 * @param s The settings to apply
+	 */
+	public static synchronized void configure(TransportSettings s)
+	{
+		settings = s;
+		pool = new ConnectionPool(s.maxIdleConnections, s.keepAlive.toMillis(), TimeUnit.MILLISECONDS);
+
+		dispatcher = new Dispatcher();
+		dispatcher.setMaxRequests(s.maxRequests);
+		dispatcher.setMaxRequestsPerHost(s.maxRequestsPerHost);
+
+		compressor = new RequestCompressor(s.compression, s.compressionThreshold);
+		latency.setAdaptive(s.adaptiveTimeouts);
+		breakers.values().forEach(b -> b.configure(s.breakerFailureThreshold, s.breakerOpenDuration));
+
+		clients.clear();
+	}
+
+	/**
+	 * Gets the shared client for the specified server, creating it if necessary.
+	 *
+	 * @param serverURL The server the client will talk to
+	 * @param unsafe Set {@code true} to get a client which ignores expired/invalid ssl certificates.
+	 * @return The shared client for {@code serverURL}
+	 */
+	public static synchronized OkHttpClient get(HttpUrl serverURL, boolean unsafe)
+	{
+		return clients.computeIfAbsent(String.format("%s://%s:%d/%b", serverURL.scheme(), serverURL.host(), serverURL.port(), unsafe), k -> {
+			OkHttpClient.Builder b = unsafe ? NetUtils.unsafeClientBuilder() : NetUtils.basicClient();
+
+			b.connectionPool(pool).dispatcher(dispatcher).connectTimeout(settings.timeout).readTimeout(settings.timeout).writeTimeout(settings.timeout).callTimeout(settings.timeout);
+			b.addInterceptor(new RetryInterceptor(getCircuitBreaker(serverURL), settings.maxRetries, settings.retryBackoff, settings.maxRetryBackoff));
+			if (settings.compression != RequestCompressor.Mode.OFF)
+				b.addInterceptor(compressor);
+			b.addNetworkInterceptor(latency); // per attempt, so retry backoff and queueing for a call slot are not counted as latency
+			if (!settings.http2)
+				b.protocols(List.of(Protocol.HTTP_1_1));
+
+			return b.build();
+		});
+	}
+
+	/**
+	 * Gets the circuit breaker of a server, creating it if necessary. Register a listener on it to be notified when the server becomes unhealthy or recovers.
+	 *
+	 * @param serverURL The server
+	 * @return The circuit breaker shared by all clients talking to {@code serverURL}
+	 */
+	public static synchronized CircuitBreaker getCircuitBreaker(HttpUrl serverURL)
+	{
+		return breakers.computeIfAbsent(String.format("%s://%s:%d", serverURL.scheme(), serverURL.host(), serverURL.port()),
+				k -> new CircuitBreaker(k, settings.breakerFailureThreshold, settings.breakerOpenDuration));
+	}
+
+	/**
+	 * Gets the latency tracker shared by all clients. Useful for monitoring latency percentiles per endpoint.
+	 *
+	 * @return The shared latency tracker
+	 */
+	public static synchronized LatencyTracker getLatencyTracker()
+	{
+		return latency;
+	}
+
+	/**
+	 * Gets the request compressor currently shared by new clients. Useful for monitoring how many bytes compression is saving.
+	 *
+	 * @return The shared request compressor
+	 */
+	public static synchronized RequestCompressor getRequestCompressor()
+	{
+		return compressor;
+	}
+
+	/**
+	 * Gets the connection pool currently shared by new clients. Useful for monitoring the number of open connections.
+	 *
+	 * @return The shared connection pool
+	 */
+	public static synchronized ConnectionPool getConnectionPool()
+	{
+		return pool;
+	}
+}
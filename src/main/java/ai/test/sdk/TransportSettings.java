@@ -0,0 +1,225 @@
+package ai.test.sdk;
+
+import java.time.Duration;
+
+/**
+ * Tunable settings for the HTTP transport shared by {@code TestAiDriver}s. Apply them with {@link TransportRegistry#configure(TransportSettings)}.
+ */
+public final class TransportSettings
+{
+	/**
+	 * The maximum number of idle connections to keep in the shared pool
+	 */
+	int maxIdleConnections = 16;
+
+	/**
+	 * How long idle connections are kept alive for
+	 */
+	Duration keepAlive = Duration.ofMinutes(5);
+
+	/**
+	 * The maximum number of concurrent asynchronous requests
+	 */
+	int maxRequests = 64;
+
+	/**
+	 * The maximum number of concurrent asynchronous requests per host
+	 */
+	int maxRequestsPerHost = 32;
+
+	/**
+	 * Indicates whether HTTP/2 may be negotiated
+	 */
+	boolean http2 = true;
+
+	/**
+	 * The connect, read, write, and call timeouts
+	 */
+	Duration timeout = Duration.ofSeconds(30);
+
+	/**
+	 * Determines when request bodies are gzipped
+	 */
+	RequestCompressor.Mode compression = RequestCompressor.Mode.AUTO;
+
+	/**
+	 * Request bodies smaller than this many bytes are never gzipped
+	 */
+	long compressionThreshold = 1024;
+
+	/**
+	 * The maximum number of times a failed call is retried
+	 */
+	int maxRetries = 2;
+
+	/**
+	 * The backoff before the first retry, and the maximum backoff
+	 */
+	Duration retryBackoff = Duration.ofMillis(200), maxRetryBackoff = Duration.ofSeconds(5);
+
+	/**
+	 * The number of consecutive failed calls which opens a server's circuit breaker
+	 */
+	int breakerFailureThreshold = 5;
+
+	/**
+	 * How long a server's circuit breaker stays open for
+	 */
+	Duration breakerOpenDuration = Duration.ofSeconds(30);
+
+	/**
+	 * Indicates whether call timeouts adapt to the observed latency of each endpoint
+	 */
+	boolean adaptiveTimeouts;
+
+	/**
+	 * Sets the maximum number of idle connections to keep in the shared connection pool. Default is 16.
+	 *
+	 * @param maxIdleConnections The maximum number of idle connections
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setMaxIdleConnections(int maxIdleConnections)
+	{
+		this.maxIdleConnections = maxIdleConnections;
+		return this;
+	}
+
+	/**
+	 * Sets how long idle connections are kept alive for. Default is 5 minutes.
+	 *
+	 * @param keepAlive How long idle connections are kept alive for
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setKeepAlive(Duration keepAlive)
+	{
+		this.keepAlive = keepAlive;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent asynchronous requests (e.g. background {@code add_action} uploads) across all drivers. Default is 64.
+	 *
+	 * @param maxRequests The maximum number of concurrent asynchronous requests
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setMaxRequests(int maxRequests)
+	{
+		this.maxRequests = maxRequests;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of concurrent asynchronous requests to a single host across all drivers. Default is 32.
+	 *
+	 * @param maxRequestsPerHost The maximum number of concurrent asynchronous requests per host
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setMaxRequestsPerHost(int maxRequestsPerHost)
+	{
+		this.maxRequestsPerHost = maxRequestsPerHost;
+		return this;
+	}
+
+	/**
+	 * Sets whether HTTP/2 may be negotiated with the server. With HTTP/2, concurrent requests from all drivers are multiplexed over a single connection. Default is {@code true}.
+	 *
+	 * @param http2 Set {@code false} to only use HTTP/1.1.
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setHttp2(boolean http2)
+	{
+		this.http2 = http2;
+		return this;
+	}
+
+	/**
+	 * Sets when request bodies should be gzipped. Default is {@link RequestCompressor.Mode#AUTO}, which compresses requests once the server has advertised gzip support.
+	 *
+	 * @param compression Determines when request bodies are gzipped
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setCompression(RequestCompressor.Mode compression)
+	{
+		this.compression = compression;
+		return this;
+	}
+
+	/**
+	 * Sets the size below which request bodies are never gzipped. Default is 1024 bytes.
+	 *
+	 * @param compressionThreshold The minimum size of a compressed request body, in bytes
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setCompressionThreshold(long compressionThreshold)
+	{
+		this.compressionThreshold = compressionThreshold;
+		return this;
+	}
+
+	/**
+	 * Sets the connect, read, write, and call timeouts. Default is 30 seconds.
+	 *
+	 * @param timeout The timeout to use
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setTimeout(Duration timeout)
+	{
+		this.timeout = timeout;
+		return this;
+	}
+
+	/**
+	 * Sets the maximum number of times a failed call is retried. Calls the server did not process (connection failures, 429, 503) are retried for every endpoint, other failures only for idempotent
+	 * ones such as {@code classify}. Default is 2.
+	 *
+	 * @param maxRetries The maximum number of retries. Set 0 to disable retries.
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setMaxRetries(int maxRetries)
+	{
+		this.maxRetries = maxRetries;
+		return this;
+	}
+
+	/**
+	 * Sets the backoff between retries. Each retry waits a random time between 0 and {@code base * 2^retry}, capped at {@code max}, unless the server asks for a specific delay with
+	 * {@code Retry-After}. Calls the server asks to retry after longer than {@code max} are not retried. Default is 200 ms and 5 seconds.
+	 *
+	 * @param base The backoff before the first retry
+	 * @param max The maximum backoff
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setRetryBackoff(Duration base, Duration max)
+	{
+		retryBackoff = base;
+		maxRetryBackoff = max;
+		return this;
+	}
+
+	/**
+	 * Sets when a server's circuit breaker opens, and for how long. While it is open, calls to the server fail immediately. Default is 5 consecutive failures and 30 seconds.
+	 *
+	 * @param failureThreshold The number of consecutive failed calls which opens the breaker
+	 * @param openDuration How long the breaker stays open for
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setCircuitBreaker(int failureThreshold, Duration openDuration)
+	{
+		breakerFailureThreshold = failureThreshold;
+		breakerOpenDuration = openDuration;
+		return this;
+	}
+
+	/**
+	 * Sets whether call timeouts should adapt to the latency observed for each endpoint. Once an endpoint has had enough calls, its timeout becomes three times its recent p99 latency (but at least 2
+	 * seconds, and never more than the configured timeout), so a stuck call is abandoned long before the fixed timeout. Default is {@code false}.
+	 *
+	 * @param adaptiveTimeouts Set {@code true} to enable adaptive timeouts.
+	 * @return This {@code TransportSettings}, for chaining convenience.
+	 */
+	public TransportSettings setAdaptiveTimeouts(boolean adaptiveTimeouts)
+	{
+		this.adaptiveTimeouts = adaptiveTimeouts;
+		return this;
+	}
+}
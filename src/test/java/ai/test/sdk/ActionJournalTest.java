@@ -0,0 +1,109 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openqa.selenium.Rectangle;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Tests for {@link ActionJournal}.
+ *
+ */
+class ActionJournalTest
+{
+	/**
+	 * The directory journals are written to
+	 */
+	@TempDir
+	Path dir;
+
+	/**
+	 * Writes a journal with one record per key.
+	 *
+	 * @param keys The keys of the records
+	 * @return The journal file
+	 * @throws IOException If the journal could not be written.
+	 */
+	private Path journal(String... keys) throws IOException
+	{
+		try (ActionJournal j = new ActionJournal(dir, "run"))
+		{
+			for (String k : keys)
+				j.append(k, new Rectangle(1, 2, 3, 4), 3, "run", true);
+
+			return j.getPath();
+		}
+	}
+
+	/**
+	 * Records survive a round trip through the file.
+	 */
+	@Test
+	void readsBackAppendedRecords() throws IOException
+	{
+		List<String> keys = ActionJournal.read(journal("a", "b", "c")).stream().map(f -> f.get("key")).collect(Collectors.toList());
+		assertEquals(List.of("a", "b", "c"), keys);
+	}
+
+	/**
+	 * A replay which only partly succeeds keeps only the records which failed, so the next replay does not send the others twice.
+	 */
+	@Test
+	void partialReplayKeepsOnlyFailedRecords() throws IOException
+	{
+		Path file = journal("a", "b", "c", "d");
+		OkHttpClient client = NetUtils.basicClient().build();
+
+		try (StandInServer server = new StandInServer())
+		{
+			HttpUrl url = HttpUrl.parse(server.url());
+			server.setActionRejected("b", true).setActionRejected("d", true);
+
+			assertFalse(ActionJournal.replay(file, client, url, "test"));
+			assertEquals(List.of("b", "d"), ActionJournal.read(file).stream().map(f -> f.get("key")).collect(Collectors.toList()));
+
+			server.setActionRejected("b", false).setActionRejected("d", false);
+			assertTrue(ActionJournal.replay(file, client, url, "test"));
+			assertFalse(Files.exists(file));
+
+			for (String k : List.of("a", "b", "c", "d"))
+				assertEquals(1, server.getActionCount(k), k);
+		}
+	}
+
+	/**
+	 * A journal which is still open is skipped by replay, and replayed once it has been closed.
+	 */
+	@Test
+	void openJournalIsSkipped() throws IOException
+	{
+		OkHttpClient client = NetUtils.basicClient().build();
+
+		try (StandInServer server = new StandInServer(); ActionJournal j = new ActionJournal(dir, "live"))
+		{
+			HttpUrl url = HttpUrl.parse(server.url());
+			j.append("a", new Rectangle(1, 2, 3, 4), 3, "live", true);
+
+			assertFalse(ActionJournal.replay(j.getPath(), client, url, "test", Duration.ofSeconds(5)));
+			assertTrue(Files.exists(j.getPath()));
+			assertEquals(0, server.getCallCount("add_action"));
+
+			j.close();
+			assertTrue(ActionJournal.replay(j.getPath(), client, url, "test", Duration.ofSeconds(5)));
+			assertEquals(1, server.getActionCount("a"));
+		}
+	}
+}
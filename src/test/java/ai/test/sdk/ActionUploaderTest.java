@@ -0,0 +1,126 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Tests for {@link ActionUploader}.
+ *
+ */
+class ActionUploaderTest
+{
+	/**
+	 * The server records are uploaded to
+	 */
+	private StandInServer server;
+
+	/**
+	 * The uploader under test
+	 */
+	private ActionUploader uploader;
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer();
+		uploader = new ActionUploader(NetUtils.basicClient().build(), HttpUrl.parse(server.url()));
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		uploader.close(Duration.ofSeconds(5));
+		server.close();
+	}
+
+	/**
+	 * Creates a record.
+	 *
+	 * @param key The key of the record
+	 * @return The record
+	 */
+	private static HashMap<String, String> record(String key)
+	{
+		return CollectionUtils.keyValuesToHM("key", key, "run_id", "run");
+	}
+
+	/**
+	 * A full queue drops records right away without an offer timeout, and makes the caller wait for room with one.
+	 */
+	@Test
+	void fullQueueWaitsForRoomUntilOfferTimeout() throws InterruptedException
+	{
+		server.setLatency("add_action", StandInServer.Latency.fixed(Duration.ofMillis(300)));
+		uploader.setQueueCapacity(1).setBatchSize(1);
+
+		assertTrue(uploader.submit(record("a")));
+		Thread.sleep(100); // the worker is now sending "a"
+		assertTrue(uploader.submit(record("b")));
+
+		assertFalse(uploader.submit(record("c")));
+		assertEquals(1, uploader.getDroppedCount());
+
+		uploader.setOfferTimeout(Duration.ofSeconds(5));
+		long start = System.nanoTime();
+		assertTrue(uploader.submit(record("d")));
+		assertTrue(System.nanoTime() - start < Duration.ofSeconds(2).toNanos());
+		assertEquals(2, uploader.getBackpressureCount());
+
+		assertTrue(uploader.flush(Duration.ofSeconds(5)));
+		assertEquals(3, uploader.getSentCount());
+	}
+
+	/**
+	 * Records submitted while the uploader is closing are either uploaded or dropped, none are left pending.
+	 */
+	@Test
+	void recordsRacingCloseAreNeverStranded() throws InterruptedException
+	{
+		CountDownLatch go = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++)
+		{
+			Thread th = new Thread(() -> {
+				try
+				{
+					go.await();
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+
+				for (int i = 0; i < 50; i++)
+					uploader.submit(record("k" + i));
+			});
+			th.start();
+			threads.add(th);
+		}
+
+		go.countDown();
+		Thread.sleep(5);
+
+		assertTrue(uploader.close(Duration.ofSeconds(20))); // a stranded record would keep this waiting until it times out
+
+		for (Thread th : threads)
+			th.join();
+
+		assertEquals(uploader.getSubmittedCount(), uploader.getSentCount() + uploader.getFailedCount() + uploader.getDroppedCount());
+		assertEquals(0, uploader.getQueuedCount());
+		assertFalse(uploader.submit(record("late")));
+	}
+}
@@ -0,0 +1,88 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.NoSuchElementException;
+
+import io.appium.java_client.MobileElement;
+import okhttp3.HttpUrl;
+
+/**
+ * Tests how {@link TestAiDriver} classifies while the server is unavailable.
+ *
+ */
+class ClassifyAvailabilityTest
+{
+	/**
+	 * While the circuit breaker is open, lookups the classify cache can answer still succeed, and only the others fail fast.
+	 */
+	@Test
+	void cacheAnswersWhileBreakerIsOpen() throws IOException
+	{
+		try (StandInServer server = new StandInServer())
+		{
+			TestAiDriver<MobileElement> driver = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(360, 640, 1), StubAppiumDriver.pageSource(20)), "test", server.url(), null,
+					true);
+			driver.getClassifyCache().setEnabled(true);
+
+			assertNotNull(driver.findByElementName("button"));
+			assertEquals(1, server.getCallCount("classify"));
+
+			CircuitBreaker breaker = TransportRegistry.getCircuitBreaker(HttpUrl.parse(server.url()));
+			while (breaker.getState() != CircuitBreaker.State.OPEN)
+				breaker.onFailure();
+
+			assertNotNull(driver.findByElementName("button"));
+
+			NoSuchElementException e = assertThrows(NoSuchElementException.class, () -> driver.findByElementName("other"));
+			assertTrue(e.getMessage().contains("unavailable"), e.getMessage());
+			assertEquals(1, server.getCallCount("classify"));
+
+			driver.quit();
+		}
+	}
+
+	/**
+	 * An error response from the server is reported with its http status, instead of being mistaken for a classification.
+	 */
+	@Test
+	void errorStatusIsReported() throws IOException
+	{
+		try (StandInServer server = new StandInServer())
+		{
+			server.setErrorRate("classify", 1);
+			TestAiDriver<MobileElement> driver = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(360, 640, 1), StubAppiumDriver.pageSource(20)), "test", server.url(), null,
+					true);
+
+			NoSuchElementException e = assertThrows(NoSuchElementException.class, () -> driver.findByElementName("button"));
+			assertTrue(e.getMessage().contains("http 503"), e.getMessage());
+
+			driver.quit();
+		}
+	}
+
+	/**
+	 * An error response which says why the element was not found is reported with that reason, so the user is still told to label the element.
+	 */
+	@Test
+	void errorStatusWithMessageIsExplained() throws IOException
+	{
+		try (StandInServer server = new StandInServer())
+		{
+			server.setElement("absent", null).setMissingStatus(404);
+			TestAiDriver<MobileElement> driver = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(360, 640, 1), StubAppiumDriver.pageSource(20)), "test", server.url(), null,
+					true);
+
+			NoSuchElementException e = assertThrows(NoSuchElementException.class, () -> driver.findByElementName("absent"));
+			assertTrue(e.getMessage().contains("/label/absent"), e.getMessage());
+
+			driver.quit();
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * Tests for {@link ClassifyReplay}.
+ *
+ */
+class ClassifyReplayTest
+{
+	/**
+	 * The directory recordings are written to
+	 */
+	@TempDir
+	Path dir;
+
+	/**
+	 * Creates a driver which records into, or replays from, the recording file.
+	 *
+	 * @param server The server to talk to
+	 * @param mode The replay mode
+	 * @return The driver
+	 * @throws IOException If the driver could not be created.
+	 */
+	private TestAiDriver<MobileElement> driver(StandInServer server, ClassifyReplay.Mode mode) throws IOException
+	{
+		TestAiDriver<MobileElement> d = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(360, 640, 1), StubAppiumDriver.pageSource(20)), "test", server.url(), null, true);
+		d.getClassifyReplay().setMode(mode).setFile(dir.resolve("classify.replay"));
+		return d;
+	}
+
+	/**
+	 * A classification replayed from an earlier run is not uploaded with {@code add_action}, since its key belongs to that run.
+	 */
+	@Test
+	void replayedKeysAreNotUploaded() throws IOException
+	{
+		try (StandInServer server = new StandInServer())
+		{
+			TestAiDriver<MobileElement> d = driver(server, ClassifyReplay.Mode.RECORD);
+			d.findElementByXPath("//button", "button");
+			d.quit();
+
+			assertEquals(1, server.getCallCount("classify"));
+			assertEquals(1, server.getActionCount("button-key"));
+
+			d = driver(server, ClassifyReplay.Mode.REPLAY_OR_LIVE);
+			d.findElementByXPath("//button", "button");
+			d.quit();
+
+			assertEquals(1, d.getClassifyReplay().getHitCount());
+			assertEquals(1, server.getCallCount("classify"));
+			assertEquals(1, server.getActionCount("button-key"));
+		}
+	}
+}
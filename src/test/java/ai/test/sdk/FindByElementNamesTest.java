@@ -0,0 +1,79 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * Tests how {@link TestAiDriver#findByElementNames(List)} classifies a batch of labels, against a {@link StandInServer}.
+ *
+ */
+class FindByElementNamesTest
+{
+	/**
+	 * The server the driver talks to
+	 */
+	private StandInServer server;
+
+	/**
+	 * The driver under test
+	 */
+	private TestAiDriver<MobileElement> driver;
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer().setElement("absent", null);
+		driver = new TestAiDriver<>(StubAppiumDriver.create(StubAppiumDriver.screenshot(360, 640, 1), StubAppiumDriver.pageSource(20)), "test", server.url(), null, true);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		driver.quit();
+		server.close();
+	}
+
+	/**
+	 * Every label of the batch is classified with a single call, and each gets its own result, in the order asked for.
+	 */
+	@Test
+	void severalLabelsOneCall()
+	{
+		Map<String, FindResult> found = driver.findByElementNames(List.of("button", "field", "absent"));
+
+		assertEquals(List.of("button", "field", "absent"), List.copyOf(found.keySet()));
+		assertTrue(found.get("button").isFound());
+		assertTrue(found.get("field").isFound());
+		assertFalse(found.get("absent").isFound());
+		assertTrue(found.get("absent").getMessage().contains("/label/absent"), found.get("absent").getMessage());
+		assertEquals(1, server.getCallCount("classify"));
+	}
+
+	/**
+	 * Labels the classify cache answers are not sent, and a single label left over is classified on its own.
+	 */
+	@Test
+	void cachedLabelsAreNotSent()
+	{
+		driver.getClassifyCache().setEnabled(true);
+		assertTrue(driver.findByElementNames(List.of("button")).get("button").isFound());
+		assertEquals(1, server.getCallCount("classify"));
+
+		Map<String, FindResult> found = driver.findByElementNames(List.of("button", "field"));
+
+		assertTrue(found.get("button").isFound());
+		assertTrue(found.get("field").isFound());
+		assertEquals(2, server.getCallCount("classify"));
+	}
+}
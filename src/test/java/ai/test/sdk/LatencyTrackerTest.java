@@ -0,0 +1,67 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Tests which calls {@link LatencyTracker} samples.
+ *
+ */
+class LatencyTrackerTest
+{
+	/**
+	 * The server calls are made to. Takes longer to answer {@code classify} than the clients of these tests wait.
+	 */
+	private StandInServer server;
+
+	/**
+	 * The url of {@link #server}
+	 */
+	private HttpUrl url;
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer().setLatency("classify", StandInServer.Latency.fixed(Duration.ofSeconds(1)));
+		url = HttpUrl.parse(server.url());
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		server.close();
+	}
+
+	/**
+	 * Calls which time out are sampled with the time they waited, so the adaptive timeout is no longer shorter than the calls which timed out.
+	 */
+	@Test
+	void timedOutCallsAreSampled()
+	{
+		LatencyTracker tracker = new LatencyTracker(true);
+		OkHttpClient client = NetUtils.basicClient().callTimeout(Duration.ofMillis(100)).addNetworkInterceptor(tracker).build();
+
+		for (int i = 0; i < 20; i++)
+		{
+			IOException e = assertThrows(IOException.class, () -> NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button")).execute());
+			assertTrue(e instanceof InterruptedIOException, e.toString());
+		}
+
+		Duration p50 = tracker.getPercentile("classify", 50);
+		assertNotNull(p50);
+		assertTrue(p50.toMillis() >= 50, p50.toString());
+		assertTrue(tracker.getAdaptiveTimeout("classify").compareTo(Duration.ofMillis(100)) > 0);
+	}
+}
@@ -0,0 +1,50 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.awt.Dimension;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.remote.DesiredCapabilities;
+
+/**
+ * Tests for {@link MultiplierCache}.
+ *
+ */
+class MultiplierCacheTest
+{
+	/**
+	 * A portrait screenshot size
+	 */
+	private static final Dimension PORTRAIT = new Dimension(1080, 1920);
+
+	/**
+	 * Devices are only identified by their udid; a device name alone is shared by too many devices to key on.
+	 */
+	@Test
+	void keysRequireUdid()
+	{
+		assertNull(MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "deviceName", "Android Emulator")), PORTRAIT));
+
+		String a = MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "deviceName", "Android Emulator", "udid", "emulator-5554")), PORTRAIT),
+				b = MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "deviceName", "Android Emulator", "udid", "emulator-5556")), PORTRAIT);
+		assertNotEquals(a, b);
+		assertEquals(a, MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "deviceUDID", "emulator-5554")), PORTRAIT));
+		assertNotEquals(a, MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "udid", "emulator-5554")), new Dimension(1920, 1080)));
+	}
+
+	/**
+	 * A udid reused by a device with another screen, like {@code emulator-5554} for a different emulator, does not get the first device's multiplier.
+	 */
+	@Test
+	void keysTellScreensApart()
+	{
+		String a = MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "udid", "emulator-5554")), PORTRAIT);
+		assertNotEquals(a, MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "udid", "emulator-5554")), new Dimension(1440, 2560)));
+		assertNotEquals(MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "udid", "emulator-5554", "deviceScreenDensity", 420)), PORTRAIT),
+				MultiplierCache.key(new DesiredCapabilities(Map.of("platformName", "Android", "udid", "emulator-5554", "deviceScreenDensity", 480)), PORTRAIT));
+	}
+}
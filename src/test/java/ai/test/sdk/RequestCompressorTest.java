@@ -0,0 +1,55 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Tests for {@link RequestCompressor}.
+ *
+ */
+class RequestCompressorTest
+{
+	/**
+	 * Compressed url-encoded and streamed multipart bodies arrive intact, and each is counted.
+	 */
+	@Test
+	void streamsCompressedBodies() throws IOException
+	{
+		RequestCompressor compressor = new RequestCompressor(RequestCompressor.Mode.ALWAYS, 0);
+		OkHttpClient client = NetUtils.basicClient().addInterceptor(compressor).build();
+		String source = StubAppiumDriver.pageSource(200);
+
+		try (StandInServer server = new StandInServer())
+		{
+			HttpUrl url = HttpUrl.parse(server.url());
+
+			try (Response r = NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button", "source", source)).execute())
+			{
+				assertEquals(200, r.code());
+			}
+			assertEquals(source, server.getLastSource());
+			assertEquals(1, compressor.getCompressedRequestCount());
+
+			try (Response r = NetUtils.newMultipartPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button"),
+					Map.of("source", NetUtils.streamingBody(source + "<multipart />", MediaType.get("text/xml; charset=utf-8")))).execute())
+			{
+				assertEquals(200, r.code());
+			}
+			assertEquals(source + "<multipart />", server.getLastSource());
+			assertEquals(2, compressor.getCompressedRequestCount());
+		}
+
+		assertTrue(compressor.getRawBytes() > 2 * source.length());
+		assertTrue(compressor.getCompressedBytes() < compressor.getRawBytes() / 10);
+	}
+}
@@ -0,0 +1,123 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * Tests how {@link RetryInterceptor} reports calls to the {@link CircuitBreaker}.
+ *
+ */
+class RetryInterceptorTest
+{
+	/**
+	 * The server calls are made to. Takes longer to answer {@code classify} than the clients of these tests wait.
+	 */
+	private StandInServer server;
+
+	/**
+	 * The url of {@link #server}
+	 */
+	private HttpUrl url;
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer().setLatency("classify", StandInServer.Latency.fixed(Duration.ofSeconds(2)));
+		url = HttpUrl.parse(server.url());
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		server.close();
+	}
+
+	/**
+	 * Creates a client which does not retry and times calls out after 200 ms.
+	 *
+	 * @param breaker The circuit breaker of the server
+	 * @return The client
+	 */
+	private static OkHttpClient.Builder client(CircuitBreaker breaker)
+	{
+		return NetUtils.basicClient().callTimeout(Duration.ofMillis(200)).addInterceptor(new RetryInterceptor(breaker, 0, Duration.ofMillis(10), Duration.ofMillis(10)));
+	}
+
+	/**
+	 * Calls that time out on a stalled server are failures, so the breaker opens and further calls fail fast without reaching the server.
+	 */
+	@Test
+	void stalledServerOpensBreaker()
+	{
+		CircuitBreaker breaker = new CircuitBreaker("stalled", 3, Duration.ofMinutes(1));
+		OkHttpClient client = client(breaker).build();
+
+		for (int i = 0; i < 3; i++)
+		{
+			IOException e = assertThrows(IOException.class, () -> NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button")).execute());
+			assertTrue(e instanceof InterruptedIOException, e.toString());
+		}
+
+		assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+		assertThrows(CircuitBreaker.OpenException.class, () -> NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button")).execute());
+		assertEquals(3, server.getCallCount("classify"));
+	}
+
+	/**
+	 * A call nobody waits for any more, because its lookup was cancelled, says nothing about the server, so it does not count towards opening the breaker.
+	 *
+	 * @throws InterruptedException If interrupted while waiting for the call to finish
+	 */
+	@Test
+	void abandonedCallIsNotAFailure() throws InterruptedException
+	{
+		CircuitBreaker breaker = new CircuitBreaker("abandoned", 1, Duration.ofMinutes(1));
+		OkHttpClient client = client(breaker).callTimeout(Duration.ofSeconds(10)).build();
+
+		CompletableFuture<Response> f = AsyncCalls.supply(() -> AsyncCalls.execute(NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button"))),
+				AsyncCalls.DEFAULT_EXECUTOR);
+		Thread.sleep(100);
+		f.cancel(true);
+
+		for (int i = 0; i < 100 && client.dispatcher().runningCallsCount() > 0; i++)
+			Thread.sleep(20);
+
+		assertEquals(0, client.dispatcher().runningCallsCount());
+		assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+	}
+
+	/**
+	 * A trial call which fails with an unchecked exception gives up the trial, so the half-open breaker lets the next call through.
+	 *
+	 * @throws InterruptedException If interrupted while waiting for the breaker to half-open
+	 */
+	@Test
+	void uncheckedExceptionFreesTrialCall() throws InterruptedException
+	{
+		CircuitBreaker breaker = new CircuitBreaker("unchecked", 1, Duration.ofMillis(1));
+		OkHttpClient client = client(breaker).addInterceptor(chain -> {
+			throw new IllegalStateException("on purpose");
+		}).build();
+
+		breaker.onFailure();
+		Thread.sleep(5);
+
+		assertThrows(IllegalStateException.class, () -> NetUtils.newPOST(client, url, "classify", CollectionUtils.keyValuesToHM("label", "button")).execute());
+		assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+		assertTrue(breaker.isCallPermitted());
+	}
+}
@@ -0,0 +1,125 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+/**
+ * Tests the order in which {@link ServerCallLimiter} lets the calls of several sessions through.
+ *
+ */
+class ServerCallLimiterTest
+{
+	/**
+	 * The server calls are made to. Takes a while to answer {@code classify}, so calls queue behind the limit.
+	 */
+	private StandInServer server;
+
+	/**
+	 * The threads making the calls
+	 */
+	private final ExecutorService callers = Executors.newCachedThreadPool();
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer().setLatency("classify", StandInServer.Latency.fixed(Duration.ofMillis(200)));
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		callers.shutdownNow();
+		server.close();
+	}
+
+	/**
+	 * Makes a {@code classify} call on another thread, and records the name of the call once it has been answered.
+	 *
+	 * @param client The client of the session making the call
+	 * @param name The name of the call
+	 * @param done Receives the names of the calls in the order they were answered
+	 * @return A future which completes once the call has been answered
+	 */
+	private CompletableFuture<Void> call(OkHttpClient client, String name, ConcurrentLinkedQueue<String> done)
+	{
+		return CompletableFuture.runAsync(() -> {
+			try
+			{
+				NetUtils.newPOST(client, HttpUrl.parse(server.url()), "classify", CollectionUtils.keyValuesToHM("label", name)).execute().close();
+				done.add(name);
+			}
+			catch (IOException e)
+			{
+				throw new RuntimeException(e);
+			}
+		}, callers);
+	}
+
+	/**
+	 * A call from a second session gets the next permit but one, instead of waiting behind the whole burst of the first session.
+	 *
+	 * @throws InterruptedException If interrupted while waiting for calls to queue
+	 */
+	@Test
+	void sessionsTakeTurns() throws InterruptedException
+	{
+		ServerCallLimiter limiter = new ServerCallLimiter(1);
+		OkHttpClient a = NetUtils.basicClient().addInterceptor(limiter.interceptor(new ServerCallLimiter.SessionStats())).build(),
+				b = NetUtils.basicClient().addInterceptor(limiter.interceptor(new ServerCallLimiter.SessionStats())).build();
+
+		ConcurrentLinkedQueue<String> done = new ConcurrentLinkedQueue<>();
+		List<CompletableFuture<Void>> calls = new ArrayList<>();
+		for (int i = 1; i <= 3; i++)
+		{
+			calls.add(call(a, "a" + i, done));
+			Thread.sleep(50);
+		}
+		calls.add(call(b, "b1", done));
+
+		CompletableFuture.allOf(calls.toArray(new CompletableFuture[0])).join();
+		assertEquals(List.of("a1", "a2", "b1", "a3"), List.copyOf(done));
+	}
+
+	/**
+	 * A call interrupted while waiting for a permit fails, leaves the interrupt flag of its thread set, and gives up its place in the queue.
+	 *
+	 * @throws Exception If the calls could not be made
+	 */
+	@Test
+	void interruptedWaitKeepsFlag() throws Exception
+	{
+		ServerCallLimiter limiter = new ServerCallLimiter(1);
+		ServerCallLimiter.SessionStats stats = new ServerCallLimiter.SessionStats();
+		OkHttpClient client = NetUtils.basicClient().addInterceptor(limiter.interceptor(stats)).build();
+
+		CompletableFuture<Void> first = call(client, "first", new ConcurrentLinkedQueue<>());
+		Thread.sleep(50);
+
+		Thread.currentThread().interrupt();
+		assertThrows(InterruptedIOException.class, () -> NetUtils.newPOST(client, HttpUrl.parse(server.url()), "classify", CollectionUtils.keyValuesToHM("label", "second")).execute());
+		assertTrue(Thread.interrupted());
+		assertEquals(0, stats.getQueuedCount());
+
+		first.join();
+		NetUtils.newPOST(client, HttpUrl.parse(server.url()), "classify", CollectionUtils.keyValuesToHM("label", "third")).execute().close();
+		assertEquals(2, server.getCallCount("classify"));
+	}
+}
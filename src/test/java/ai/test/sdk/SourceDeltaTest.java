@@ -0,0 +1,147 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SourceDelta}.
+ *
+ */
+class SourceDeltaTest
+{
+	/**
+	 * Joins lines into a page source.
+	 *
+	 * @param lines The lines
+	 * @return The page source
+	 */
+	private static String source(List<String> lines)
+	{
+		return String.join("\n", lines);
+	}
+
+	/**
+	 * Creates the lines of a page source with {@code n} nodes.
+	 *
+	 * @param n The number of nodes
+	 * @return The lines
+	 */
+	private static List<String> nodes(int n)
+	{
+		List<String> l = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			l.add(String.format("<node index=\"%d\" text=\"Item %d\" />", i, i));
+
+		return l;
+	}
+
+	/**
+	 * Checks that the delta from {@code base} to {@code current} rebuilds {@code current}.
+	 *
+	 * @param base The base page source
+	 * @param current The new page source
+	 */
+	private static void assertRoundTrip(String base, String current)
+	{
+		String delta = SourceDelta.diff(base, current);
+		assertEquals(current, SourceDelta.apply(base, delta), () -> "delta:\n" + delta);
+	}
+
+	@Test
+	void identicalSourcesHaveAnEmptyDelta()
+	{
+		String s = source(nodes(50));
+		assertEquals("", SourceDelta.diff(s, s));
+		assertEquals(s, SourceDelta.apply(s, ""));
+	}
+
+	@Test
+	void insertsDeletesAndReplacementsRoundTrip()
+	{
+		List<String> base = nodes(100);
+
+		List<String> l = new ArrayList<>(base);
+		l.add(0, "<header />");
+		l.add(50, "<inserted />");
+		l.add("<footer />");
+		assertRoundTrip(source(base), source(l));
+
+		l = new ArrayList<>(base);
+		l.remove(99);
+		l.subList(40, 45).clear();
+		l.remove(0);
+		assertRoundTrip(source(base), source(l));
+
+		l = new ArrayList<>(base);
+		l.set(10, "<changed />");
+		l.set(11, "<changed too />");
+		l.set(70, "");
+		assertRoundTrip(source(base), source(l));
+	}
+
+	@Test
+	void edgeCasesRoundTrip()
+	{
+		String s = source(nodes(10));
+		assertRoundTrip("", s);
+		assertRoundTrip(s, "");
+		assertRoundTrip(s, s + "\n");
+		assertRoundTrip(s + "\n", s);
+		assertRoundTrip("\n\n\n", "\n");
+	}
+
+	@Test
+	void randomEditsRoundTrip()
+	{
+		Random rnd = new Random(42);
+		for (int round = 0; round < 200; round++)
+		{
+			List<String> base = nodes(1 + rnd.nextInt(60)), l = new ArrayList<>(base);
+			for (int e = rnd.nextInt(10); e >= 0; e--)
+			{
+				int i = rnd.nextInt(l.size() + 1);
+				switch (rnd.nextInt(3))
+				{
+					case 0:
+						l.add(i, "<random " + rnd.nextInt(5) + " />");
+						break;
+					case 1:
+						if (i < l.size())
+							l.remove(i);
+						break;
+					default:
+						if (i < l.size())
+							l.set(i, l.get(rnd.nextInt(l.size())));
+				}
+			}
+
+			assertRoundTrip(source(base), source(l));
+		}
+	}
+
+	@Test
+	void unrelatedSourcesAreNotDiffed()
+	{
+		List<String> other = new ArrayList<>();
+		for (String l : nodes(600))
+			other.add(l.replace("node", "other"));
+
+		assertNull(SourceDelta.diff(source(nodes(600)), source(other)));
+	}
+
+	@Test
+	void hashIsHexSha256()
+	{
+		String h = SourceDelta.hash("<hierarchy />");
+		assertEquals(64, h.length());
+		assertTrue(h.matches("[0-9a-f]+"));
+		assertEquals(h, SourceDelta.hash("<hierarchy />"));
+	}
+}
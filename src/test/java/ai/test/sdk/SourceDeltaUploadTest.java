@@ -0,0 +1,165 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.openqa.selenium.NoSuchElementException;
+
+import io.appium.java_client.MobileElement;
+
+/**
+ * Tests which form {@link TestAiDriver} uploads page sources in when delta mode is on, against a {@link StandInServer}.
+ *
+ */
+class SourceDeltaUploadTest
+{
+	/**
+	 * The page source of each screen: a base screen, the base screen with one node changed, and an unrelated screen
+	 */
+	private static final String[] SOURCES = { source("node", -1), source("node", 50), source("other", -1) };
+
+	/**
+	 * The server the driver talks to
+	 */
+	private StandInServer server;
+
+	/**
+	 * The index of the screen the device shows
+	 */
+	private final AtomicInteger screen = new AtomicInteger();
+
+	/**
+	 * The driver under test
+	 */
+	private TestAiDriver<MobileElement> driver;
+
+	/**
+	 * Creates a multi-line page source.
+	 *
+	 * @param tag The tag of the nodes
+	 * @param changed The index of a node to change, or -1
+	 * @return The page source
+	 */
+	private static String source(String tag, int changed)
+	{
+		StringBuilder sb = new StringBuilder("<hierarchy>\n");
+		for (int i = 0; i < 200; i++)
+			sb.append(String.format("<%s index=\"%d\" text=\"%s\" />%n", tag, i, i == changed ? "Changed" : "Item " + i));
+
+		return sb.append("</hierarchy>").toString();
+	}
+
+	@BeforeEach
+	void setUp() throws IOException
+	{
+		server = new StandInServer();
+
+		byte[] shot = StubAppiumDriver.screenshot(360, 640, 1);
+		driver = new TestAiDriver<>(StubAppiumDriver.create(new byte[][] { shot, shot, shot }, SOURCES, screen::get), "test", server.url(), null, true).setSourceDeltas(true);
+	}
+
+	@AfterEach
+	void tearDown()
+	{
+		driver.quit();
+		server.close();
+	}
+
+	/**
+	 * Finds an element on a screen.
+	 *
+	 * @param s The index of the screen
+	 * @param label The label of the element
+	 */
+	private void find(int s, String label)
+	{
+		screen.set(s);
+		driver.findByElementName(label);
+	}
+
+	/**
+	 * An unchanged page source is sent as a reference, and a slightly changed one as a delta the server can rebuild.
+	 */
+	@Test
+	void sendsFullThenReferenceThenDelta()
+	{
+		find(0, "button");
+		assertEquals(1, server.getSourceUploadCount("source"));
+
+		find(0, "button");
+		assertEquals(1, server.getSourceUploadCount("source_ref"));
+		assertEquals(SOURCES[0], server.getLastSource());
+
+		find(1, "button");
+		assertEquals(1, server.getSourceUploadCount("source_delta"));
+		assertEquals(SOURCES[1], server.getLastSource());
+
+		assertEquals(1, server.getSourceUploadCount("source"));
+	}
+
+	/**
+	 * Deltas are also understood when sent as multipart uploads.
+	 */
+	@Test
+	void sendsDeltaInMultipartUploads()
+	{
+		driver.setMultipartUploads(true);
+
+		find(0, "button");
+		find(1, "button");
+		assertEquals(1, server.getSourceUploadCount("source_delta"));
+		assertEquals(SOURCES[1], server.getLastSource());
+	}
+
+	/**
+	 * A page source which is too different from the last one is sent in full.
+	 */
+	@Test
+	void sendsUnrelatedSourceInFull()
+	{
+		find(0, "button");
+		find(2, "button");
+		assertEquals(2, server.getSourceUploadCount("source"));
+		assertEquals(0, server.getSourceUploadCount("source_delta"));
+		assertEquals(SOURCES[2], server.getLastSource());
+	}
+
+	/**
+	 * When the server no longer has the page source a reference or delta refers to, the full page source is sent, and becomes the new base.
+	 */
+	@Test
+	void fallsBackToFullSourceOnMismatch()
+	{
+		find(0, "button");
+		server.forgetSources();
+
+		find(0, "button");
+		assertEquals(1, server.getSourceMismatchCount());
+		assertEquals(2, server.getSourceUploadCount("source"));
+		assertEquals(SOURCES[0], server.getLastSource());
+
+		find(1, "button");
+		assertEquals(1, server.getSourceUploadCount("source_delta"));
+		assertEquals(SOURCES[1], server.getLastSource());
+	}
+
+	/**
+	 * A page source sent with a call which failed is not used as a base.
+	 */
+	@Test
+	void failedCallDoesNotAcknowledgeSource()
+	{
+		server.setElement("gone", null);
+		assertThrows(NoSuchElementException.class, () -> find(0, "gone"));
+
+		find(0, "button");
+		assertEquals(2, server.getSourceUploadCount("source"));
+		assertEquals(0, server.getSourceUploadCount("source_ref"));
+	}
+}
@@ -0,0 +1,42 @@
+package ai.test.sdk;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Tests what {@link TransportRegistry} keeps across new settings.
+ *
+ */
+class TransportRegistryTest
+{
+	/**
+	 * A breaker opened by clients handed out before new settings are applied is the one drivers created afterwards watch, and the latency tracker is shared across the settings too.
+	 */
+	@Test
+	void configureKeepsBreakersAndLatency()
+	{
+		HttpUrl url = HttpUrl.parse("http://keep.invalid:8080/");
+		CircuitBreaker breaker = TransportRegistry.getCircuitBreaker(url);
+		LatencyTracker latency = TransportRegistry.getLatencyTracker();
+
+		try
+		{
+			TransportRegistry.configure(new TransportSettings());
+			assertSame(breaker, TransportRegistry.getCircuitBreaker(url));
+			assertSame(latency, TransportRegistry.getLatencyTracker());
+
+			for (int i = 0; i < new TransportSettings().breakerFailureThreshold; i++)
+				breaker.onFailure();
+
+			assertEquals(CircuitBreaker.State.OPEN, TransportRegistry.getCircuitBreaker(url).getState());
+		}
+		finally
+		{
+			breaker.onSuccess();
+		}
+	}
+}